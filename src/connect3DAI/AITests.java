@@ -0,0 +1,923 @@
+package connect3DAI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the AI's position representation and search.
+ * @author Benjamin
+ *
+ */
+class AITests {
+
+	/**
+	 * Play a sequence of (x,z) columns.
+	 * @param p
+	 *  The position to play the moves on.
+	 * @param xz
+	 *  Pairs of x,z coordinates.
+	 */
+	static void play(Position p, int... xz) {
+		for(int i = 0; i < xz.length; i += 2) {
+			p.play(p.column(xz[i], xz[i+1]));
+		}
+	}
+
+	@Test
+	void testLineCount() {
+		//4*4*4 has 76 winning lines, the classic Qubic number.
+		assertEquals(76, Lines.of(4).count);
+	}
+
+	@Test
+	void testWinVertical() {
+		Position p = new Position(4, 2);
+		play(p, 0,0, 1,1, 0,0, 1,1, 0,0, 1,1);
+		assertTrue(p.isWinningMove(p.column(0, 0)));
+		play(p, 0,0);
+		assertEquals(0, p.winner());
+	}
+
+	@Test
+	void testUndoRestoresHash() {
+		Position p = new Position(5, 3);
+		long start = p.hash();
+		play(p, 0,0, 1,2, 3,4, 0,0);
+		assertNotEquals(start, p.hash());
+		for(int i = 0; i < 4; i++) p.undo();
+		assertEquals(start, p.hash());
+		assertEquals(0, p.toMove());
+	}
+
+	@Test
+	void testTranspositionsHashEqual() {
+		Position a = new Position(4, 2);
+		Position b = new Position(4, 2);
+		play(a, 0,0, 1,1, 2,2, 3,3);
+		play(b, 2,2, 3,3, 0,0, 1,1);
+		assertEquals(a.hash(), b.hash());
+	}
+
+	@Test
+	void testSearchFindsWin() {
+		Position p = new Position(4, 2);
+		play(p, 0,0, 0,1, 1,0, 1,1, 2,0, 2,1);
+		SearchResult r = new Search().search(p, 4);
+		assertEquals(p.column(3, 0), r.move);
+		assertTrue(r.score > Search.WIN_BOUND);
+	}
+
+	@Test
+	void testSearchBlocks() {
+		Position p = new Position(4, 2);
+		play(p, 0,0, 0,1, 1,0, 1,1, 2,0);
+		SearchResult r = new Search().search(p, 4);
+		assertEquals(p.column(3, 0), r.move);
+	}
+
+	@Test
+	void testOrderingReducesNodes() {
+		for(int dim = 4; dim <= 5; dim++) {
+			Position p = new Position(dim, 2);
+			play(p, 1,1, 2,2);
+			Search ordered = new Search();
+			Search unordered = new Search();
+			unordered.setOrdering(false);
+			SearchResult o = ordered.search(p, 6);
+			SearchResult u = unordered.search(p, 6);
+			assertTrue(o.nodes < u.nodes, dim+"^3 depth 6 ordered: "+o.nodes+" unordered: "+u.nodes);
+		}
+	}
+
+	/**
+	 * Play random moves until only a few cells are left empty.
+	 * Moves that win, fail to block, or let the opponent win on top are avoided where possible,
+	 * so the game usually survives long enough and the positions are closer to real play.
+	 * Positions where the game is over or the seat to move can win immediately are thrown away.
+	 * @param random
+	 *  The source of moves.
+	 * @param dim
+	 *  The board size.
+	 * @param empty
+	 *  The number of cells to leave empty.
+	 * @return
+	 *  A two player position with empty cells left.
+	 */
+	static Position randomPosition(Random random, int dim, int empty) {
+		int[] moves = new int[dim * dim];
+		while(true) {
+			Position p = new Position(dim, 2);
+			int cells = dim * dim * dim;
+			while(!p.isOver() && p.pieces() < cells - empty) {
+				int me = p.toMove(), n = 0;
+				for(int pass = 0; pass < 3 && n == 0; pass++) {
+					for(int c = 0; c < p.columns(); c++) {
+						if(!p.canPlay(c)) continue;
+						if(pass < 2 && p.isWinningMove(c, me)) continue;
+						if(pass < 2 && hasWinningMove(p, 1 - me) && !p.isWinningMove(c, 1 - me)) continue;
+						if(pass < 1 && givesWin(p, c)) continue;
+						moves[n++] = c;
+					}
+				}
+				p.play(moves[random.nextInt(n)]);
+			}
+			if(!p.isOver() && !hasWinningMove(p, p.toMove())) return p;
+		}
+	}
+
+	/**
+	 * @param p
+	 *  A position.
+	 * @param column
+	 *  A playable column.
+	 * @return
+	 *  True if the opponent could win by playing on top of the move.
+	 */
+	static boolean givesWin(Position p, int column) {
+		p.play(column);
+		boolean gives = p.canPlay(column) && p.isWinningMove(column);
+		p.undo();
+		return gives;
+	}
+
+	/**
+	 * @param p
+	 *  A position.
+	 * @param seat
+	 *  The seat being checked.
+	 * @return
+	 *  True if the seat could win immediately.
+	 */
+	static boolean hasWinningMove(Position p, int seat) {
+		for(int c = 0; c < p.columns(); c++) {
+			if(p.canPlay(c) && p.isWinningMove(c, seat)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Solve a position by searching every move to the end of the game.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  1 if the seat to move wins, -1 if it loses, 0 for a draw.
+	 */
+	static int bruteForce(Position p) {
+		if(p.isFull()) return 0;
+		int best = -1;
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			if(p.isWinningMove(c)) return 1;
+			p.play(c);
+			best = Math.max(best, -bruteForce(p));
+			p.undo();
+			if(best == 1) break;
+		}
+		return best;
+	}
+
+	/**
+	 * @param o
+	 *  A proven outcome.
+	 * @return
+	 *  The outcome in the form returned by bruteForce.
+	 */
+	static int toInt(Outcome o) {
+		switch(o) {
+			case WIN: return 1;
+			case LOSS: return -1;
+			case DRAW: return 0;
+			default: throw new IllegalArgumentException(o.name());
+		}
+	}
+
+	@Test
+	void testSolverMatchesBruteForce() {
+		Random random = new Random(27);
+		ProofNumberSolver solver = new ProofNumberSolver(1 << 20, Long.MAX_VALUE);
+		int[] seen = new int[3];
+		for(int i = 0; i < 40; i++) {
+			Position p = randomPosition(random, 4, 10);
+			int expected = bruteForce(p);
+			seen[expected + 1]++;
+			assertEquals(expected, toInt(solver.solve(p)));
+		}
+		//the positions cover both a win and a loss for the seat to move
+		assertTrue(seen[0] > 0 && seen[2] > 0, "losses: "+seen[0]+" draws: "+seen[1]+" wins: "+seen[2]);
+	}
+
+	@Test
+	void testSolverBoundedMemory() {
+		Random random = new Random(270);
+		//room for 1024 entries, far fewer than these solves visit.
+		ProofNumberSolver solver = new ProofNumberSolver(1024 * ProofTable.ENTRY_BYTES, 1_000_000);
+		for(int i = 0; i < 10; i++) {
+			Position p = randomPosition(random, 4, 12);
+			Outcome o = solver.solve(p);
+			if(o != Outcome.UNKNOWN) assertEquals(bruteForce(p), toInt(o));
+		}
+		assertTrue(solver.collections() > 0);
+	}
+
+	@Test
+	void testSolverBudgetCoversWholeSolve() {
+		//the empty board can't be solved in a thousand nodes, both questions together stay within them
+		ProofNumberSolver solver = new ProofNumberSolver(1 << 20, 1000);
+		Position p = new Position(4, 2);
+		assertEquals(Outcome.UNKNOWN, solver.solve(p));
+		//each question expands one position past the budget before it sees it is spent
+		assertTrue(solver.nodes() <= 1000 + 2, "nodes: "+solver.nodes());
+	}
+
+	@Test
+	void testCanonicalHashSymmetric() {
+		Position a = new Position(4, 2);
+		Position b = new Position(4, 2);
+		play(a, 0,0, 1,2);
+		play(b, 3,3, 2,1); //rotated half a turn
+		assertNotEquals(a.hash(), b.hash());
+		assertEquals(a.canonicalHash(), b.canonicalHash());
+	}
+
+	@Test
+	void testOpeningBook() throws IOException {
+		BookBuilder builder = new BookBuilder(4, 2);
+		builder.searchOpenings(2, 3);
+		Path file = Files.createTempFile("connect3D", ".book");
+		try {
+			builder.write(file);
+			OpeningBook book = OpeningBook.open(file);
+			assertEquals(builder.size(), book.size());
+			//every first move and reply should be in the book
+			Position p = new Position(4, 2);
+			assertTrue(p.canPlay(book.probe(p)));
+			for(int c = 0; c < p.columns(); c++) {
+				p.play(c);
+				int move = book.probe(p);
+				assertTrue(move >= 0 && p.canPlay(move));
+				p.undo();
+			}
+			//mirrored positions get mirrored moves
+			Position a = new Position(4, 2);
+			Position b = new Position(4, 2);
+			play(a, 0,1);
+			play(b, 3,1);
+			int moveA = book.probe(a), moveB = book.probe(b);
+			assertEquals(3 - a.columnX(moveA), b.columnX(moveB));
+			assertEquals(a.columnZ(moveA), b.columnZ(moveB));
+			//positions past the book are searched
+			play(a, 2,2, 1,1);
+			assertEquals(-1, book.probe(a));
+			Search search = new Search();
+			search.setBook(book);
+			assertEquals(0, search.search(b, 4).nodes);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testIncrementalEvaluatorMatchesScan() {
+		Random random = new Random(29);
+		int[] tuned = {3, 17, 101, 59};
+		Evaluator scan = new LineEvaluator(), tunedScan = new LineEvaluator(tuned);
+		Evaluator incremental = new IncrementalEvaluator(), tunedIncremental = new IncrementalEvaluator(tuned);
+		for(int seats = 2; seats <= 4; seats++) {
+			for(int game = 0; game < 20; game++) {
+				Position p = new Position(4 + game % 3, seats);
+				while(!p.isOver()) {
+					assertEquals(scan.evaluate(p), incremental.evaluate(p));
+					assertEquals(tunedScan.evaluate(p), tunedIncremental.evaluate(p));
+					int c;
+					do { c = random.nextInt(p.columns()); } while(!p.canPlay(c));
+					p.play(c);
+					if(random.nextInt(4) == 0 && !p.isOver()) {
+						p.undo();
+						assertEquals(scan.evaluate(p), incremental.evaluate(p));
+						assertEquals(tunedScan.evaluate(p), tunedIncremental.evaluate(p));
+						p.play(c);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testWeightsChangeSearch() {
+		Random random = new Random(30);
+		int[] tuned = {3, 17, 101, 59};
+		int differ = 0;
+		for(int i = 0; i < 10; i++) {
+			Position p = randomPosition(random, 4, 8 + i);
+			if(p.isOver()) continue;
+			Search standard = new Search(new IncrementalEvaluator(), 16), weighed = new Search(new IncrementalEvaluator(tuned), 16);
+			standard.setThreatSearch(false);
+			weighed.setThreatSearch(false);
+			int a = standard.search(p, 3).score, b = weighed.search(p, 3).score;
+			//the search scores with the weights it is given, the same as scanning with them
+			Search scan = new Search(new LineEvaluator(tuned), 16);
+			scan.setThreatSearch(false);
+			assertEquals(scan.search(p, 3).score, b);
+			if(a != b) differ++;
+		}
+		assertTrue(differ > 0);
+	}
+
+	@Test
+	void testPackedLinesMatchScalar() {
+		Random random = new Random(31);
+		LineEvaluator scan = new LineEvaluator(new int[] {3, 17, 101, 59});
+		double[] packed = new double[LineEvaluator.FEATURES], scalar = new double[LineEvaluator.FEATURES];
+		for(int game = 0; game < 40; game++) {
+			Position p = new Position(4 + game % 5, 2);
+			while(!p.isOver()) {
+				assertEquals(scan.evaluateScalar(p), scan.evaluate(p));
+				LineEvaluator.features(p, packed);
+				LineEvaluator.featuresScalar(p, scalar);
+				assertArrayEquals(scalar, packed);
+				int c;
+				do { c = random.nextInt(p.columns()); } while(!p.canPlay(c));
+				p.play(c);
+			}
+		}
+	}
+
+	@Test
+	void testTournament() throws InterruptedException {
+		StringWriter out = new StringWriter();
+		Tournament t = new Tournament(List.of("random", "greedy", "search:2"), new int[] {4}, new int[] {2, 3}, 4, 2, 4, out);
+		Tournament.Standings s = t.run();
+		//2 seats: 3 pairings, 3 seats: search sits out, random and greedy fill the seats twice over, 4 games each
+		assertEquals(20, t.finished());
+		assertEquals(21, out.toString().split("\n").length);
+		assertTrue(s.elo(1, 0)[0] > 0, s.toString());
+		assertTrue(s.eloVsField(0)[0] < 0, s.toString());
+		assertThrows(IllegalArgumentException.class, () -> Tournament.createEngine("minimax", 0));
+	}
+
+	@Test
+	void testTournamentReportsFailedGames() throws InterruptedException {
+		//a search to depth 0 throws on its first move
+		StringWriter out = new StringWriter();
+		Tournament t = new Tournament(List.of("random", "search:0"), new int[] {4}, new int[] {2}, 2, 0, 2, out);
+		Tournament.Standings s = t.run();
+		assertEquals(0, t.finished());
+		assertEquals(2, t.failed());
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		for(int i = 1; i < lines.length; i++) assertTrue(lines[i].contains("error: java.lang.IllegalArgumentException"), lines[i]);
+		assertNotNull(s);
+	}
+
+	@Test
+	void testPonderHit() throws InterruptedException {
+		Ponderer ai = new Ponderer(new Search(), 4);
+		Position p = new Position(4, 2);
+		play(p, 1,1, 2,2);
+		ai.ponder(p);
+		long deadline = System.currentTimeMillis() + 10_000;
+		while(ai.isPondering() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+		assertFalse(ai.isPondering());
+		//every reply was answered while pondering
+		p.play(p.column(0, 3));
+		SearchResult r = ai.move(p);
+		assertTrue(p.canPlay(r.move));
+		assertEquals(1, ai.hits());
+		assertEquals(0, ai.misses());
+	}
+
+	@Test
+	void testLevelPondererIsRepeatable() throws InterruptedException {
+		Ponderer ai = new Ponderer(Difficulty.BEGINNER, 7);
+		DifficultyEngine reference = new DifficultyEngine(Difficulty.BEGINNER, 7);
+		List<Position> positions = Benchmark.positions(4, 4);
+		for(Position p : positions) {
+			//a pondered answer must be the move and the work of the level's own choice.
+			Position before = new Position(p);
+			before.undo();
+			ai.ponder(before);
+			long deadline = System.currentTimeMillis() + 10_000;
+			while(ai.isPondering() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+			assertFalse(ai.isPondering());
+			SearchResult r = ai.move(p);
+			assertEquals(reference.chooseMove(p), r.move);
+			assertEquals(reference.lastStats().nodes, r.stats.nodes);
+		}
+		assertEquals(positions.size(), ai.hits());
+		assertEquals(0, ai.misses());
+	}
+
+	@Test
+	void testInterruptedSearchStops() throws InterruptedException {
+		Search search = new Search();
+		Thread.currentThread().interrupt();
+		SearchResult r = search.search(new Position(6, 2), 20);
+		assertTrue(Thread.interrupted());
+		assertTrue(search.aborted());
+		assertTrue(r.depth < 20);
+	}
+
+	@Test
+	void testHintArrivesQuickly() throws InterruptedException {
+		HintSearch hints = new HintSearch(new Search());
+		Position p = new Position(8, 2);
+		play(p, 3,3, 4,4);
+		long start = System.nanoTime();
+		hints.start(p);
+		while(hints.best() < 0 && System.nanoTime() - start < 10_000_000_000L) Thread.sleep(1);
+		assertTrue(p.canPlay(hints.best()));
+		//the first hint only waits for a one ply search, a node per column and the root
+		assertTrue(hints.hint().stats.iterationNodes(1) <= p.columns() + 1);
+		//the hint settles on a win when there is one
+		play(p, 0,0, 7,7, 0,1, 7,6, 0,2, 6,7);
+		hints.start(p);
+		start = System.nanoTime();
+		while((hints.hint() == null || hints.hint().score < Search.WIN_BOUND) && System.nanoTime() - start < 10_000_000_000L) Thread.sleep(1);
+		assertEquals(p.column(0, 3), hints.best());
+		hints.stop();
+		assertEquals(-1, hints.best());
+	}
+
+	@Test
+	void testMultiPlayerSearchWinsAndBlocks() {
+		//seat 0 holds three on the floor of x = 0 and threatens (0,3), the last seat is to move
+		int[][] games = {
+			{0,0, 2,0, 3,0, 0,1, 3,2, 2,2, 0,2, 2,3},
+			{0,0, 2,0, 3,0, 3,3, 0,1, 3,2, 2,2, 1,1, 0,2, 2,3, 1,3},
+		};
+		for(MultiPlayerSearch.Mode mode : MultiPlayerSearch.Mode.values()) {
+			for(int[] game : games) {
+				int seats = game.length == 16 ? 3 : 4;
+				Position p = new Position(4, seats);
+				play(p, game);
+				assertEquals(seats - 1, p.toMove());
+				assertEquals(p.column(0, 3), new MultiPlayerSearch(mode).search(p, 3).move, mode+" blocks with "+seats);
+				play(p, 1,2);
+				assertEquals(p.column(0, 3), new MultiPlayerSearch(mode).search(p, 3).move, mode+" wins with "+seats);
+			}
+		}
+	}
+
+	@Test
+	void testShallowPruningKeepsResult() {
+		Random random = new Random(33);
+		for(int i = 0; i < 20; i++) {
+			Position p = new Position(4, 3 + i % 2);
+			while(p.pieces() < 12) {
+				int c = random.nextInt(p.columns());
+				if(p.canPlay(c) && !p.isWinningMove(c)) p.play(c);
+			}
+			MultiPlayerSearch pruned = new MultiPlayerSearch(MultiPlayerSearch.Mode.MAXN);
+			MultiPlayerSearch full = new MultiPlayerSearch(MultiPlayerSearch.Mode.MAXN);
+			pruned.setOrdering(false);
+			full.setOrdering(false);
+			full.setPruning(false);
+			SearchResult a = pruned.search(p, 4), b = full.search(p, 4);
+			assertEquals(b.move, a.move);
+			assertEquals(b.score, a.score);
+			assertTrue(a.nodes <= b.nodes);
+		}
+	}
+
+	@Test
+	void testTexelTuning() throws IOException {
+		Path file = Files.createTempFile("connect3D", ".samples");
+		try {
+			long n = TexelTuner.generate(file, 4, 2, 40, "greedy", 4);
+			assertTrue(n > 40);
+			double[] start = {1, 8, 64, 64};
+			try(TexelTuner parallel = new TexelTuner(file, 4); TexelTuner serial = new TexelTuner(file, 1)) {
+				assertEquals(n, parallel.size());
+				double scale = parallel.fitScale(start);
+				assertArrayEquals(serial.gradient(start, scale), parallel.gradient(start, scale), 1e-9);
+				double[] tuned = parallel.tune(start, scale, 50, 0.5);
+				assertTrue(parallel.error(tuned, scale) < parallel.error(start, scale));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testTexelOpeningEndsWhenEveryMoveWins() throws IOException {
+		Path file = Files.createTempFile("connect3D", ".samples");
+		try {
+			//more random plies than cells, so openings run until every playable column wins or the board fills.
+			long n = assertTimeoutPreemptively(Duration.ofSeconds(60),
+					() -> TexelTuner.generate(file, 4, 2, 20, "greedy", 64));
+			try(TexelTuner tuner = new TexelTuner(file, 1)) {
+				assertEquals(n, tuner.size());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testTablebaseIsExact() throws IOException, InterruptedException {
+		Path file = Files.createTempFile("connect3D", ".c3dt");
+		try {
+			TablebaseBuilder builder = new TablebaseBuilder(4, 10);
+			builder.addGames(8, 39, 2);
+			builder.write(file);
+			Tablebase tablebase = Tablebase.open(file);
+			assertTrue(builder.size() > 100);
+			Random random = new Random(39);
+			for(int i = 0; i < 8; i++) {
+				Position p = builder.randomGame(random);
+				if(p == null) continue;
+				int distance = tablebase.distance(p);
+				assertNotEquals(Tablebase.MISSING, distance);
+				Search exact = new Search();
+				exact.setThreatSearch(false); //the threat search finds wins, not the shortest ones
+				assertEquals(exact.search(p, 64).score, Tablebase.score(distance, 0));
+				Search probing = new Search();
+				probing.setTablebase(tablebase);
+				SearchResult r = probing.search(p, 64);
+				assertEquals(0, r.nodes);
+				assertEquals(Tablebase.score(distance, 0), r.score);
+				//the move keeps the result, the child is one ply nearer the end for the other seat
+				if(p.isWinningMove(r.move)) {
+					assertEquals(1, distance);
+					continue;
+				}
+				p.play(r.move);
+				int child = p.isFull() ? 0 : tablebase.distance(p);
+				assertEquals(distance, child > 0 ? -(child + 1) : child < 0 ? 1 - child : 0);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testTablebaseRejectsSamples() throws IOException {
+		Path file = Files.createTempFile("connect3D", ".samples");
+		try {
+			TexelTuner.generate(file, 4, 2, 2, "greedy", 4);
+			IOException e = assertThrows(IOException.class, () -> Tablebase.open(file));
+			assertEquals("Not a tablebase", e.getMessage());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testNotationRoundTrip() {
+		Position p = Position.parse("4: 11 12 22 11");
+		assertEquals(4, p.pieces());
+		assertEquals("4: 11 12 22 11", p.notation());
+		assertEquals(p.hash(), Position.parse(p.notation()).hash());
+		assertEquals(3, Position.parse("5/3: 00 44").seats());
+		assertThrows(IllegalArgumentException.class, () -> Position.parse("4: 11 14"));
+		assertThrows(IllegalArgumentException.class, () -> Position.parse("4: 00 00 00 00 00"));
+		assertThrows(IllegalArgumentException.class, () -> Position.parse("11 12"));
+	}
+
+	@Test
+	void testAnalysisKeepsDepthWithNodeLimit() throws IOException, InterruptedException {
+		//a multi player position searches to the depth asked for, even alongside a node limit.
+		StringWriter out = new StringWriter();
+		assertEquals(1, new Analysis(3, 100_000, 1).run(new BufferedReader(new StringReader("4/3: 00 11\n")), out));
+		String[] columns = out.toString().split("\n")[1].split(",");
+		assertEquals("3", columns[4]);
+	}
+
+	@Test
+	void testAnalysisIsOrdered() throws IOException, InterruptedException {
+		Random random = new Random(41);
+		StringBuilder in = new StringBuilder("# regression positions\n");
+		for(int i = 0; i < 24; i++) in.append(randomPosition(random, 4, 30 + i).notation()).append('\n');
+		in.append("4: 99\n4/3: 00 11\n");
+		StringWriter serial = new StringWriter(), parallel = new StringWriter();
+		assertEquals(26, new Analysis(4, Long.MAX_VALUE, 1).run(new BufferedReader(new StringReader(in.toString())), serial));
+		assertEquals(26, new Analysis(4, Long.MAX_VALUE, 3).run(new BufferedReader(new StringReader(in.toString())), parallel));
+		String[] a = serial.toString().split("\n"), b = parallel.toString().split("\n");
+		assertEquals(27, a.length);
+		assertTrue(a[25].contains("error"));
+		for(int i = 0; i < a.length; i++) {
+			//everything but the timing columns matches
+			String[] x = a[i].split(","), y = b[i].split(",");
+			assertEquals(x.length > 7 ? String.join(",", Arrays.copyOf(x, 7)) : a[i], y.length > 7 ? String.join(",", Arrays.copyOf(y, 7)) : b[i]);
+		}
+	}
+
+	@Test
+	void testDistributedSearch() throws IOException, InterruptedException {
+		Random random = new Random(42);
+		Position p = randomPosition(random, 4, 10);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		p.write(new DataOutputStream(bytes));
+		Position copy = Position.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(p.hash(), copy.hash());
+		assertEquals(p.toMove(), copy.toMove());
+
+		Search local = new Search();
+		local.setThreatSearch(false);
+		try(DistributedSearch distributed = new DistributedSearch(0, local)) {
+			//a worker that hangs up on its first job, the job goes back in the queue and the coordinator searches it.
+			IOException[] failure = new IOException[1];
+			Thread quitter = new Thread(() -> {
+				try(Socket socket = new Socket("localhost", distributed.port())) {
+					socket.getInputStream().read();
+				} catch (IOException e) {
+					failure[0] = e;
+				}
+			});
+			quitter.start();
+			assertTrue(distributed.awaitWorkers(1, 5000));
+			Search reference = new Search();
+			reference.setThreatSearch(false);
+			assertEquals(reference.search(p, 4).score, distributed.search(p, 4).score);
+			quitter.join();
+			assertNull(failure[0]);
+
+			for(int i = 0; i < 2; i++) {
+				Search search = new Search();
+				search.setThreatSearch(false);
+				Thread worker = new Thread(new SearchWorker(search, "localhost", distributed.port()));
+				worker.setDaemon(true);
+				worker.start();
+			}
+			assertTrue(distributed.awaitWorkers(2, 5000));
+			for(int i = 0; i < 4; i++) {
+				Position q = randomPosition(random, 4, 8 + i);
+				reference.clear();
+				assertEquals(reference.search(q, 5).score, distributed.search(q, 5).score);
+			}
+		}
+	}
+
+	@Test
+	void testInterruptedDistributedSearch() throws IOException, InterruptedException {
+		//the first job of p is a win, q is lost, so a stale answer from p would show.
+		Random random = new Random(54);
+		Position p = randomPosition(random, 4, 10), q = randomPosition(random, 4, 12);
+		Search local = new Search();
+		local.setThreatSearch(false);
+		try(DistributedSearch distributed = new DistributedSearch(0, local)) {
+			try(Socket silent = new Socket("localhost", distributed.port())) {
+				//interrupted while a worker that never answers holds the first job.
+				assertTrue(distributed.awaitWorkers(1, 5000));
+				Exception[] thrown = new Exception[1];
+				Thread searcher = new Thread(() -> {
+					try {
+						distributed.search(p, 4);
+					} catch (Exception e) {
+						thrown[0] = e;
+					}
+				});
+				searcher.start();
+				assertEquals(DistributedSearch.JOB, silent.getInputStream().read());
+				searcher.interrupt();
+				searcher.join();
+				assertTrue(thrown[0] instanceof InterruptedException);
+			}
+			//the worker has hung up, its job must not come back in the next search.
+			while(distributed.workers() > 0) Thread.sleep(10);
+			Search reference = new Search();
+			reference.setThreatSearch(false);
+			SearchResult expected = reference.search(q, 4), r = distributed.search(q, 4);
+			assertEquals(expected.score, r.score);
+			assertTrue(q.canPlay(r.move));
+		}
+	}
+
+	@Test
+	void testInterruptedFallbackSearch() throws IOException, InterruptedException {
+		Random random = new Random(55);
+		Position p = randomPosition(random, 4, 40), q = randomPosition(random, 4, 12);
+		Search local = new Search();
+		local.setThreatSearch(false);
+		try(DistributedSearch distributed = new DistributedSearch(0, local)) {
+			//with no workers the coordinator searches every job itself, far too deep to finish.
+			Exception[] thrown = new Exception[1];
+			Thread searcher = new Thread(() -> {
+				try {
+					distributed.search(p, 14);
+				} catch (Exception e) {
+					thrown[0] = e;
+				}
+			});
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+				searcher.start();
+				Thread.sleep(200);
+				searcher.interrupt();
+				searcher.join();
+			});
+			assertTrue(thrown[0] instanceof InterruptedException);
+			//nothing of the interrupted search is left to disturb the next one.
+			Search reference = new Search();
+			reference.setThreatSearch(false);
+			SearchResult expected = reference.search(q, 4), r = distributed.search(q, 4);
+			assertEquals(expected.score, r.score);
+			assertTrue(q.canPlay(r.move));
+		}
+	}
+
+	@Test
+	void testNetworkEvaluator() throws IOException {
+		Random random = new Random(43);
+		//seeded from the line weights it scores as the line evaluator does, and so does a search using it.
+		NetworkEvaluator lines = NetworkEvaluator.fromLines(4, 16);
+		LineEvaluator reference = new LineEvaluator();
+		for(int i = 0; i < 20; i++) {
+			Position p = randomPosition(random, 4, 20 + i);
+			if(p.isOver()) continue;
+			assertEquals(reference.evaluate(p), lines.evaluate(p));
+		}
+		Position start = randomPosition(random, 4, 44);
+		SearchResult a = new Search(reference, 16).search(start, 5), b = new Search(lines, 16).search(start, 5);
+		assertEquals(a.score, b.score);
+		assertEquals(a.nodes, b.nodes);
+
+		//random weights, scoring children in a batch matches scoring each child.
+		int hidden = 8, inputs = NetworkEvaluator.inputs(4);
+		float[] in = new float[inputs * hidden], bias = new float[hidden], out = new float[hidden];
+		for(int i = 0; i < in.length; i++) in[i] = (float)random.nextGaussian();
+		for(int j = 0; j < hidden; j++) { bias[j] = (float)random.nextGaussian(); out[j] = 10 * (float)random.nextGaussian(); }
+		NetworkEvaluator net = new NetworkEvaluator(4, hidden, in, bias, out, 3);
+		Path file = Files.createTempFile("connect3D", ".net");
+		try {
+			net.write(file);
+			net = NetworkEvaluator.load(file);
+		} finally {
+			Files.delete(file);
+		}
+		int[] moves = new int[16], scores = new int[16];
+		for(int i = 0; i < 20; i++) {
+			Position p = randomPosition(random, 4, 20 + i);
+			if(p.isOver()) continue;
+			int n = 0;
+			for(int c = 0; c < p.columns(); c++) if(p.canPlay(c) && !p.isWinningMove(c)) moves[n++] = c;
+			net.evaluateAfter(p, moves, n, scores);
+			for(int k = 0; k < n; k++) {
+				p.play(moves[k]);
+				assertEquals(net.evaluate(p), scores[k], 1); //sums in a different order round differently
+				p.undo();
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> lines.evaluate(new Position(5, 2)));
+	}
+
+	@Test
+	void testMonteCarloSearch() {
+		Position p = Position.parse("4: 00 10 01 11 02 12");
+		int win = p.column(0, 3);
+		MonteCarloSearch search = new MonteCarloSearch(64L << 20, 44);
+		SearchResult r = search.search(p, 2000);
+		assertEquals(win, r.move);
+		assertTrue(r.score > 0);
+		assertEquals(2000, r.nodes);
+
+		//the tree under the moves played since is kept.
+		Position q = Position.parse("4: 11 12");
+		search.search(q, 5000);
+		q.play(q.column(2, 2));
+		q.play(q.column(2, 1));
+		search.search(q, 100);
+		assertTrue(search.reusedVisits() > 0);
+		search.search(p, 100);
+		assertEquals(0, search.reusedVisits());
+
+		//a pool far too small for the search is pruned and still finds the win.
+		MonteCarloSearch small = new MonteCarloSearch(1024 * NodePool.BYTES_PER_NODE, 44);
+		assertEquals(win, small.search(p, 20_000).move);
+		assertTrue(small.treeSize() <= small.capacity());
+		q = Position.parse("4: 11 12");
+		for(int i = 0; i < 6; i++) q.play(small.search(q, 3000).move);
+		assertTrue(small.treeSize() <= small.capacity());
+		assertThrows(IllegalArgumentException.class, () -> new MonteCarloSearch(1000, 0));
+	}
+
+	@Test
+	void testMoveHeatmap() throws InterruptedException {
+		//the second player must block, every other move loses.
+		Position p = Position.parse("4: 00 10 01 11 02");
+		int block = p.column(0, 3);
+		MoveHeatmap heatmap = new MoveHeatmap(2);
+		heatmap.start(p);
+		long end = System.currentTimeMillis() + 20_000;
+		boolean ready = false;
+		while(!ready && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+			ready = true;
+			//losing moves are resolved in the first round, the block is searched deeper.
+			for(int c = 0; c < p.columns(); c++) ready &= heatmap.depth(c) >= (c == block ? 3 : 2);
+		}
+		assertTrue(ready);
+		float[] heat = new float[p.columns()];
+		heatmap.heat(heat);
+		for(int c = 0; c < p.columns(); c++) {
+			if(c == block) assertTrue(heat[c] > 0);
+			else assertEquals(0, heat[c]);
+			if(c != block) assertEquals(-(Search.WIN - 2), heatmap.score(c));
+		}
+		heatmap.stop();
+		assertEquals(MoveHeatmap.UNKNOWN, heatmap.score(block));
+		assertEquals(0, heatmap.depth(block));
+
+		//the winner's column is valued at once.
+		p.play(p.column(3, 3));
+		heatmap.start(p);
+		while(heatmap.depth(block) == 0) Thread.sleep(1);
+		assertEquals(Search.WIN - 1, heatmap.score(block));
+		heatmap.stop();
+	}
+
+	@Test
+	void testThreatSearchWinsAreReal() {
+		Random random = new Random(35);
+		ThreatSearch threats = new ThreatSearch(24);
+		int found = 0;
+		for(int i = 0; i < 60; i++) {
+			Position p = randomPosition(random, 4, 14);
+			int move = threats.findWin(p);
+			if(move < 0) continue;
+			found++;
+			//the search answers from the threat search, deeper than it was asked to look
+			SearchResult r = new Search().search(p, 1);
+			assertTrue(r.score > Search.WIN_BOUND);
+			assertEquals(Search.WIN - threats.length(), r.score);
+			assertEquals(r.stats.nodes, r.nodes);
+			assertTrue(r.stats.threatNodes > 0);
+			p.play(move);
+			assertEquals(Outcome.LOSS, new ProofNumberSolver(1 << 22, 10_000_000).solve(p));
+		}
+		assertTrue(found > 0);
+	}
+
+	@Test
+	void testLosingMovesForgotten() {
+		Random random = new Random(36);
+		for(int i = 0; i < 60; i++) {
+			Position p = randomPosition(random, 4, 14);
+			//moves marked losing by the threat search are not skipped once it is turned off
+			Search reused = new Search();
+			reused.search(p, 2);
+			reused.setThreatSearch(false);
+			Search fresh = new Search();
+			fresh.setThreatSearch(false);
+			assertEquals(fresh.search(p, 1).move, reused.search(p, 1).move);
+		}
+	}
+
+	@Test
+	void testSearchStats() {
+		Position p = new Position(5, 2);
+		play(p, 2,2, 1,1);
+		SearchResult r = new Search().search(p, 5);
+		SearchStats stats = r.stats;
+		assertEquals(r.nodes, stats.nodes);
+		assertEquals(5, stats.maxDepth);
+		long sum = 0;
+		for(int d = 1; d <= 5; d++) sum += stats.iterationNodes(d);
+		assertEquals(stats.nodes, sum);
+		assertTrue(stats.hits > 0 && stats.hits <= stats.probes);
+		assertTrue(stats.firstMoveCutoffs > 0 && stats.firstMoveCutoffs <= stats.cutoffs);
+		assertTrue(stats.branchingFactor() > 1);
+		assertTrue(stats.threatNodes > 0);
+		SearchStats twice = stats.plus(stats);
+		assertEquals(2, twice.searches);
+		assertEquals(2 * stats.nodes, twice.nodes);
+		assertEquals(stats.branchingFactor(), twice.branchingFactor(), 1e-9);
+	}
+
+	@Test
+	void testDifficultyIsRepeatable() {
+		for(Difficulty level : new Difficulty[] {Difficulty.BEGINNER, Difficulty.EASY}) {
+			Search reused = level.createSearch(7);
+			for(Position p : Benchmark.positions(4, 4)) {
+				SearchResult first = level.choose(reused, p);
+				SearchResult fresh = level.choose(level.createSearch(7), p);
+				SearchResult again = level.choose(reused, p);
+				assertTrue(p.canPlay(first.move));
+				assertTrue(first.stats.nodes <= level.nodes + 1 || first.depth == 1);
+				assertEquals(first.move, fresh.move);
+				assertEquals(first.nodes, fresh.nodes);
+				assertEquals(first.move, again.move);
+				assertEquals(first.nodes, again.nodes);
+			}
+		}
+		Benchmark.Result a = Benchmark.run(Difficulty.BEGINNER, 4, 4), b = Benchmark.run(Difficulty.BEGINNER, 4, 4);
+		assertEquals(a.nodes, b.nodes);
+		assertEquals(a.checksum, b.checksum);
+	}
+}
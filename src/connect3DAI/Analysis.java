@@ -0,0 +1,207 @@
+package connect3DAI;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyses a file of positions without a window, for regression testing the engine.
+ * Each line is a position in Position.parse notation, blank lines and lines starting with # are skipped.
+ * Positions are searched on every core, each on a cleared search so the result doesn't depend on which thread
+ * or what order it ran in, and one line of CSV is written per position in the order they were read.
+ *
+ * Only a few positions per thread are read ahead, when the oldest unwritten one is still being searched the reader
+ * waits for it, so memory stays bounded however long the file is.
+ * @author Benjamin
+ *
+ */
+public final class Analysis {
+
+	/**
+	 * The positions read ahead for each thread.
+	 */
+	private static final int READ_AHEAD = 4;
+	/**
+	 * The depth searched when none is given, and the depth of positions with more than two players when only a node limit is.
+	 */
+	static final int DEFAULT_DEPTH = 8;
+
+	/**
+	 * The most plies searched.
+	 */
+	private final int depth;
+	/**
+	 * The node limit of two player searches, Long.MAX_VALUE for none.
+	 */
+	private final long nodes;
+	/**
+	 * The number of searching threads.
+	 */
+	private final int threads;
+	/**
+	 * Each thread's search, kept between positions so the table isn't reallocated.
+	 */
+	private final ThreadLocal<Search> searches;
+
+	/**
+	 * Create an analysis.
+	 * @param depth
+	 *  The most plies to search.
+	 * @param nodes
+	 *  The most nodes to search a two player position for, Long.MAX_VALUE for no limit.
+	 * @param threads
+	 *  The number of positions searched at once.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the depth, node limit or thread count is not positive.
+	 */
+	public Analysis(int depth, long nodes, int threads) throws IllegalArgumentException {
+		if(depth < 1) throw new IllegalArgumentException("Depth must be positive: "+depth);
+		if(threads < 1) throw new IllegalArgumentException("Threads must be positive: "+threads);
+		if(nodes < 1) throw new IllegalArgumentException("Node limit must be positive: "+nodes);
+		this.depth = depth;
+		this.nodes = nodes;
+		this.threads = threads;
+		this.searches = ThreadLocal.withInitial(() -> {
+			Search search = new Search();
+			search.setNodeLimit(nodes);
+			return search;
+		});
+	}
+
+	/**
+	 * Analyse every position read, writing a header and then one line per position.
+	 * @param in
+	 *  The positions, one per line.
+	 * @param out
+	 *  Receives the CSV, flushed after every line.
+	 * @return
+	 *  The number of positions analysed.
+	 * @throws IOException
+	 *  Thrown if reading or writing fails.
+	 * @throws InterruptedException
+	 *  Thrown if the thread is interrupted while waiting for a search.
+	 */
+	public long run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("line,position,move,score,depth,nodes,threat_nodes,ms,tt_hit");
+		writer.flush();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "Analysis");
+			t.setDaemon(true);
+			return t;
+		});
+		Deque<Future<String>> pending = new ArrayDeque<>();
+		long count = 0, number = 0;
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				number++;
+				String notation = line.trim();
+				if(notation.isEmpty() || notation.startsWith("#")) continue;
+				long n = number;
+				pending.add(pool.submit(() -> analyse(n, notation)));
+				count++;
+				if(pending.size() >= threads * READ_AHEAD) write(pending.remove(), writer);
+			}
+			while(!pending.isEmpty()) write(pending.remove(), writer);
+		} finally {
+			pool.shutdownNow();
+		}
+		return count;
+	}
+
+	/**
+	 * Wait for a result and write it.
+	 * @param result
+	 *  The oldest unwritten result.
+	 * @param writer
+	 *  The output.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting.
+	 */
+	private static void write(Future<String> result, PrintWriter writer) throws InterruptedException {
+		try {
+			writer.println(result.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Analysis failed", e.getCause());
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Search one position.
+	 * @param line
+	 *  The line number, for the output.
+	 * @param notation
+	 *  The position.
+	 * @return
+	 *  The line of CSV, with the error in the move column if the position can't be read or is over.
+	 */
+	private String analyse(long line, String notation) {
+		String prefix = line+",\""+notation.replace('"', '\'')+"\",";
+		Position p;
+		try {
+			p = Position.parse(notation);
+		} catch (IllegalArgumentException e) {
+			return prefix+"error: "+e.getMessage().replace(',', ';')+",,,,,,";
+		}
+		if(p.isOver()) return prefix+"error: game over,,,,,,";
+		SearchResult r;
+		if(p.seats() == 2) {
+			Search search = searches.get();
+			search.clear();
+			r = search.search(p, depth);
+		} else {
+			//the multi player search has no node limit, so a depth left unlimited for one is capped.
+			r = new MultiPlayerSearch(MultiPlayerSearch.Mode.MAXN).search(p, Math.min(depth, DEFAULT_DEPTH));
+		}
+		SearchStats s = r.stats;
+		return prefix + p.columnX(r.move) + p.columnZ(r.move) + "," + r.score + "," + r.depth + "," + s.nodes + ","
+				+ s.threatNodes + "," + String.format("%.2f,%.3f", s.nanos / 1e6, s.hitRate());
+	}
+
+	/**
+	 * Analyse a file of positions.
+	 * @param args
+	 *  Options: --in file (standard input by default), --out file (standard output by default),
+	 *  --depth plies (8 by default, unlimited if there is a node limit, at most 8 for multi player positions), --nodes limit (none by default), --threads count (every core by default).
+	 * @throws IOException
+	 *  Thrown if a file can't be read or written.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		Writer out = new OutputStreamWriter(System.out);
+		int depth = 0, threads = Runtime.getRuntime().availableProcessors();
+		long nodes = Long.MAX_VALUE;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i+1];
+			switch(args[i]) {
+				case "--in": in = Files.newBufferedReader(Paths.get(value)); break;
+				case "--out": out = Files.newBufferedWriter(Paths.get(value)); break;
+				case "--depth": depth = Integer.parseInt(value); break;
+				case "--nodes": nodes = Long.parseLong(value); break;
+				case "--threads": threads = Integer.parseInt(value); break;
+				default: throw new IllegalArgumentException("Unknown option! ->"+args[i]);
+			}
+		}
+		if(depth == 0) depth = nodes == Long.MAX_VALUE ? DEFAULT_DEPTH : Integer.MAX_VALUE; //a node limit alone sets the work
+		long start = System.currentTimeMillis();
+		long count = new Analysis(depth, nodes, threads).run(in, out);
+		in.close();
+		out.close();
+		System.err.println(count+" positions in "+(System.currentTimeMillis() - start)+"ms on "+threads+" threads");
+	}
+}
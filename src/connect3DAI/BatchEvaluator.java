@@ -0,0 +1,23 @@
+package connect3DAI;
+
+/**
+ * An evaluator that scores every child of a position at once, cheaper than scoring them one at a time.
+ * The search uses it at the nodes just above its horizon, where every child is a leaf.
+ * @author Benjamin
+ *
+ */
+public interface BatchEvaluator extends Evaluator {
+
+	/**
+	 * Score the positions after each of some moves, as evaluate would score them.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param moves
+	 *  Playable columns that don't win and don't fill the board.
+	 * @param count
+	 *  The number of moves.
+	 * @param scores
+	 *  Written to with the score of the position after moves[i], for the seat to move in it, at i.
+	 */
+	void evaluateAfter(Position p, int[] moves, int count, int[] scores);
+}
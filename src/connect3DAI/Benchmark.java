@@ -0,0 +1,121 @@
+package connect3DAI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times a fixed amount of search work, for comparing machines or changes to the search.
+ * The positions are made from a fixed seed and each is searched at a difficulty level, whose node budget
+ * makes the work the same everywhere. The node count and move checksum must match between runs,
+ * if they don't the search has changed and the times can't be compared.
+ * @author Benjamin
+ *
+ */
+public final class Benchmark {
+
+	/**
+	 * Seeds the positions, changing it changes the workload.
+	 */
+	static final long SEED = 0x43334442L;
+
+	/**
+	 * The result of a run.
+	 */
+	public static final class Result {
+		/**
+		 * The positions searched.
+		 */
+		public final int positions;
+		/**
+		 * The nodes visited, the same on every machine.
+		 */
+		public final long nodes;
+		/**
+		 * A hash of the moves chosen, the same on every machine.
+		 */
+		public final long checksum;
+		/**
+		 * How long the work took.
+		 */
+		public final long nanos;
+
+		Result(int positions, long nodes, long checksum, long nanos) {
+			this.positions = positions;
+			this.nodes = nodes;
+			this.checksum = checksum;
+			this.nanos = nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d positions, %,d nodes, checksum %016x, %.1fms, %.0fk nps",
+					positions, nodes, checksum, nanos / 1e6, nanos == 0 ? 0 : nodes * 1e6 / nanos);
+		}
+	}
+
+	private Benchmark() {}
+
+	/**
+	 * Make the benchmark positions, two player positions a few random moves in that nobody has won.
+	 * @param dim
+	 *  The board size.
+	 * @param count
+	 *  The number of positions.
+	 * @return
+	 *  The positions, always the same for the same arguments.
+	 */
+	static List<Position> positions(int dim, int count) {
+		Random random = new Random(SEED);
+		List<Position> positions = new ArrayList<>(count);
+		int[] moves = new int[dim * dim];
+		while(positions.size() < count) {
+			Position p = new Position(dim, 2);
+			int plies = 2 + random.nextInt(2 * dim);
+			for(int i = 0; i < plies && !p.isOver(); i++) {
+				int n = 0;
+				for(int c = 0; c < p.columns(); c++) if(p.canPlay(c)) moves[n++] = c;
+				p.play(moves[random.nextInt(n)]);
+			}
+			if(!p.isOver()) positions.add(p);
+		}
+		return positions;
+	}
+
+	/**
+	 * Search each benchmark position once at a level.
+	 * @param level
+	 *  The difficulty, which sets the work per position.
+	 * @param dim
+	 *  The board size.
+	 * @param count
+	 *  The number of positions.
+	 * @return
+	 *  The work done and the time it took.
+	 */
+	public static Result run(Difficulty level, int dim, int count) {
+		List<Position> positions = positions(dim, count);
+		Search search = level.createSearch(SEED);
+		long nodes = 0, checksum = 0;
+		long start = System.nanoTime();
+		for(Position p : positions) {
+			SearchResult r = level.choose(search, p);
+			nodes += r.stats.nodes + r.stats.threatNodes;
+			checksum = checksum * 31 + r.move * 1_000_003L + r.stats.nodes;
+		}
+		return new Result(count, nodes, checksum, System.nanoTime() - start);
+	}
+
+	/**
+	 * Run the benchmark.
+	 * @param args
+	 *  Optionally the level, board size and number of positions, MEDIUM 4 16 by default.
+	 */
+	public static void main(String[] args) {
+		Difficulty level = args.length > 0 ? Difficulty.of(args[0]) : Difficulty.MEDIUM;
+		int dim = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		run(level, dim, count); //warm up the JIT so the timed run measures compiled code
+		System.out.println(level+": "+run(level, dim, count));
+	}
+}
@@ -0,0 +1,171 @@
+package connect3DAI;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds opening book files offline.
+ * Positions are added with the move to play and its score, either by searching every opening deeply
+ * or from statistics gathered elsewhere such as self-play. Entries are stored by canonical hash,
+ * so rotations and reflections of a position share one entry.
+ * @author Benjamin
+ *
+ */
+public final class BookBuilder {
+
+	/**
+	 * A move stored in the book, in the canonical frame of its position.
+	 */
+	private static final class Entry {
+		final int move, score, depth;
+		Entry(int move, int score, int depth) {
+			this.move = move; this.score = score; this.depth = depth;
+		}
+	}
+
+	/**
+	 * The board size of the book.
+	 */
+	private final int dim;
+	/**
+	 * The number of players of the book.
+	 */
+	private final int seats;
+	/**
+	 * The entries that have been added, by canonical hash.
+	 */
+	private final Map<Long, Entry> entries = new HashMap<>();
+
+	/**
+	 * Create an empty builder.
+	 * @param dim
+	 *  The board size the book is for.
+	 * @param seats
+	 *  The number of players the book is for.
+	 */
+	public BookBuilder(int dim, int seats) {
+		new Position(dim, seats); //validate the arguments
+		this.dim = dim;
+		this.seats = seats;
+	}
+
+	/**
+	 * Add the move to play in a position. If the position is already in the book the deeper result is kept.
+	 * @param p
+	 *  The position.
+	 * @param move
+	 *  The column to play.
+	 * @param score
+	 *  The score of the move for the seat to move.
+	 * @param depth
+	 *  How deeply the move was searched, used to choose between entries for the same position.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not match the book or the move is not playable.
+	 */
+	public void add(Position p, int move, int score, int depth) throws IllegalArgumentException {
+		if(p.dim() != dim || p.seats() != seats) throw new IllegalArgumentException("Position does not match the book");
+		if(!p.canPlay(move)) throw new IllegalArgumentException("Move is not playable: "+move);
+		int symmetry = p.canonicalSymmetry();
+		long key = p.symmetricHash(symmetry);
+		Entry old = entries.get(key);
+		if(old == null || old.depth <= depth) {
+			entries.put(key, new Entry(p.toSymmetric(move, symmetry), score, depth));
+		}
+	}
+
+	/**
+	 * Search every position up to a number of plies from the start and add the best move of each.
+	 * @param plies
+	 *  Positions with fewer than this many pieces are added.
+	 * @param depth
+	 *  The depth each position is searched to.
+	 */
+	public void searchOpenings(int plies, int depth) {
+		Search search = new Search();
+		visit(new Position(dim, seats), plies, depth, search);
+	}
+
+	/**
+	 * Depth first walk over the openings, each canonical position is only searched once.
+	 * @param p
+	 *  The current position.
+	 * @param plies
+	 *  The number of plies left to walk.
+	 * @param depth
+	 *  The search depth.
+	 * @param search
+	 *  The search used for each position.
+	 */
+	private void visit(Position p, int plies, int depth, Search search) {
+		if(plies == 0 || p.isOver() || entries.containsKey(p.canonicalHash())) return;
+		SearchResult r = search.search(p, depth);
+		add(p, r.move, r.score, r.depth);
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			p.play(c);
+			visit(p, plies - 1, depth, search);
+			p.undo();
+		}
+	}
+
+	/**
+	 * @return
+	 *  The number of positions added.
+	 */
+	public int size() { return entries.size(); }
+
+	/**
+	 * Write the book, sorted by canonical hash, so it can be memory mapped by OpeningBook.
+	 * @param file
+	 *  The file to write, replaced if it exists.
+	 * @throws IOException
+	 *  Thrown if the file can't be written.
+	 */
+	public void write(Path file) throws IOException {
+		long[] keys = new long[entries.size()];
+		int i = 0;
+		for(long k : entries.keySet()) keys[i++] = k ^ Long.MIN_VALUE; //flip so signed sort is unsigned order
+		Arrays.sort(keys);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeShort(OpeningBook.VERSION);
+			out.writeByte(dim);
+			out.writeByte(seats);
+			out.writeLong(keys.length);
+			for(long flipped : keys) {
+				long key = flipped ^ Long.MIN_VALUE;
+				Entry e = entries.get(key);
+				out.writeLong(key);
+				out.writeInt(e.score);
+				out.writeShort(e.move);
+				out.writeShort(e.depth);
+			}
+		}
+	}
+
+	/**
+	 * Build a book from the command line.
+	 * @param args
+	 *  dimension, plies, search depth, output file.
+	 * @throws IOException
+	 *  Thrown if the book can't be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 4) {
+			System.out.println("Usage: BookBuilder <dimension> <plies> <depth> <file>");
+			return;
+		}
+		BookBuilder builder = new BookBuilder(Integer.parseInt(args[0]), 2);
+		long start = System.currentTimeMillis();
+		builder.searchOpenings(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		builder.write(Paths.get(args[3]));
+		System.out.println("Wrote "+builder.size()+" positions in "+(System.currentTimeMillis() - start)+"ms");
+	}
+}
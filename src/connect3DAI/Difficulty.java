@@ -0,0 +1,77 @@
+package connect3DAI;
+
+/**
+ * Computer strengths defined by a node budget, not a time limit, so the strength doesn't change with the machine
+ * or how busy it is. The weaker levels also add seeded noise to the evaluation.
+ * With the same position, level and seed the same move is chosen after visiting the same number of nodes, everywhere.
+ * @author Benjamin
+ *
+ */
+public enum Difficulty {
+	BEGINNER(2_000, 48),
+	EASY(20_000, 16),
+	MEDIUM(200_000, 4),
+	HARD(2_000_000, 0),
+	EXPERT(20_000_000, 0);
+
+	/**
+	 * The transposition table of each level has 2^TABLE_BITS slots, it is fixed as its size changes which positions collide.
+	 */
+	static final int TABLE_BITS = 20;
+
+	/**
+	 * The most nodes a move may take.
+	 */
+	public final long nodes;
+	/**
+	 * The largest noise added to an evaluation, 0 for none.
+	 */
+	public final int noise;
+
+	private Difficulty(long nodes, int noise) {
+		this.nodes = nodes;
+		this.noise = noise;
+	}
+
+	/**
+	 * Create a search that plays at this level.
+	 * @param seed
+	 *  Chooses the noise of the weaker levels.
+	 * @return
+	 *  A new search.
+	 */
+	public Search createSearch(long seed) {
+		Evaluator e = new IncrementalEvaluator();
+		if(noise > 0) e = new NoisyEvaluator(e, noise, seed);
+		Search search = new Search(e, TABLE_BITS);
+		search.setNodeLimit(nodes);
+		return search;
+	}
+
+	/**
+	 * Choose a move repeatably. The search forgets what it learnt from earlier moves first,
+	 * so the result only depends on the position, the level and the seed of the search.
+	 * @param search
+	 *  A search made by createSearch of this level.
+	 * @param p
+	 *  A two player position.
+	 * @return
+	 *  The search result.
+	 */
+	public SearchResult choose(Search search, Position p) {
+		search.clear();
+		return search.search(p, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param name
+	 *  A level name, in any case.
+	 * @return
+	 *  The level.
+	 * @throws IllegalArgumentException
+	 *  Thrown if there is no level with the name.
+	 */
+	public static Difficulty of(String name) throws IllegalArgumentException {
+		return valueOf(name.toUpperCase());
+	}
+}
@@ -0,0 +1,50 @@
+package connect3DAI;
+
+/**
+ * Plays at a difficulty level, each move is repeatable.
+ * @author Benjamin
+ *
+ */
+public final class DifficultyEngine implements Engine {
+
+	/**
+	 * The level.
+	 */
+	private final Difficulty level;
+	/**
+	 * The level's search.
+	 */
+	private final Search search;
+	/**
+	 * The stats of the last move.
+	 */
+	private SearchStats stats = SearchStats.EMPTY;
+
+	/**
+	 * Create an engine for a level.
+	 * @param level
+	 *  The difficulty.
+	 * @param seed
+	 *  Chooses the noise of the weaker levels.
+	 */
+	public DifficultyEngine(Difficulty level, long seed) {
+		this.level = level;
+		this.search = level.createSearch(seed);
+	}
+
+	@Override
+	public int chooseMove(Position p) {
+		SearchResult r = level.choose(search, p);
+		stats = r.stats;
+		return r.move;
+	}
+
+	@Override
+	public String name() { return "level:"+level.name().toLowerCase(); }
+
+	@Override
+	public boolean supports(int seats) { return seats == 2; }
+
+	@Override
+	public SearchStats lastStats() { return stats; }
+}
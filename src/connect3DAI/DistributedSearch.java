@@ -0,0 +1,531 @@
+package connect3DAI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Spreads a search over SearchWorker processes, on this machine or others, connected over TCP.
+ * The coordinator splits the root: each root move is a job, searching the position after it one ply shallower.
+ * The move a quick local search likes best goes first and alone, so the rest are searched with its score as the bound
+ * and most fail low cheaply, as in young brothers wait.
+ *
+ * Workers are given a job whenever they are idle, so fast workers take more of the root than slow ones.
+ * When no jobs are left to hand out, an idle worker takes a second copy of a running one,
+ * the first copy to finish answers it and the other is cancelled, so a slow or stuck worker doesn't hold up the search.
+ * Once a root move is found to force a win nothing can beat it, so every other job is cancelled.
+ * If a worker disconnects its job goes back in the queue, and if every worker has gone the coordinator searches
+ * the remaining jobs itself.
+ *
+ * Messages, big endian:
+ *  job: byte JOB, int id, int depth, int alpha, int beta, position (Position.write).
+ *  cancel: byte CANCEL, int id.
+ *  result: byte RESULT, int id, int score, long nodes, boolean aborted.
+ * @author Benjamin
+ *
+ */
+public final class DistributedSearch implements Closeable {
+
+	/**
+	 * Message types.
+	 */
+	static final byte JOB = 1, CANCEL = 2, RESULT = 3;
+	/**
+	 * The depth of the local search that chooses which root move goes first.
+	 */
+	private static final int ORDER_DEPTH = 4;
+	/**
+	 * Larger than any score.
+	 */
+	private static final int INFINITY = Search.WIN + 1;
+
+	/**
+	 * A root move to be searched.
+	 */
+	private static final class Job {
+		final int id, move, depth;
+		final Position position;
+		/**
+		 * The connections searching the job, null for the coordinator itself.
+		 */
+		final List<Connection> holders = new ArrayList<>();
+		/**
+		 * Set once the job has been answered or cancelled.
+		 */
+		boolean done;
+		Job(int id, int move, int depth, Position position) {
+			this.id = id; this.move = move; this.depth = depth; this.position = position;
+		}
+	}
+
+	/**
+	 * Accepts workers.
+	 */
+	private final ServerSocket server;
+	/**
+	 * Orders the root moves, and searches jobs when no workers are connected.
+	 */
+	private final Search local;
+	/**
+	 * The connected workers. This and everything below is guarded by this.
+	 */
+	private final List<Connection> connections = new ArrayList<>();
+	/**
+	 * Jobs waiting for a worker, and jobs being searched.
+	 */
+	private final Deque<Job> queue = new ArrayDeque<>();
+	private final List<Job> running = new ArrayList<>();
+	/**
+	 * The best root score and move so far, the score is the bound new jobs are searched with.
+	 */
+	private int alpha, best, bestMove;
+	/**
+	 * The nodes searched by every copy of every job of the current search.
+	 */
+	private long nodes;
+	/**
+	 * The id of the next job, and of the first job of the current search.
+	 */
+	private int nextId, firstId;
+	/**
+	 * Set by close.
+	 */
+	private boolean closed;
+
+	/**
+	 * Start accepting workers.
+	 * @param port
+	 *  The port to listen on, 0 for any free port.
+	 * @param local
+	 *  Orders the root moves, and searches when no workers are connected. Should be set up the same as the workers' searches.
+	 * @throws IOException
+	 *  Thrown if the port can't be listened on.
+	 */
+	public DistributedSearch(int port, Search local) throws IOException {
+		if(local == null) throw new IllegalArgumentException("Search cannot be null!");
+		this.local = local;
+		this.server = new ServerSocket(port);
+		Thread acceptor = new Thread(this::accept, "Coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return
+	 *  The port workers connect to.
+	 */
+	public int port() { return server.getLocalPort(); }
+
+	/**
+	 * @return
+	 *  The number of workers connected.
+	 */
+	public synchronized int workers() { return connections.size(); }
+
+	/**
+	 * Wait for workers to connect.
+	 * @param count
+	 *  The number of workers to wait for.
+	 * @param millis
+	 *  The longest to wait.
+	 * @return
+	 *  True if that many workers are connected.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting.
+	 */
+	public synchronized boolean awaitWorkers(int count, long millis) throws InterruptedException {
+		long end = System.currentTimeMillis() + millis;
+		while(connections.size() < count && !closed) {
+			long left = end - System.currentTimeMillis();
+			if(left <= 0) break;
+			wait(left);
+		}
+		return connections.size() >= count;
+	}
+
+	/**
+	 * Find the best move in a two player position, searched by the workers.
+	 * Only one search can run at a time.
+	 * @param position
+	 *  The position to search, it is not modified.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @return
+	 *  The best move, its score, and the nodes searched by every worker.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players or the depth is not positive.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting for the workers.
+	 */
+	public SearchResult search(Position position, int depth) throws IllegalArgumentException, InterruptedException {
+		if(position.seats() != 2) throw new IllegalArgumentException("Distributed search needs two players, found: "+position.seats());
+		if(depth < 1) throw new IllegalArgumentException("Depth must be positive: "+depth);
+		synchronized(local) {
+			return searchRoot(position, depth);
+		}
+	}
+
+	/**
+	 * Split the root into jobs and wait for the workers to search them.
+	 * @param position
+	 *  The position to search.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @return
+	 *  The best move.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting for the workers.
+	 */
+	private SearchResult searchRoot(Position position, int depth) throws InterruptedException {
+		long start = System.nanoTime();
+		Position p = new Position(position);
+		if(depth == 1 || p.isOver()) return local.search(p, depth);
+		for(int c = 0; c < p.columns(); c++) {
+			if(p.canPlay(c) && p.isWinningMove(c)) return new SearchResult(c, Search.WIN - 1, 1, 0);
+		}
+		int first = local.search(p, Math.min(depth - 1, ORDER_DEPTH)).move;
+		List<Job> jobs = new ArrayList<>();
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			Position child = new Position(p);
+			child.play(c);
+			Job job = new Job(nextId++, c, depth - 1, child);
+			if(c == first) jobs.add(0, job);
+			else jobs.add(job);
+		}
+		synchronized(this) {
+			alpha = best = -INFINITY;
+			bestMove = jobs.get(0).move;
+			nodes = 0;
+			firstId = jobs.get(0).id;
+			queue.add(jobs.get(0));
+			notifyAll();
+		}
+		try {
+			await(jobs.subList(0, 1));
+			synchronized(this) {
+				for(Job job : jobs) if(!job.done && job != jobs.get(0)) queue.add(job);
+				notifyAll();
+			}
+			await(jobs);
+			synchronized(this) {
+				SearchStats stats = new SearchStats(1, nodes, 0, System.nanoTime() - start, 0, 0, 0, 0, 0, depth, depth,
+						new long[0], new long[0]);
+				return new SearchResult(bestMove, best, depth, nodes, stats);
+			}
+		} finally {
+			//if interrupted, jobs left behind would be handed out and answered in the next search.
+			abandon();
+		}
+	}
+
+	/**
+	 * Wait for jobs to be done, searching them here if every worker has gone.
+	 * @param jobs
+	 *  The jobs.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting or searching a job here.
+	 */
+	private void await(List<Job> jobs) throws InterruptedException {
+		while(true) {
+			Job job;
+			int bound;
+			synchronized(this) {
+				boolean done = true;
+				for(Job j : jobs) done &= j.done;
+				if(done) return;
+				if(!connections.isEmpty() || queue.isEmpty()) {
+					wait();
+					continue;
+				}
+				job = queue.poll();
+				running.add(job);
+				job.holders.add(null);
+				bound = childBound(alpha);
+			}
+			SearchResult r = local.search(job.position, job.depth, -INFINITY, bound);
+			if(local.aborted()) {
+				//the score of an interrupted search means nothing, give the job back and stop
+				finish(job, null, r.score, r.stats.nodes + r.stats.threatNodes, true);
+				throw new InterruptedException();
+			}
+			finish(job, null, r.score, r.stats.nodes + r.stats.threatNodes, false);
+		}
+	}
+
+	/**
+	 * Record the answer to a job.
+	 * @param job
+	 *  The job.
+	 * @param from
+	 *  The connection that searched it, null for the coordinator.
+	 * @param score
+	 *  The score for the seat to move after the root move.
+	 * @param searched
+	 *  The nodes the search took.
+	 * @param aborted
+	 *  True if the search was cancelled.
+	 */
+	private synchronized void finish(Job job, Connection from, int score, long searched, boolean aborted) {
+		//a cancelled job of an earlier search can still answer
+		if(job.id >= firstId) nodes += searched;
+		job.holders.remove(from);
+		if(job.done) return;
+		if(aborted) {
+			//cancelled by someone else, or the worker stopped, search it again
+			if(job.holders.isEmpty()) requeue(job);
+			return;
+		}
+		job.done = true;
+		running.remove(job);
+		cancel(job);
+		int rootScore = rootScore(score);
+		if(rootScore > best) {
+			best = rootScore;
+			bestMove = job.move;
+		}
+		if(rootScore > alpha) alpha = rootScore;
+		//a forced win, nothing else can do better
+		if(alpha > Search.WIN_BOUND) abandon();
+		notifyAll();
+	}
+
+	/**
+	 * Cancel every job waiting or running.
+	 */
+	private synchronized void abandon() {
+		for(Job job : running) {
+			job.done = true;
+			cancel(job);
+		}
+		for(Job job : queue) job.done = true;
+		running.clear();
+		queue.clear();
+		notifyAll();
+	}
+
+	/**
+	 * @param score
+	 *  The score of a job, for the seat to move after the root move.
+	 * @return
+	 *  The score of the root move. A win or loss is one ply further from the root than from the job.
+	 */
+	static int rootScore(int score) {
+		if(score > Search.WIN_BOUND) return -(score - 1);
+		if(score < -Search.WIN_BOUND) return -(score + 1);
+		return -score;
+	}
+
+	/**
+	 * @param alpha
+	 *  The best root score so far.
+	 * @return
+	 *  The job score at or above which the root move can't beat it, the top of the job's window.
+	 */
+	static int childBound(int alpha) {
+		if(alpha == -INFINITY) return INFINITY;
+		if(alpha > Search.WIN_BOUND) return -alpha - 1;
+		if(alpha < -Search.WIN_BOUND) return -alpha + 1;
+		return -alpha;
+	}
+
+	/**
+	 * Put a job nobody is searching back at the front of the queue.
+	 * @param job
+	 *  The job.
+	 */
+	private void requeue(Job job) {
+		running.remove(job);
+		queue.addFirst(job);
+		notifyAll();
+	}
+
+	/**
+	 * Tell every worker still searching a job to stop.
+	 * @param job
+	 *  The job.
+	 */
+	private void cancel(Job job) {
+		for(Connection c : job.holders) {
+			if(c != null) c.cancel(job.id);
+		}
+	}
+
+	/**
+	 * Give an idle worker a job, waiting for one if there are none.
+	 * @param c
+	 *  The worker.
+	 * @return
+	 *  The job, or null once closed. The bound to search it with is left in the connection.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting.
+	 */
+	private synchronized Job take(Connection c) throws InterruptedException {
+		while(!closed) {
+			Job job = queue.poll();
+			if(job != null) {
+				running.add(job);
+			} else {
+				//nothing left to start, help with the job that has been running longest on its own.
+				for(Job j : running) {
+					if(j.holders.size() == 1 && !j.holders.contains(c) && !j.holders.contains(null)) {
+						job = j;
+						break;
+					}
+				}
+			}
+			if(job != null) {
+				job.holders.add(c);
+				c.bound = childBound(alpha);
+				return job;
+			}
+			wait();
+		}
+		return null;
+	}
+
+	/**
+	 * A worker has gone, its job goes back in the queue.
+	 * @param c
+	 *  The worker.
+	 * @param job
+	 *  The job it was searching, or null.
+	 */
+	private synchronized void lost(Connection c, Job job) {
+		connections.remove(c);
+		if(job != null) {
+			job.holders.remove(c);
+			if(!job.done && job.holders.isEmpty()) requeue(job);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Accept workers until closed.
+	 */
+	private void accept() {
+		while(true) {
+			Socket socket;
+			try {
+				socket = server.accept();
+				socket.setTcpNoDelay(true);
+			} catch (IOException e) {
+				return; //closed
+			}
+			Connection c;
+			try {
+				c = new Connection(socket);
+			} catch (IOException e) {
+				continue;
+			}
+			synchronized(this) {
+				if(closed) return;
+				connections.add(c);
+				notifyAll();
+			}
+			Thread t = new Thread(c::serve, "Worker connection");
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	/**
+	 * Stop accepting workers and disconnect them, they exit when their connection closes.
+	 */
+	@Override
+	public void close() throws IOException {
+		List<Connection> open;
+		synchronized(this) {
+			closed = true;
+			open = new ArrayList<>(connections);
+			notifyAll();
+		}
+		server.close();
+		for(Connection c : open) c.close();
+	}
+
+	/**
+	 * The coordinator's end of a worker connection.
+	 */
+	private final class Connection {
+		final Socket socket;
+		final DataInputStream in;
+		final DataOutputStream out;
+		/**
+		 * The top of the current job's window, set by take.
+		 */
+		int bound;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		/**
+		 * Send jobs and read results until the worker or coordinator goes.
+		 */
+		void serve() {
+			Job job = null;
+			try {
+				while(true) {
+					job = take(this);
+					if(job == null) break;
+					synchronized(out) {
+						out.writeByte(JOB);
+						out.writeInt(job.id);
+						out.writeInt(job.depth);
+						out.writeInt(-INFINITY);
+						out.writeInt(bound);
+						job.position.write(out);
+						out.flush();
+					}
+					if(in.readByte() != RESULT || in.readInt() != job.id) throw new IOException("Unexpected reply");
+					int score = in.readInt();
+					long searched = in.readLong();
+					boolean aborted = in.readBoolean();
+					finish(job, this, score, searched, aborted);
+					job = null;
+				}
+			} catch (IOException | InterruptedException e) {
+				//the worker has gone
+			}
+			lost(this, job);
+			close();
+		}
+
+		/**
+		 * Ask the worker to stop a job, ignoring failures as the read will notice them.
+		 * @param id
+		 *  The job.
+		 */
+		void cancel(int id) {
+			try {
+				synchronized(out) {
+					out.writeByte(CANCEL);
+					out.writeInt(id);
+					out.flush();
+				}
+			} catch (IOException e) {
+				//the worker has gone
+			}
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				//already closed
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package connect3DAI;
+
+/**
+ * Something that chooses moves, used where the AI plays without a human, such as tournaments.
+ * Engines keep search state between moves, so an engine must only be used by one game at a time.
+ * @author Benjamin
+ *
+ */
+public interface Engine {
+
+	/**
+	 * Choose a move.
+	 * @param p
+	 *  The position, the game must not be over. It is not modified.
+	 * @return
+	 *  A playable column.
+	 */
+	int chooseMove(Position p);
+
+	/**
+	 * @return
+	 *  A short name for reports.
+	 */
+	String name();
+
+	/**
+	 * @param seats
+	 *  A number of players.
+	 * @return
+	 *  True if the engine can play games with that many players.
+	 */
+	default boolean supports(int seats) { return true; }
+
+	/**
+	 * @return
+	 *  What the search for the last move did, SearchStats.EMPTY for engines that don't search.
+	 */
+	default SearchStats lastStats() { return SearchStats.EMPTY; }
+}
@@ -0,0 +1,20 @@
+package connect3DAI;
+
+/**
+ * Scores positions that the search has stopped looking beneath.
+ * @author Benjamin
+ *
+ */
+@FunctionalInterface
+public interface Evaluator {
+
+	/**
+	 * Estimate how good a position is.
+	 * @param p
+	 *  The position being scored. The game should not be over.
+	 * @return
+	 *  The score from the point of view of the seat to move, higher is better.
+	 *  Must stay well inside +/- Search.WIN so it can't be confused with a forced win.
+	 */
+	int evaluate(Position p);
+}
@@ -0,0 +1,39 @@
+package connect3DAI;
+
+/**
+ * Looks one move ahead. Wins if it can, blocks if it must, avoids giving away a win on top of its move,
+ * and otherwise plays the move that leaves it with the best line score.
+ * Works for any number of players.
+ * @author Benjamin
+ *
+ */
+public final class GreedyEngine implements Engine {
+
+	@Override
+	public int chooseMove(Position position) {
+		Position p = new Position(position);
+		int me = p.toMove();
+		int best = -1, bestScore = Integer.MIN_VALUE;
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			if(p.isWinningMove(c)) return c;
+			int score = 0;
+			for(int s = 0; s < p.seats(); s++) {
+				if(s != me && p.isWinningMove(c, s)) score += Search.WIN / 2;
+			}
+			p.play(c);
+			if(p.canPlay(c) && p.isWinningMove(c)) score -= Search.WIN / 4;
+			int mine = p.score(me);
+			score += mine - (p.totalScore() - mine) / (p.seats() - 1);
+			p.undo();
+			if(score > bestScore) {
+				bestScore = score;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public String name() { return "greedy"; }
+}
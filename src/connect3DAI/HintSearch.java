@@ -0,0 +1,107 @@
+package connect3DAI;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Suggests moves to a human player.
+ * A background thread searches the position one ply deeper at a time and publishes the best move after every depth,
+ * so a shallow hint is ready almost at once and improves for as long as the player thinks.
+ * The game reads the latest hint without locking and never waits for the search.
+ * @author Benjamin
+ *
+ */
+public final class HintSearch {
+
+	/**
+	 * The search, only used by the background thread.
+	 */
+	private final Search search;
+	/**
+	 * The deepest result so far, null before the first depth finishes.
+	 */
+	private final AtomicReference<SearchResult> hint = new AtomicReference<>();
+	/**
+	 * The background thread, null when not searching.
+	 */
+	private Thread thread;
+
+	/**
+	 * Create a hint search.
+	 * @param search
+	 *  The search used to find hints.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the search is null.
+	 */
+	public HintSearch(Search search) throws IllegalArgumentException {
+		if(search == null) throw new IllegalArgumentException("Search cannot be null!");
+		this.search = search;
+	}
+
+	/**
+	 * Start looking for hints in a position, forgetting the hint for the previous one.
+	 * @param position
+	 *  The position with the player to help to move, it is copied.
+	 */
+	public void start(Position position) {
+		stop();
+		if(position.isOver()) return;
+		Position p = new Position(position);
+		thread = new Thread(() -> refine(p), "Hint");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop looking for hints and forget the current hint. Does nothing if not searching.
+	 */
+	public void stop() {
+		if(thread != null) {
+			thread.interrupt();
+			boolean interrupted = false;
+			while(true) {
+				try {
+					thread.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			thread = null;
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+		hint.set(null);
+	}
+
+	/**
+	 * Safe to call from any thread.
+	 * @return
+	 *  The latest hint, or null if there isn't one yet.
+	 */
+	public SearchResult hint() { return hint.get(); }
+
+	/**
+	 * Safe to call from any thread.
+	 * @return
+	 *  The column of the latest hint, -1 if there isn't one yet.
+	 */
+	public int best() {
+		SearchResult r = hint.get();
+		return r == null ? -1 : r.move;
+	}
+
+	/**
+	 * The background thread, deepens until the game is solved or it is stopped.
+	 * @param p
+	 *  The position, owned by this thread.
+	 */
+	private void refine(Position p) {
+		int empty = p.columns() * p.dim() - p.pieces();
+		for(int depth = 1; depth <= empty; depth++) {
+			//the table keeps each depth's work, so searching from depth 1 again costs little.
+			SearchResult r = search.search(p, depth);
+			if(search.aborted()) return;
+			hint.set(r);
+			if(Math.abs(r.score) > Search.WIN_BOUND) return;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package connect3DAI;
+
+/**
+ * Scores positions the same way as the LineEvaluator, but in constant time.
+ * The position keeps each seat's line feature counts up to date as moves are played and undone,
+ * only recounting the lines through the cells that changed, so leaf evaluation never rescans the board.
+ * The score is the counts weighed by the same weights a LineEvaluator takes, so tuned weights can be searched with.
+ * @author Benjamin
+ *
+ */
+public final class IncrementalEvaluator implements Evaluator {
+
+	/**
+	 * The weight of each feature.
+	 */
+	private final int[] weights;
+
+	/**
+	 * Create an evaluator with the default weights.
+	 */
+	public IncrementalEvaluator() {
+		this(LineEvaluator.DEFAULT_WEIGHTS);
+	}
+
+	/**
+	 * Create an evaluator with custom weights, such as ones tuned with TexelTuner.
+	 * @param weights
+	 *  The value of an open line holding one, two and three pieces, and the bonus for a playable threat.
+	 * @throws IllegalArgumentException
+	 *  Thrown if there are not LineEvaluator.FEATURES weights.
+	 */
+	public IncrementalEvaluator(int[] weights) throws IllegalArgumentException {
+		if(weights == null || weights.length != LineEvaluator.FEATURES) throw new IllegalArgumentException("Expected "+LineEvaluator.FEATURES+" weights");
+		this.weights = weights.clone();
+	}
+
+	@Override
+	public int evaluate(Position p) {
+		int mine = p.score(p.toMove(), weights);
+		return mine - ((p.totalScore(weights) - mine) / (p.seats() - 1));
+	}
+}
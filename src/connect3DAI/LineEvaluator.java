@@ -0,0 +1,169 @@
+package connect3DAI;
+
+/**
+ * Scores a position by looking at every line on the board.
+ * A line that only one seat has pieces in is still open for that seat to win with,
+ * so each open line is worth more the more pieces it holds.
+ * An open line holding three pieces whose last cell can be played into right now is a threat
+ * the opponent must answer, and earns a bonus.
+ * Lines with pieces from two or more seats are dead and are not counted.
+ *
+ * This rescans every line, IncrementalEvaluator reads the same scores from the position in constant time.
+ * Two player positions are scanned four lines at a time by PackedLines, other positions one line at a time.
+ * The weights can be replaced, such as by ones tuned with TexelTuner, and IncrementalEvaluator takes the same weights.
+ * @author Benjamin
+ *
+ */
+public final class LineEvaluator implements Evaluator {
+
+	/**
+	 * The value of an open line holding 0, 1, 2, or 3 pieces.
+	 */
+	static final int[] WEIGHTS = {0, 1, 8, 64};
+	/**
+	 * Added to an open line of three whose empty cell is playable.
+	 */
+	static final int PLAYABLE_THREAT = 64;
+	/**
+	 * The number of weights, one per feature: lines holding one, two and three pieces, and playable threats.
+	 */
+	public static final int FEATURES = 4;
+	/**
+	 * The default weight of each feature.
+	 */
+	static final int[] DEFAULT_WEIGHTS = {WEIGHTS[1], WEIGHTS[2], WEIGHTS[3], PLAYABLE_THREAT};
+	/**
+	 * Masks the pieces held out of a line's shape.
+	 */
+	static final int HELD = 3;
+	/**
+	 * Set in a line's shape when it is a playable threat.
+	 */
+	static final int THREAT = 4;
+
+	/**
+	 * The weight of each feature.
+	 */
+	private final int[] weights;
+
+	/**
+	 * Create an evaluator with the default weights.
+	 */
+	public LineEvaluator() {
+		this(DEFAULT_WEIGHTS);
+	}
+
+	/**
+	 * Create an evaluator with custom weights.
+	 * @param weights
+	 *  The value of an open line holding one, two and three pieces, and the bonus for a playable threat.
+	 * @throws IllegalArgumentException
+	 *  Thrown if there are not FEATURES weights.
+	 */
+	public LineEvaluator(int[] weights) throws IllegalArgumentException {
+		if(weights == null || weights.length != FEATURES) throw new IllegalArgumentException("Expected "+FEATURES+" weights");
+		this.weights = weights.clone();
+	}
+
+	@Override
+	public int evaluate(Position p) {
+		if(PackedLines.supports(p)) {
+			int score = PackedLines.score(p, weights);
+			return p.toMove() == 0 ? score : -score;
+		}
+		return evaluateScalar(p);
+	}
+
+	/**
+	 * Score a position one line at a time, for any number of seats.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The score for the seat to move.
+	 */
+	int evaluateScalar(Position p) {
+		int seats = p.seats;
+		byte[] counts = p.lineCounts;
+		int me = p.toMove();
+		int mine = 0, theirs = 0;
+		for(int l = 0, base = 0; l < p.lines.count; l++, base += seats) {
+			int owner = -1, held = 0;
+			for(int s = 0; s < seats; s++) {
+				int c = counts[base + s];
+				if(c == 0) continue;
+				if(owner >= 0) { owner = -2; break; } //dead line
+				owner = s; held = c;
+			}
+			if(owner < 0 || held >= Lines.LENGTH) continue;
+			int value = weights[held - 1];
+			if(held == Lines.LENGTH - 1 && p.isLinePlayable(l)) value += weights[3];
+			if(owner == me) mine += value;
+			else theirs += value;
+		}
+		return mine - (theirs / (seats - 1));
+	}
+
+	/**
+	 * Count the features of a position for the seat to move, so that the evaluation is the dot product
+	 * of the features and the weights (before rounding).
+	 * @param p
+	 *  The position.
+	 * @param features
+	 *  Written to with the seat to move's count of each feature less the other seats' average count.
+	 */
+	static void features(Position p, double[] features) {
+		if(PackedLines.supports(p)) {
+			int[] counts = new int[2 * FEATURES];
+			PackedLines.count(p, counts);
+			int me = p.toMove() * FEATURES, them = FEATURES - me;
+			for(int f = 0; f < FEATURES; f++) features[f] = counts[me + f] - counts[them + f];
+			return;
+		}
+		featuresScalar(p, features);
+	}
+
+	/**
+	 * Count the features of a position one line at a time, for any number of seats.
+	 * @param p
+	 *  The position.
+	 * @param features
+	 *  Written to as by features.
+	 */
+	static void featuresScalar(Position p, double[] features) {
+		int seats = p.seats;
+		byte[] counts = p.lineCounts;
+		int me = p.toMove();
+		double[] mine = new double[FEATURES], theirs = new double[FEATURES];
+		for(int l = 0, base = 0; l < p.lines.count; l++, base += seats) {
+			int owner = -1, held = 0;
+			for(int s = 0; s < seats; s++) {
+				int c = counts[base + s];
+				if(c == 0) continue;
+				if(owner >= 0) { owner = -2; break; }
+				owner = s; held = c;
+			}
+			if(owner < 0 || held >= Lines.LENGTH) continue;
+			double[] side = owner == me ? mine : theirs;
+			side[held - 1]++;
+			if(held == Lines.LENGTH - 1 && p.isLinePlayable(l)) side[3]++;
+		}
+		for(int f = 0; f < FEATURES; f++) features[f] = mine[f] - theirs[f] / (seats - 1);
+	}
+
+	/**
+	 * The features an open line counts for the seat holding it.
+	 * @param p
+	 *  The position.
+	 * @param line
+	 *  The line index.
+	 * @param held
+	 *  The number of pieces in the line, all belonging to one seat.
+	 * @return
+	 *  The pieces held, with THREAT set if the line is a playable threat, 0 for a line that counts for nothing.
+	 */
+	static int lineShape(Position p, int line, int held) {
+		if(held >= Lines.LENGTH) return 0; //the game is over, the search doesn't evaluate it.
+		if(held == Lines.LENGTH - 1 && p.isLinePlayable(line)) return held | THREAT;
+		return held;
+	}
+}
@@ -0,0 +1,254 @@
+package connect3DAI;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed geometry of a dim * dim * dim board.
+ * Stores every four cell window that can be used to make four in a row,
+ * the windows that pass through each cell, and the Zobrist keys of each cell.
+ * Instances are immutable and shared between every position of the same size.
+ *
+ * Cells are indexed as ((x * dim) + z) * dim + y so that the cells of an (x,z) column are contiguous.
+ * Columns are indexed as (x * dim) + z.
+ * @author Benjamin
+ *
+ */
+final class Lines {
+
+	/**
+	 * The maximum number of players the AI supports, matches the player counts Main allows.
+	 */
+	static final int MAX_SEATS = 4;
+
+	/**
+	 * The number of cells in a line.
+	 */
+	static final int LENGTH = 4;
+
+	/**
+	 * Gravity pulls along y, so the board looks the same after any of the 8 rotations and reflections
+	 * of the square (x,z) plane.
+	 */
+	static final int SYMMETRIES = 8;
+
+	/**
+	 * The 13 directions that a line can travel in, one of each opposing pair.
+	 * {dx, dy, dz}
+	 */
+	private static final int[][] DIRECTIONS = {
+			{1,0,0}, {0,1,0}, {0,0,1},
+			//Flat diagonals
+			{1,0,1}, {1,0,-1},
+			//Left right height
+			{1,1,0}, {1,-1,0},
+			//Towards away height
+			{0,1,1}, {0,1,-1},
+			//Corner to corner
+			{1,1,1}, {1,1,-1}, {1,-1,1}, {1,-1,-1}
+	};
+
+	/**
+	 * Geometry is expensive to compute, so each board size is only computed once.
+	 */
+	private static final ConcurrentHashMap<Integer, Lines> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * The dimension of the board.
+	 */
+	final int dim;
+	/**
+	 * The number of (x,z) columns on the board.
+	 */
+	final int columns;
+	/**
+	 * The number of cells on the board.
+	 */
+	final int cells;
+	/**
+	 * The number of lines on the board.
+	 */
+	final int count;
+	/**
+	 * The cells of each line. Line l occupies [l * LENGTH, (l+1) * LENGTH).
+	 */
+	final int[] lineCells;
+	/**
+	 * The lines passing through cell c are cellLines[cellStart[c]] -> cellLines[cellStart[c+1]-1].
+	 */
+	final int[] cellStart;
+	/**
+	 * The flattened lists of lines passing through each cell.
+	 */
+	final int[] cellLines;
+	/**
+	 * Zobrist keys, indexed by cell * MAX_SEATS + seat.
+	 */
+	final long[] pieceKeys;
+	/**
+	 * Zobrist keys for the seat that is about to move.
+	 */
+	final long[] turnKeys;
+	/**
+	 * symCells[s][c] is the cell that cell c is moved to by symmetry s. Symmetry 0 is the identity.
+	 */
+	final int[][] symCells;
+	/**
+	 * symColumns[s][c] is the column that column c is moved to by symmetry s.
+	 */
+	final int[][] symColumns;
+	/**
+	 * symInverse[s][c] is the column that symmetry s moves to column c.
+	 */
+	final int[][] symInverse;
+
+	/**
+	 * Get the geometry of a board size.
+	 * @param dim
+	 *  The dimension of the board.
+	 * @return
+	 *  The shared geometry of the board size.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board is too small for four in a row.
+	 */
+	static Lines of(int dim) throws IllegalArgumentException {
+		if(dim < LENGTH) throw new IllegalArgumentException("Minimum board size is four for \"four in a row\"! ->"+dim);
+		return cache.computeIfAbsent(dim, Lines::new);
+	}
+
+	/**
+	 * Compute the geometry of a board.
+	 * @param dim
+	 *  The dimension of the board.
+	 */
+	private Lines(int dim) {
+		this.dim = dim;
+		this.columns = dim * dim;
+		this.cells = columns * dim;
+		//count the lines before filling the arrays
+		int total = 0;
+		for(int[] d : DIRECTIONS) {
+			for(int x = 0; x < dim; x++) {
+				for(int y = 0; y < dim; y++) {
+					for(int z = 0; z < dim; z++) {
+						if(fits(x, y, z, d)) total++;
+					}
+				}
+			}
+		}
+		this.count = total;
+		this.lineCells = new int[total * LENGTH];
+		int[] perCell = new int[cells];
+		int l = 0;
+		for(int[] d : DIRECTIONS) {
+			for(int x = 0; x < dim; x++) {
+				for(int y = 0; y < dim; y++) {
+					for(int z = 0; z < dim; z++) {
+						if(!fits(x, y, z, d)) continue;
+						for(int i = 0; i < LENGTH; i++) {
+							int c = cell(x + d[0]*i, y + d[1]*i, z + d[2]*i);
+							lineCells[l * LENGTH + i] = c;
+							perCell[c]++;
+						}
+						l++;
+					}
+				}
+			}
+		}
+		this.cellStart = new int[cells + 1];
+		for(int c = 0; c < cells; c++) {
+			cellStart[c+1] = cellStart[c] + perCell[c];
+		}
+		this.cellLines = new int[cellStart[cells]];
+		int[] fill = new int[cells];
+		for(l = 0; l < count; l++) {
+			for(int i = 0; i < LENGTH; i++) {
+				int c = lineCells[l * LENGTH + i];
+				cellLines[cellStart[c] + fill[c]++] = l;
+			}
+		}
+		//seeded so hashes are stable between runs, needed for anything written to disk.
+		SplittableRandom random = new SplittableRandom(0x436F6E6E656374L ^ dim);
+		this.pieceKeys = new long[cells * MAX_SEATS];
+		for(int i = 0; i < pieceKeys.length; i++) pieceKeys[i] = random.nextLong();
+		this.turnKeys = new long[MAX_SEATS];
+		for(int i = 0; i < turnKeys.length; i++) turnKeys[i] = random.nextLong();
+		this.symCells = new int[SYMMETRIES][cells];
+		this.symColumns = new int[SYMMETRIES][columns];
+		this.symInverse = new int[SYMMETRIES][columns];
+		int n = dim - 1;
+		for(int x = 0; x < dim; x++) {
+			for(int z = 0; z < dim; z++) {
+				//(x,z) after each of the 8 symmetries of the square.
+				int[][] images = {
+						{x, z}, {n-x, z}, {x, n-z}, {n-x, n-z},
+						{z, x}, {n-z, x}, {z, n-x}, {n-z, n-x}
+				};
+				for(int s = 0; s < SYMMETRIES; s++) {
+					int from = column(x, z), to = column(images[s][0], images[s][1]);
+					symColumns[s][from] = to;
+					symInverse[s][to] = from;
+					for(int y = 0; y < dim; y++) {
+						symCells[s][cell(x, y, z)] = cell(images[s][0], y, images[s][1]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a line starting at x,y,z travelling in direction d stays on the board.
+	 * @param x
+	 *  lateral start.
+	 * @param y
+	 *  height start.
+	 * @param z
+	 *  depth start.
+	 * @param d
+	 *  The direction of travel.
+	 * @return
+	 *  True if all four cells are on the board.
+	 */
+	private boolean fits(int x, int y, int z, int[] d) {
+		int e = LENGTH - 1;
+		return inside(x + d[0]*e) && inside(y + d[1]*e) && inside(z + d[2]*e);
+	}
+
+	/**
+	 * @param i
+	 *  A coordinate component.
+	 * @return
+	 *  True if the component is on the board.
+	 */
+	private boolean inside(int i) {
+		return i >= 0 && i < dim;
+	}
+
+	/**
+	 * Convert a location into a cell index.
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The cell index of the location.
+	 */
+	int cell(int x, int y, int z) {
+		return ((x * dim) + z) * dim + y;
+	}
+
+	/**
+	 * Convert an (x,z) column into a column index.
+	 * @param x
+	 *  lateral
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The column index.
+	 */
+	int column(int x, int z) {
+		return (x * dim) + z;
+	}
+}
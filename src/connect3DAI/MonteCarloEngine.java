@@ -0,0 +1,55 @@
+package connect3DAI;
+
+/**
+ * Plays the most visited move of a Monte Carlo tree search with a fixed number of playouts.
+ * @author Benjamin
+ *
+ */
+public final class MonteCarloEngine implements Engine {
+
+	/**
+	 * The memory of the tree, a little over a million nodes.
+	 */
+	static final long TREE_BYTES = 32L << 20;
+
+	/**
+	 * The search, which keeps its tree between moves.
+	 */
+	private final MonteCarloSearch search;
+	/**
+	 * The playouts run for each move.
+	 */
+	private final long playouts;
+	/**
+	 * The stats of the last move.
+	 */
+	private SearchStats stats = SearchStats.EMPTY;
+
+	/**
+	 * Create a Monte Carlo engine.
+	 * @param playouts
+	 *  The playouts run for each move.
+	 * @param seed
+	 *  Seeds the playouts.
+	 */
+	public MonteCarloEngine(long playouts, long seed) {
+		this.search = new MonteCarloSearch(TREE_BYTES, seed);
+		this.playouts = playouts;
+	}
+
+	@Override
+	public int chooseMove(Position p) {
+		SearchResult r = search.search(p, playouts);
+		stats = r.stats;
+		return r.move;
+	}
+
+	@Override
+	public SearchStats lastStats() { return stats; }
+
+	@Override
+	public String name() { return "mcts:"+playouts; }
+
+	@Override
+	public boolean supports(int seats) { return seats == 2; }
+}
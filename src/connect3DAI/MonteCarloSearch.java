@@ -0,0 +1,309 @@
+package connect3DAI;
+
+import java.util.Random;
+
+/**
+ * Monte Carlo tree search for two players, UCT with playouts that take a win when one is offered.
+ * The tree lives in a NodePool of fixed size, so memory is set up front and stays flat however long the search runs.
+ * When the pool fills the least visited parts of the tree are pruned and the search carries on.
+ *
+ * The tree is kept between searches: if the next position is reached from the last root by the moves since,
+ * the subtree under them becomes the new root and everything else is freed.
+ * @author Benjamin
+ *
+ */
+public final class MonteCarloSearch {
+
+	/**
+	 * The UCT exploration constant.
+	 */
+	private static final double EXPLORATION = 1.4;
+	/**
+	 * How far ahead of the last root the next position can be and still reuse the tree.
+	 */
+	private static final int REUSE_PLIES = 4;
+	/**
+	 * The scale of the score, a certain win for the seat to move scores this.
+	 */
+	static final int SCORE_SCALE = 1000;
+
+	/**
+	 * The tree.
+	 */
+	private final NodePool pool;
+	/**
+	 * Chooses playout moves and breaks ties.
+	 */
+	private final Random random;
+	/**
+	 * The root of the tree, -1 if there is no tree.
+	 */
+	private int root = -1;
+	/**
+	 * The position at the root.
+	 */
+	private Position rootPosition;
+	/**
+	 * The nodes from the root to the node being expanded.
+	 */
+	private int[] path = new int[0];
+	/**
+	 * Playout scratch space.
+	 */
+	private int[] moves = new int[0];
+	/**
+	 * The visits the root had from earlier searches when the last search started.
+	 */
+	private int reused;
+
+	/**
+	 * Create a search.
+	 * @param memoryBytes
+	 *  The most memory the tree may take.
+	 * @param seed
+	 *  Seeds the playouts.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the memory is too little for a useful tree.
+	 */
+	public MonteCarloSearch(long memoryBytes, long seed) throws IllegalArgumentException {
+		this.pool = new NodePool(memoryBytes);
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Run playouts from a position and choose the most visited move.
+	 * If the searching thread is interrupted the search stops early and returns what it has.
+	 * @param position
+	 *  The position, it is not modified. The game must not be over.
+	 * @param playouts
+	 *  The number of playouts to run.
+	 * @return
+	 *  The most visited move, its score between -SCORE_SCALE and SCORE_SCALE from the expected result,
+	 *  the length of its principal variation and the number of playouts run.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players or is over, or the playout count is not positive.
+	 */
+	public SearchResult search(Position position, long playouts) throws IllegalArgumentException {
+		if(position.seats() != 2) throw new IllegalArgumentException("Monte Carlo search needs two players, found: "+position.seats());
+		if(position.isOver()) throw new IllegalArgumentException("The game is over");
+		if(playouts < 1) throw new IllegalArgumentException("Playouts must be positive: "+playouts);
+		long start = System.nanoTime();
+		descend(position);
+		reused = pool.visits[root];
+		Position p = new Position(position);
+		int cells = p.columns() * p.dim();
+		if(path.length != cells + 1) {
+			path = new int[cells + 1];
+			moves = new int[p.columns()];
+		}
+		long done = 0;
+		while(done < playouts) {
+			if(done > 0 && (done & 255) == 0 && Thread.currentThread().isInterrupted()) break; //always run one, so there is a move
+			if(iterate(p)) done++;
+		}
+		int best = -1, bestVisits = -1, first = pool.firstChild[root];
+		for(int c = first; c < first + pool.childCount[root]; c++) {
+			if(pool.visits[c] > bestVisits) {
+				best = c;
+				bestVisits = pool.visits[c];
+			}
+		}
+		int score = bestVisits > 0 ? Math.round((2 * pool.rewards[best] / bestVisits - 1) * SCORE_SCALE) : 0;
+		SearchStats stats = new SearchStats(1, done, 0, System.nanoTime() - start, 0, 0, 0, 0, 0, depth(best) + 1, depth(best) + 1,
+				new long[0], new long[0]);
+		return new SearchResult(pool.move[best], score, depth(best) + 1, done, stats);
+	}
+
+	/**
+	 * Run one playout: select down the tree, expand a leaf, play randomly to the end and back up the result.
+	 * @param p
+	 *  The root position, left as it was found.
+	 * @return
+	 *  False if the pool filled and had to be pruned instead, the playout is then run again.
+	 */
+	private boolean iterate(Position p) {
+		int node = root, depth = 0;
+		path[0] = root;
+		while(pool.firstChild[node] >= 0 && !p.isOver()) {
+			node = select(node);
+			p.play(pool.move[node]);
+			path[++depth] = node;
+		}
+		if(!p.isOver() && (pool.visits[node] > 0 || node == root)) {
+			if(!expand(node, p)) {
+				for(int i = 0; i < depth; i++) p.undo();
+				root = pool.prune(root, pool.capacity / 2);
+				return false;
+			}
+			node = select(node);
+			p.play(pool.move[node]);
+			path[++depth] = node;
+		}
+		int winner = playout(p);
+		for(int i = 0; i < depth; i++) p.undo();
+		//the seat that played the move into the node at depth i
+		int mover = p.toMove() ^ 1;
+		for(int i = 0; i <= depth; i++, mover ^= 1) {
+			int n = path[i];
+			pool.visits[n]++;
+			pool.rewards[n] += winner < 0 ? 0.5f : winner == mover ? 1f : 0f;
+		}
+		return true;
+	}
+
+	/**
+	 * Give a node a child per playable column.
+	 * @param node
+	 *  The node.
+	 * @param p
+	 *  Its position.
+	 * @return
+	 *  False if the pool is full.
+	 */
+	private boolean expand(int node, Position p) {
+		int n = 0;
+		for(int c = 0; c < p.columns(); c++) {
+			if(p.canPlay(c)) moves[n++] = c;
+		}
+		int first = pool.allocate(n, moves[0]);
+		if(first < 0) return false;
+		for(int i = 1; i < n; i++) pool.move[first + i] = (short)moves[i];
+		pool.firstChild[node] = first;
+		pool.childCount[node] = (short)n;
+		return true;
+	}
+
+	/**
+	 * @param node
+	 *  An expanded node.
+	 * @return
+	 *  The child with the highest upper confidence bound, an unvisited child first.
+	 */
+	private int select(int node) {
+		int first = pool.firstChild[node], count = pool.childCount[node];
+		double log = Math.log(Math.max(1, pool.visits[node]));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		int offset = random.nextInt(count); //so unvisited children are tried in a random order
+		for(int i = 0; i < count; i++) {
+			int c = first + (i + offset) % count;
+			int visits = pool.visits[c];
+			if(visits == 0) return c;
+			double value = pool.rewards[c] / visits + EXPLORATION * Math.sqrt(log / visits);
+			if(value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Play random moves to the end of the game, taking a win whenever one is offered.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @return
+	 *  The winner, -1 for a draw.
+	 */
+	private int playout(Position p) {
+		int played = 0;
+		while(!p.isOver()) {
+			int n = 0, win = -1;
+			for(int c = 0; c < p.columns() && win < 0; c++) {
+				if(!p.canPlay(c)) continue;
+				if(p.isWinningMove(c)) win = c;
+				moves[n++] = c;
+			}
+			p.play(win >= 0 ? win : moves[random.nextInt(n)]);
+			played++;
+		}
+		int winner = p.winner();
+		for(int i = 0; i < played; i++) p.undo();
+		return winner;
+	}
+
+	/**
+	 * Move the root to the position about to be searched, keeping the subtree under it if it follows from the last root.
+	 * @param position
+	 *  The position.
+	 */
+	private void descend(Position position) {
+		int gap = rootPosition == null ? -1 : position.pieces() - rootPosition.pieces();
+		int next = -1;
+		if(gap >= 0 && gap <= REUSE_PLIES && rootPosition.dim() == position.dim()) {
+			next = find(new Position(rootPosition), root, gap, position.hash());
+		}
+		if(next < 0) {
+			pool.clear();
+			root = pool.allocate(1, -1);
+		} else {
+			//transpositions reach the same position, so a match on the hash is as good as a match on the moves.
+			root = pool.prune(next, pool.capacity);
+		}
+		rootPosition = new Position(position);
+	}
+
+	/**
+	 * Look for a position in the tree.
+	 * @param p
+	 *  The position of the node, left as it was found.
+	 * @param node
+	 *  The node.
+	 * @param plies
+	 *  How far below the node to look.
+	 * @param hash
+	 *  The hash of the position looked for.
+	 * @return
+	 *  The node, or -1 if it isn't in the tree.
+	 */
+	private int find(Position p, int node, int plies, long hash) {
+		if(plies == 0) return p.hash() == hash ? node : -1;
+		int first = pool.firstChild[node];
+		if(first < 0 || p.isOver()) return -1;
+		for(int c = first; c < first + pool.childCount[node]; c++) {
+			p.play(pool.move[c]);
+			int found = find(p, c, plies - 1, hash);
+			p.undo();
+			if(found >= 0) return found;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param node
+	 *  A node.
+	 * @return
+	 *  The length of the line of most visited children below it.
+	 */
+	private int depth(int node) {
+		int depth = 0;
+		while(pool.firstChild[node] >= 0) {
+			int first = pool.firstChild[node], best = first;
+			for(int c = first; c < first + pool.childCount[node]; c++) {
+				if(pool.visits[c] > pool.visits[best]) best = c;
+			}
+			if(pool.visits[best] == 0) break;
+			node = best;
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * @return
+	 *  The nodes in the tree.
+	 */
+	public int treeSize() { return pool.size(); }
+
+	/**
+	 * @return
+	 *  The most nodes the tree can hold.
+	 */
+	public int capacity() { return pool.capacity; }
+
+	/**
+	 * @return
+	 *  The playouts through the root that were kept from earlier searches when the last search started.
+	 */
+	public int reusedVisits() { return reused; }
+}
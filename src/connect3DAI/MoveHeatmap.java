@@ -0,0 +1,224 @@
+package connect3DAI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Values every playable column of a position, for showing the player how good each move is.
+ * Each column is a task on a ForkJoinPool searching the position after it. The columns are searched a ply deeper
+ * each round, so a shallow value for every column is ready almost at once and deeper values replace them,
+ * and each value is published as soon as its task finishes.
+ * The game reads the latest values without locking and never waits for the search.
+ * @author Benjamin
+ *
+ */
+public final class MoveHeatmap {
+
+	/**
+	 * The value of a column that hasn't been searched, or can't be played.
+	 */
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	/**
+	 * The size of each pool thread's transposition table, small as there is one per thread.
+	 */
+	private static final int TABLE_BITS = 18;
+
+	/**
+	 * The number of threads searching.
+	 */
+	private final int threads;
+	/**
+	 * Each pool thread's search, shared by the columns it runs so the table carries over between rounds.
+	 */
+	private final ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(new IncrementalEvaluator(), TABLE_BITS));
+	/**
+	 * The latest value of each column for the seat to move, UNKNOWN if there is none yet.
+	 */
+	private volatile AtomicIntegerArray scores = new AtomicIntegerArray(0);
+	/**
+	 * The depth of each column's latest value, in plies from the position.
+	 */
+	private volatile AtomicIntegerArray depths = new AtomicIntegerArray(0);
+	/**
+	 * Runs the rounds, null when not searching.
+	 */
+	private Thread thread;
+	/**
+	 * Runs the column tasks, replaced on every start as stopping interrupts its threads.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Create a heatmap.
+	 * @param threads
+	 *  The number of columns searched at once.
+	 * @throws IllegalArgumentException
+	 *  Thrown if threads is not positive.
+	 */
+	public MoveHeatmap(int threads) throws IllegalArgumentException {
+		if(threads < 1) throw new IllegalArgumentException("Threads must be positive: "+threads);
+		this.threads = threads;
+	}
+
+	/**
+	 * Start valuing the columns of a position, forgetting the values of the previous one.
+	 * @param position
+	 *  The position, it is copied. Only two player positions are searched.
+	 */
+	public void start(Position position) {
+		stop();
+		scores = unknown(position.columns());
+		depths = new AtomicIntegerArray(position.columns());
+		if(position.isOver() || position.seats() != 2) return;
+		Position p = new Position(position);
+		AtomicIntegerArray s = scores, d = depths;
+		pool = new ForkJoinPool(threads);
+		ForkJoinPool tasks = pool;
+		thread = new Thread(() -> refine(p, tasks, s, d), "Heatmap");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop searching and forget the values. Does nothing if not searching.
+	 */
+	public void stop() {
+		if(thread != null) {
+			thread.interrupt();
+			pool.shutdownNow(); //interrupts the searches
+			boolean interrupted = false;
+			while(true) {
+				try {
+					thread.join();
+					pool.awaitTermination(1, TimeUnit.DAYS);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			thread = null;
+			pool = null;
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+		scores = unknown(scores.length());
+		depths = new AtomicIntegerArray(depths.length());
+	}
+
+	private static AtomicIntegerArray unknown(int columns) {
+		AtomicIntegerArray a = new AtomicIntegerArray(columns);
+		for(int c = 0; c < columns; c++) a.set(c, UNKNOWN);
+		return a;
+	}
+
+	/**
+	 * Safe to call from any thread.
+	 * @param column
+	 *  A column.
+	 * @return
+	 *  The latest value of playing it, for the seat to move, or UNKNOWN.
+	 */
+	public int score(int column) {
+		AtomicIntegerArray s = scores;
+		return column < s.length() ? s.get(column) : UNKNOWN;
+	}
+
+	/**
+	 * Safe to call from any thread.
+	 * @param column
+	 *  A column.
+	 * @return
+	 *  The depth its latest value was searched to, 0 if there is none.
+	 */
+	public int depth(int column) {
+		AtomicIntegerArray d = depths;
+		return column < d.length() ? d.get(column) : 0;
+	}
+
+	/**
+	 * Grade the latest values between 0 for the worst column and 1 for the best.
+	 * Forced wins are 1 and forced losses 0, the other values are spread linearly between the best and worst of them.
+	 * Safe to call from any thread.
+	 * @param heat
+	 *  Written to with the grade of each column, NaN if it has no value.
+	 */
+	public void heat(float[] heat) {
+		AtomicIntegerArray s = scores;
+		int low = Integer.MAX_VALUE, high = Integer.MIN_VALUE;
+		int columns = Math.min(heat.length, s.length());
+		for(int c = 0; c < columns; c++) {
+			int v = s.get(c);
+			if(v == UNKNOWN || Math.abs(v) > Search.WIN_BOUND) continue;
+			low = Math.min(low, v);
+			high = Math.max(high, v);
+		}
+		for(int c = 0; c < heat.length; c++) {
+			int v = c < columns ? s.get(c) : UNKNOWN;
+			if(v == UNKNOWN) heat[c] = Float.NaN;
+			else if(v > Search.WIN_BOUND) heat[c] = 1;
+			else if(v < -Search.WIN_BOUND) heat[c] = 0;
+			else heat[c] = high == low ? 0.5f : (float)(v - low) / (high - low);
+		}
+	}
+
+	/**
+	 * The round thread: searches every unresolved column one ply deeper a round, until every column is resolved,
+	 * the board would be full, or it is stopped.
+	 * @param p
+	 *  The position, owned by this thread.
+	 * @param pool
+	 *  Runs the column tasks.
+	 * @param scores
+	 *  Receives the values.
+	 * @param depths
+	 *  Receives the depths.
+	 */
+	private void refine(Position p, ForkJoinPool pool, AtomicIntegerArray scores, AtomicIntegerArray depths) {
+		int empty = p.columns() * p.dim() - p.pieces();
+		boolean[] resolved = new boolean[p.columns()];
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) {
+				resolved[c] = true;
+			} else if(p.isWinningMove(c)) {
+				scores.set(c, Search.WIN - 1);
+				depths.set(c, 1);
+				resolved[c] = true;
+			}
+		}
+		for(int depth = 2; depth <= empty; depth++) {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for(int c = 0; c < p.columns(); c++) {
+				if(resolved[c]) continue;
+				int column = c, d = depth;
+				Position child = new Position(p);
+				child.play(column);
+				tasks.add(() -> {
+					if(child.isOver()) {
+						scores.set(column, 0); //filled the board
+						depths.set(column, d);
+						resolved[column] = true;
+						return null;
+					}
+					Search search = searches.get();
+					SearchResult r = search.search(child, d - 1);
+					if(search.aborted()) return null;
+					int score = DistributedSearch.rootScore(r.score);
+					scores.set(column, score);
+					depths.set(column, d);
+					if(Math.abs(score) > Search.WIN_BOUND) resolved[column] = true;
+					return null;
+				});
+			}
+			if(tasks.isEmpty()) return;
+			try {
+				pool.invokeAll(tasks);
+			} catch (RuntimeException e) {
+				return; //the pool was shut down
+			}
+			if(Thread.currentThread().isInterrupted()) return;
+		}
+	}
+}
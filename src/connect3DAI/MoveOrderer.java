@@ -0,0 +1,175 @@
+package connect3DAI;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the moves of a position so the ones most likely to cause a cutoff are searched first.
+ * Alpha-beta only prunes once it has seen a good move, so the sooner it sees one the less it searches.
+ * Moves are tried in this order:
+ *  The move the transposition table remembers as best.
+ *  Moves that win immediately.
+ *  Moves that block an opponent from winning immediately.
+ *  The two killer moves of the ply, quiet moves that recently caused a cutoff at the same depth.
+ *  Everything else, best history score first.
+ * The history table is indexed by (x,z) column and rewards moves that cause cutoffs anywhere in the tree.
+ * @author Benjamin
+ *
+ */
+final class MoveOrderer {
+
+	private static final int TABLE_MOVE = 1 << 30;
+	private static final int WINNING = 1 << 29;
+	private static final int BLOCKING = 1 << 28;
+	private static final int KILLER_ONE = 1 << 27;
+	private static final int KILLER_TWO = 1 << 26;
+	/**
+	 * History scores are halved when one passes this, so they never overtake the killers.
+	 */
+	private static final int HISTORY_LIMIT = 1 << 24;
+
+	/**
+	 * The two killer moves of each ply, -1 if there is none.
+	 */
+	private final int[][] killers;
+	/**
+	 * How often each column has caused a cutoff, weighted by the depth of the cutoff.
+	 */
+	private final int[] history;
+	/**
+	 * Scratch space for the scores of the moves being sorted.
+	 */
+	private final int[] scores;
+
+	/**
+	 * Create a move orderer for a board size.
+	 * @param columns
+	 *  The number of columns on the board.
+	 * @param maxPly
+	 *  The deepest ply the search can reach.
+	 */
+	MoveOrderer(int columns, int maxPly) {
+		this.killers = new int[maxPly + 1][2];
+		this.history = new int[columns];
+		this.scores = new int[columns];
+		clear();
+	}
+
+	/**
+	 * Forget everything that has been learnt.
+	 */
+	void clear() {
+		for(int[] k : killers) Arrays.fill(k, -1);
+		Arrays.fill(history, 0);
+	}
+
+	/**
+	 * Prepare for a new search. History is kept but weakened, since the position has moved on.
+	 */
+	void age() {
+		for(int[] k : killers) Arrays.fill(k, -1);
+		for(int i = 0; i < history.length; i++) history[i] >>= 2;
+	}
+
+	/**
+	 * Write the playable moves of a position in column order, without sorting them.
+	 * @param p
+	 *  The position.
+	 * @param moves
+	 *  Written to with the moves, must have room for every column.
+	 * @return
+	 *  The number of moves written.
+	 */
+	int generate(Position p, int[] moves) {
+		int n = 0;
+		for(int c = 0, end = p.columns(); c < end; c++) {
+			if(p.canPlay(c)) moves[n++] = c;
+		}
+		return n;
+	}
+
+	/**
+	 * Write the playable moves of a position, best first.
+	 * @param p
+	 *  The position.
+	 * @param ply
+	 *  The distance of the position from the root of the search.
+	 * @param tableMove
+	 *  The move stored in the transposition table, or -1.
+	 * @param moves
+	 *  Written to with the moves, must have room for every column.
+	 * @return
+	 *  The number of moves written.
+	 */
+	int order(Position p, int ply, int tableMove, int[] moves) {
+		int n = generate(p, moves);
+		int me = p.toMove();
+		int[] killer = killers[ply];
+		for(int i = 0; i < n; i++) {
+			int m = moves[i];
+			int s;
+			if(m == tableMove) s = TABLE_MOVE;
+			else if(p.isWinningMove(m, me)) s = WINNING;
+			else if(blocks(p, m, me)) s = BLOCKING;
+			else if(m == killer[0]) s = KILLER_ONE;
+			else if(m == killer[1]) s = KILLER_TWO;
+			else s = history[m];
+			scores[i] = s;
+		}
+		//insertion sort, the move lists are short and it keeps column order between equal scores.
+		for(int i = 1; i < n; i++) {
+			int m = moves[i], s = scores[i];
+			int j = i - 1;
+			while(j >= 0 && scores[j] < s) {
+				moves[j+1] = moves[j];
+				scores[j+1] = scores[j];
+				j--;
+			}
+			moves[j+1] = m;
+			scores[j+1] = s;
+		}
+		return n;
+	}
+
+	/**
+	 * Check if a move stops another seat from winning in that column.
+	 * @param p
+	 *  The position.
+	 * @param column
+	 *  The move.
+	 * @param me
+	 *  The seat making the move.
+	 * @return
+	 *  True if another seat could win by playing in the column.
+	 */
+	private boolean blocks(Position p, int column, int me) {
+		for(int s = 0; s < p.seats(); s++) {
+			if(s != me && p.isWinningMove(column, s)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record that a move caused a beta cutoff.
+	 * @param p
+	 *  The position the move was played from.
+	 * @param move
+	 *  The move.
+	 * @param ply
+	 *  The distance of the position from the root of the search.
+	 * @param depth
+	 *  The remaining depth when the cutoff happened.
+	 */
+	void cutoff(Position p, int move, int ply, int depth) {
+		//wins and blocks are found by the threat check anyway, don't let them crowd out the killers.
+		if(p.isWinningMove(move) || blocks(p, move, p.toMove())) return;
+		int[] killer = killers[ply];
+		if(killer[0] != move) {
+			killer[1] = killer[0];
+			killer[0] = move;
+		}
+		history[move] += depth * depth;
+		if(history[move] > HISTORY_LIMIT) {
+			for(int i = 0; i < history.length; i++) history[i] >>= 1;
+		}
+	}
+}
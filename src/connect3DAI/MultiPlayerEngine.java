@@ -0,0 +1,47 @@
+package connect3DAI;
+
+/**
+ * Plays the best move found by a fixed depth max^n or paranoid search, for games with any number of players.
+ * @author Benjamin
+ *
+ */
+public final class MultiPlayerEngine implements Engine {
+
+	/**
+	 * The search.
+	 */
+	private final MultiPlayerSearch search;
+	/**
+	 * The depth each move is searched to.
+	 */
+	private final int depth;
+	/**
+	 * The stats of the last move.
+	 */
+	private SearchStats stats = SearchStats.EMPTY;
+
+	/**
+	 * Create a multi player engine.
+	 * @param mode
+	 *  How the other seats are assumed to play.
+	 * @param depth
+	 *  The depth each move is searched to.
+	 */
+	public MultiPlayerEngine(MultiPlayerSearch.Mode mode, int depth) {
+		this.search = new MultiPlayerSearch(mode);
+		this.depth = depth;
+	}
+
+	@Override
+	public int chooseMove(Position p) {
+		SearchResult r = search.search(p, depth);
+		stats = r.stats;
+		return r.move;
+	}
+
+	@Override
+	public SearchStats lastStats() { return stats; }
+
+	@Override
+	public String name() { return search.mode().name().toLowerCase()+":"+depth; }
+}
@@ -0,0 +1,326 @@
+package connect3DAI;
+
+/**
+ * Search for games with any number of players, where two player alpha-beta does not apply.
+ *
+ * Max^n gives every node a vector of scores, one per seat, and the seat to move picks the child that is best for itself.
+ * Every vector sums to at most MAX_SUM, so once the seat to move is guaranteed enough the seat above it
+ * can't do better here, and the rest of the children are skipped (shallow pruning).
+ *
+ * Paranoid assumes every other seat is playing against the seat at the root, which turns the game into
+ * two sides and allows full alpha-beta cutoffs. It searches deeper for the same work but plays more cautiously.
+ *
+ * Score vectors are kept in one int array, a row of seats per ply, so the search does not allocate.
+ * @author Benjamin
+ *
+ */
+public final class MultiPlayerSearch {
+
+	/**
+	 * How the other seats are assumed to play.
+	 */
+	public enum Mode {
+		/**
+		 * Each seat plays for itself.
+		 */
+		MAXN,
+		/**
+		 * Every other seat plays against the root seat.
+		 */
+		PARANOID
+	}
+
+	/**
+	 * The most the scores of a max^n vector can add up to. A win is worth all of it, less the plies it takes.
+	 */
+	static final int MAX_SUM = Search.WIN;
+	/**
+	 * What evaluated vectors add up to, below any win.
+	 */
+	private static final int EVAL_SUM = Search.WIN_BOUND;
+	/**
+	 * Larger than any paranoid score.
+	 */
+	private static final int INFINITY = Search.WIN + 1;
+
+	/**
+	 * The assumption about the other seats.
+	 */
+	private final Mode mode;
+	/**
+	 * Sorts the moves of each position, created for the first board size searched.
+	 */
+	private MoveOrderer orderer;
+	/**
+	 * A move list for each ply.
+	 */
+	private int[][] moveLists;
+	/**
+	 * The max^n score vector of each ply, indexed ply * seats + seat.
+	 */
+	private int[] vectors;
+	/**
+	 * Whether moves are sorted before they are searched.
+	 */
+	private boolean ordering = true;
+	/**
+	 * Whether max^n uses shallow pruning.
+	 */
+	private boolean pruning = true;
+	/**
+	 * The number of positions visited in the current search.
+	 */
+	private long nodes;
+	/**
+	 * Counters for the stats of the current search.
+	 */
+	private long cutoffs, firstMoveCutoffs;
+	/**
+	 * The best move found at the root of the current iteration.
+	 */
+	private int rootMove;
+	/**
+	 * The seat the paranoid search is playing for.
+	 */
+	private int rootSeat;
+	/**
+	 * Set when the searching thread is interrupted.
+	 */
+	private boolean aborted;
+
+	/**
+	 * Create a search.
+	 * @param mode
+	 *  How the other seats are assumed to play.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the mode is null.
+	 */
+	public MultiPlayerSearch(Mode mode) throws IllegalArgumentException {
+		if(mode == null) throw new IllegalArgumentException("Mode cannot be null!");
+		this.mode = mode;
+	}
+
+	/**
+	 * Turn move ordering on or off, only useful to measure how much it helps.
+	 * @param ordering
+	 *  True to sort moves before searching them.
+	 */
+	public void setOrdering(boolean ordering) { this.ordering = ordering; }
+
+	/**
+	 * Turn max^n shallow pruning on or off, only useful to measure how much it helps.
+	 * @param pruning
+	 *  True to prune.
+	 */
+	public void setPruning(boolean pruning) { this.pruning = pruning; }
+
+	/**
+	 * @return
+	 *  How the other seats are assumed to play.
+	 */
+	public Mode mode() { return mode; }
+
+	/**
+	 * Find the best move for the seat to move by searching one ply deeper each iteration until depth is reached.
+	 * If the searching thread is interrupted the last finished iteration is returned.
+	 * @param position
+	 *  The position to search, it is not modified.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @return
+	 *  The best move found. The score is the seat to move's share of MAX_SUM for max^n,
+	 *  and the same scale as Search for paranoid.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the depth is not positive.
+	 */
+	public SearchResult search(Position position, int depth) throws IllegalArgumentException {
+		if(depth < 1) throw new IllegalArgumentException("Depth must be positive: "+depth);
+		long start = System.nanoTime();
+		Position p = new Position(position);
+		prepare(p);
+		nodes = cutoffs = firstMoveCutoffs = 0;
+		aborted = false;
+		rootSeat = p.toMove();
+		int maxDepth = Math.min(depth, p.columns() * p.dim() - p.pieces());
+		long[] iterationNodes = new long[maxDepth], iterationNanos = new long[maxDepth];
+		int score = 0, reached = 0, best = -1;
+		for(int d = 1; d <= maxDepth && !p.isOver(); d++) {
+			long iterationStart = System.nanoTime(), nodesBefore = nodes;
+			int result;
+			if(mode == Mode.MAXN) {
+				maxn(p, d, 0, Integer.MAX_VALUE);
+				result = vectors[rootSeat];
+			} else {
+				result = paranoid(p, d, -INFINITY, INFINITY, 0);
+			}
+			iterationNodes[d - 1] = nodes - nodesBefore;
+			iterationNanos[d - 1] = System.nanoTime() - iterationStart;
+			if(aborted) break;
+			score = result;
+			best = rootMove;
+			reached = d;
+			if(isDecided(score)) break;
+		}
+		SearchStats stats = new SearchStats(1, nodes, 0, System.nanoTime() - start, 0, 0, 0,
+				cutoffs, firstMoveCutoffs, reached, reached, iterationNodes, iterationNanos);
+		return new SearchResult(best, score, reached, nodes, stats);
+	}
+
+	/**
+	 * @param score
+	 *  A root score.
+	 * @return
+	 *  True if the score is a forced win or loss, so searching deeper won't change it.
+	 */
+	private boolean isDecided(int score) {
+		if(mode == Mode.MAXN) return score > EVAL_SUM;
+		return Math.abs(score) > Search.WIN_BOUND;
+	}
+
+	/**
+	 * Make sure the per board size structures fit the position.
+	 * @param p
+	 *  The position about to be searched.
+	 */
+	private void prepare(Position p) {
+		int cells = p.columns() * p.dim();
+		if(moveLists == null || moveLists[0].length != p.columns()) {
+			moveLists = new int[cells + 1][p.columns()];
+			orderer = new MoveOrderer(p.columns(), cells);
+		} else {
+			orderer.age();
+		}
+		if(vectors == null || vectors.length != (cells + 2) * p.seats()) vectors = new int[(cells + 2) * p.seats()];
+	}
+
+	/**
+	 * Max^n with shallow pruning, writes the score vector of the position to its row of vectors.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param depth
+	 *  The remaining plies to search.
+	 * @param ply
+	 *  The distance from the root.
+	 * @param bound
+	 *  If the seat to move can get this much the seat above won't come here, so the search can stop.
+	 */
+	private void maxn(Position p, int depth, int ply, int bound) {
+		if((++nodes & 1023) == 0 && Thread.currentThread().isInterrupted()) aborted = true;
+		if(aborted) return;
+		int seats = p.seats();
+		int row = ply * seats;
+		if(p.isFull()) {
+			for(int s = 0; s < seats; s++) vectors[row + s] = MAX_SUM / seats;
+			return;
+		}
+		if(depth == 0) {
+			evaluate(p, row);
+			return;
+		}
+		int me = p.toMove();
+		int child = row + seats;
+		int[] moves = moveLists[ply];
+		int n = ordering ? orderer.order(p, ply, -1, moves) : orderer.generate(p, moves);
+		int best = -1, bestMove = moves[0];
+		for(int i = 0; i < n; i++) {
+			int m = moves[i];
+			if(p.isWinningMove(m)) {
+				for(int s = 0; s < seats; s++) vectors[child + s] = 0;
+				vectors[child + me] = MAX_SUM - ply - 1;
+			} else {
+				p.play(m);
+				maxn(p, depth - 1, ply + 1, pruning ? MAX_SUM - best : Integer.MAX_VALUE);
+				p.undo();
+				if(aborted) return;
+			}
+			if(vectors[child + me] > best) {
+				best = vectors[child + me];
+				bestMove = m;
+				System.arraycopy(vectors, child, vectors, row, seats);
+			}
+			if(best >= bound) {
+				cutoffs++;
+				if(i == 0) firstMoveCutoffs++;
+				if(ordering) orderer.cutoff(p, m, ply, depth);
+				break;
+			}
+		}
+		if(ply == 0) rootMove = bestMove;
+	}
+
+	/**
+	 * Write the evaluation of a position as a score vector, each seat's share of the line scores.
+	 * @param p
+	 *  The position.
+	 * @param row
+	 *  Where the vector is written in vectors.
+	 */
+	private void evaluate(Position p, int row) {
+		int seats = p.seats();
+		long total = p.totalScore() + seats; //one extra each, so an empty board is shared evenly
+		for(int s = 0; s < seats; s++) {
+			vectors[row + s] = (int)((p.score(s) + 1L) * EVAL_SUM / total);
+		}
+	}
+
+	/**
+	 * Paranoid alpha-beta. The root seat maximises, every other seat minimises.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param depth
+	 *  The remaining plies to search.
+	 * @param alpha
+	 *  The score the root seat is already guaranteed.
+	 * @param beta
+	 *  The score the other seats are already guaranteed.
+	 * @param ply
+	 *  The distance from the root.
+	 * @return
+	 *  The score of the position for the root seat.
+	 */
+	private int paranoid(Position p, int depth, int alpha, int beta, int ply) {
+		if((++nodes & 1023) == 0 && Thread.currentThread().isInterrupted()) aborted = true;
+		if(aborted) return 0;
+		if(p.isFull()) return 0;
+		if(depth == 0) {
+			int mine = p.score(rootSeat);
+			return mine - (p.totalScore() - mine) / (p.seats() - 1);
+		}
+		boolean maximising = p.toMove() == rootSeat;
+		int[] moves = moveLists[ply];
+		int n = ordering ? orderer.order(p, ply, -1, moves) : orderer.generate(p, moves);
+		int best = maximising ? -INFINITY : INFINITY, bestMove = moves[0];
+		for(int i = 0; i < n; i++) {
+			int m = moves[i];
+			int score;
+			if(p.isWinningMove(m)) {
+				score = maximising ? Search.WIN - ply - 1 : -(Search.WIN - ply - 1);
+			} else {
+				p.play(m);
+				score = paranoid(p, depth - 1, alpha, beta, ply + 1);
+				p.undo();
+				if(aborted) return 0;
+			}
+			if(maximising ? score > best : score < best) {
+				best = score;
+				bestMove = m;
+			}
+			if(maximising) alpha = Math.max(alpha, score);
+			else beta = Math.min(beta, score);
+			if(alpha >= beta) {
+				cutoffs++;
+				if(i == 0) firstMoveCutoffs++;
+				if(ordering) orderer.cutoff(p, m, ply, depth);
+				break;
+			}
+		}
+		if(ply == 0) rootMove = bestMove;
+		return best;
+	}
+
+	/**
+	 * @return
+	 *  True if the last search was stopped by an interrupt before reaching its depth.
+	 */
+	boolean aborted() { return aborted; }
+}
@@ -0,0 +1,331 @@
+package connect3DAI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Scores two player positions with a small neural network: one hidden layer of rectified units and a linear output.
+ * The inputs, from the point of view of the seat to move, are a plane of its pieces, a plane of the opponent's pieces,
+ * and the LineEvaluator feature counts of both seats.
+ *
+ * The piece planes are sparse, so the first layer is the sum of the weight rows of the occupied cells rather than
+ * a product with a mostly zero input. A position's children differ from it by one piece, so evaluateAfter sums
+ * the rows of the parent's pieces once and each child only adds the row of its new piece and its line counts.
+ * The children are scored as one batch in flat float arrays, the inner loops run along a row of hidden units
+ * so the JIT compiles them to vector instructions.
+ *
+ * Weights are read from a file, big endian:
+ *  int magic, short version, byte dim, byte seats (2), int hidden units,
+ *  then floats: the input weights a row of hidden units per input, the hidden biases, the output weights, the output bias.
+ * Inputs are ordered: the mover's piece in each cell, the opponent's piece in each cell, the mover's features,
+ * the opponent's features. The output is in the same units as the LineEvaluator.
+ *
+ * Holds scratch arrays, so each search needs its own.
+ * @author Benjamin
+ *
+ */
+public final class NetworkEvaluator implements BatchEvaluator {
+
+	/**
+	 * "C3DN"
+	 */
+	static final int MAGIC = 0x4333444E;
+	/**
+	 * The layout version, bumped if the inputs change.
+	 */
+	static final short VERSION = 1;
+	/**
+	 * The output is clamped to this, well inside the search's win scores.
+	 */
+	static final int MAX_SCORE = Search.WIN_BOUND / 2;
+
+	/**
+	 * The board size the network was trained for.
+	 */
+	private final int dim;
+	/**
+	 * The number of cells, columns and hidden units.
+	 */
+	private final int cells, columns, hidden;
+	/**
+	 * The first layer, the row of hidden units of input i starts at i * hidden.
+	 */
+	private final float[] inputWeights;
+	private final float[] hiddenBias;
+	/**
+	 * The output layer.
+	 */
+	private final float[] outputWeights;
+	private final float outputBias;
+	/**
+	 * The first layer of the position being evaluated, shared by its children.
+	 */
+	private final float[] base;
+	/**
+	 * The first layer of each child in a batch, one row of hidden units per child.
+	 */
+	private final float[] batch;
+	/**
+	 * The feature counts of both seats.
+	 */
+	private final int[] counts = new int[2 * LineEvaluator.FEATURES];
+
+	/**
+	 * Create a network from its weights, the arrays are copied.
+	 * @param dim
+	 *  The board size.
+	 * @param hidden
+	 *  The number of hidden units.
+	 * @param inputWeights
+	 *  A row of hidden units per input.
+	 * @param hiddenBias
+	 *  A bias per hidden unit.
+	 * @param outputWeights
+	 *  A weight per hidden unit.
+	 * @param outputBias
+	 *  The output bias.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board size is invalid, or an array is the wrong length.
+	 */
+	public NetworkEvaluator(int dim, int hidden, float[] inputWeights, float[] hiddenBias, float[] outputWeights, float outputBias)
+			throws IllegalArgumentException {
+		Lines lines = Lines.of(dim);
+		if(hidden < 1) throw new IllegalArgumentException("Hidden units must be positive: "+hidden);
+		if(inputWeights.length != inputs(dim) * hidden || hiddenBias.length != hidden || outputWeights.length != hidden) {
+			throw new IllegalArgumentException("Weights don't match "+inputs(dim)+" inputs and "+hidden+" hidden units");
+		}
+		this.dim = dim;
+		this.cells = lines.cells;
+		this.columns = lines.columns;
+		this.hidden = hidden;
+		this.inputWeights = inputWeights.clone();
+		this.hiddenBias = hiddenBias.clone();
+		this.outputWeights = outputWeights.clone();
+		this.outputBias = outputBias;
+		this.base = new float[hidden];
+		this.batch = new float[columns * hidden];
+	}
+
+	/**
+	 * @param dim
+	 *  A board size.
+	 * @return
+	 *  The number of inputs of a network for it.
+	 */
+	static int inputs(int dim) {
+		return 2 * dim * dim * dim + 2 * LineEvaluator.FEATURES;
+	}
+
+	/**
+	 * Create a network that scores exactly as the LineEvaluator's default weights do, a starting point for training.
+	 * The first units each pass one feature count through, the rest and the piece planes start at zero.
+	 * @param dim
+	 *  The board size.
+	 * @param hidden
+	 *  The number of hidden units, at least two per feature.
+	 * @return
+	 *  The network.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board size is invalid or there are too few hidden units.
+	 */
+	public static NetworkEvaluator fromLines(int dim, int hidden) throws IllegalArgumentException {
+		int f = LineEvaluator.FEATURES;
+		if(hidden < 2 * f) throw new IllegalArgumentException("Need at least "+2 * f+" hidden units: "+hidden);
+		int[] weights = {LineEvaluator.WEIGHTS[1], LineEvaluator.WEIGHTS[2], LineEvaluator.WEIGHTS[3], LineEvaluator.PLAYABLE_THREAT};
+		int first = inputs(dim) - 2 * f;
+		float[] in = new float[inputs(dim) * hidden], out = new float[hidden];
+		for(int k = 0; k < 2 * f; k++) {
+			in[(first + k) * hidden + k] = 1;
+			out[k] = k < f ? weights[k] : -weights[k - f];
+		}
+		return new NetworkEvaluator(dim, hidden, in, new float[hidden], out, 0);
+	}
+
+	/**
+	 * Read a network from a file.
+	 * @param file
+	 *  The weights file.
+	 * @return
+	 *  The network.
+	 * @throws IOException
+	 *  Thrown if the file can't be read or is not a network.
+	 */
+	public static NetworkEvaluator load(Path file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt() != MAGIC) throw new IOException("Not a network");
+			short version = in.readShort();
+			if(version != VERSION) throw new IOException("Unsupported network version: "+version);
+			int dim = in.readByte();
+			if(in.readByte() != 2) throw new IOException("Networks are for two players");
+			int hidden = in.readInt();
+			if(dim < 1 || hidden < 1 || (long)inputs(dim) * hidden > Integer.MAX_VALUE) throw new IOException("Bad network size");
+			float[] inputWeights = readFloats(in, inputs(dim) * hidden), hiddenBias = readFloats(in, hidden);
+			float[] outputWeights = readFloats(in, hidden);
+			float outputBias = in.readFloat();
+			try {
+				return new NetworkEvaluator(dim, hidden, inputWeights, hiddenBias, outputWeights, outputBias);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Bad network: "+e.getMessage());
+			}
+		}
+	}
+
+	private static float[] readFloats(DataInputStream in, int count) throws IOException {
+		float[] values = new float[count];
+		for(int i = 0; i < count; i++) values[i] = in.readFloat();
+		return values;
+	}
+
+	/**
+	 * Write the network in the format load reads.
+	 * @param file
+	 *  The file to write, replaced if it exists.
+	 * @throws IOException
+	 *  Thrown if the file can't be written.
+	 */
+	public void write(Path file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeByte(dim);
+			out.writeByte(2);
+			out.writeInt(hidden);
+			for(float w : inputWeights) out.writeFloat(w);
+			for(float b : hiddenBias) out.writeFloat(b);
+			for(float w : outputWeights) out.writeFloat(w);
+			out.writeFloat(outputBias);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position is not a two player position of the network's board size.
+	 */
+	@Override
+	public int evaluate(Position p) throws IllegalArgumentException {
+		check(p);
+		int me = p.toMove();
+		System.arraycopy(hiddenBias, 0, base, 0, hidden);
+		addPieces(p, me, base);
+		PackedLines.count(p, counts);
+		addFeatures(me, base, 0);
+		return output(base, 0);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position is not a two player position of the network's board size.
+	 */
+	@Override
+	public void evaluateAfter(Position p, int[] moves, int count, int[] scores) throws IllegalArgumentException {
+		check(p);
+		int them = p.toMove(), me = 1 - them; //the seat to move in the children
+		System.arraycopy(hiddenBias, 0, base, 0, hidden);
+		addPieces(p, me, base);
+		for(int i = 0; i < count; i++) {
+			int m = moves[i], offset = i * hidden;
+			System.arraycopy(base, 0, batch, offset, hidden);
+			addRow(batch, offset, cells + m * dim + p.height(m)); //the new piece is the opponent's in the child
+			p.play(m);
+			PackedLines.count(p, counts);
+			p.undo();
+			addFeatures(me, batch, offset);
+		}
+		for(int i = 0; i < count; i++) scores[i] = output(batch, i * hidden);
+	}
+
+	/**
+	 * @param p
+	 *  A position to evaluate.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the network wasn't made for it.
+	 */
+	private void check(Position p) throws IllegalArgumentException {
+		if(p.seats != 2 || p.dim() != dim) {
+			throw new IllegalArgumentException("Network is for 2 players on a "+dim+" board, found "+p.seats+" on "+p.dim());
+		}
+	}
+
+	/**
+	 * Add the rows of every piece on the board.
+	 * @param p
+	 *  The position.
+	 * @param me
+	 *  The seat whose pieces are in the first plane.
+	 * @param layer
+	 *  The hidden units.
+	 */
+	private void addPieces(Position p, int me, float[] layer) {
+		byte[] occupants = p.cells;
+		for(int column = 0; column < columns; column++) {
+			for(int y = 0, height = p.height(column); y < height; y++) {
+				int cell = column * dim + y;
+				addRow(layer, 0, occupants[cell] - 1 == me ? cell : cells + cell);
+			}
+		}
+	}
+
+	/**
+	 * Add the rows of the feature counts, scaled by the counts.
+	 * @param me
+	 *  The seat whose features come first.
+	 * @param layer
+	 *  Holds the hidden units.
+	 * @param offset
+	 *  Where the hidden units start.
+	 */
+	private void addFeatures(int me, float[] layer, int offset) {
+		int f = LineEvaluator.FEATURES, first = 2 * cells;
+		for(int k = 0; k < 2 * f; k++) {
+			int count = counts[k < f ? me * f + k : (1 - me) * f + k - f];
+			if(count == 0) continue;
+			int row = (first + k) * hidden;
+			for(int j = 0; j < hidden; j++) layer[offset + j] += count * inputWeights[row + j];
+		}
+	}
+
+	/**
+	 * Add the row of an input that is on.
+	 * @param layer
+	 *  Holds the hidden units.
+	 * @param offset
+	 *  Where the hidden units start.
+	 * @param input
+	 *  The input.
+	 */
+	private void addRow(float[] layer, int offset, int input) {
+		int row = input * hidden;
+		for(int j = 0; j < hidden; j++) layer[offset + j] += inputWeights[row + j];
+	}
+
+	/**
+	 * @param layer
+	 *  Holds the hidden units, before rectifying.
+	 * @param offset
+	 *  Where the hidden units start.
+	 * @return
+	 *  The output, rounded and clamped.
+	 */
+	private int output(float[] layer, int offset) {
+		float sum = outputBias;
+		for(int j = 0; j < hidden; j++) sum += Math.max(0f, layer[offset + j]) * outputWeights[j];
+		return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, Math.round(sum)));
+	}
+
+	/**
+	 * @return
+	 *  The board size the network was trained for.
+	 */
+	public int dim() { return dim; }
+
+	/**
+	 * @return
+	 *  The number of hidden units.
+	 */
+	public int hidden() { return hidden; }
+}
@@ -0,0 +1,181 @@
+package connect3DAI;
+
+/**
+ * The nodes of a Monte Carlo tree, kept in parallel primitive arrays allocated once, so a long search
+ * makes no garbage and its memory stays flat.
+ * A node is an index. The children of a node are allocated together, one after another, so a node only links to
+ * its first child and counts them.
+ *
+ * When the pool is full it is pruned: the children of the least visited nodes are dropped, leaving those nodes as
+ * leaves with their counts, until at most half the pool is in use. Then the live nodes are slid to the front,
+ * keeping their order, so the free space is in one piece again.
+ * @author Benjamin
+ *
+ */
+final class NodePool {
+
+	/**
+	 * The memory one node takes, including the scratch space for pruning.
+	 */
+	static final int BYTES_PER_NODE = 4 + 4 + 4 + 2 + 2 + 4 + 4;
+
+	/**
+	 * The number of nodes the pool holds.
+	 */
+	final int capacity;
+	/**
+	 * The number of times each node has been visited.
+	 */
+	final int[] visits;
+	/**
+	 * The total reward of each node, for the seat that played the move into it.
+	 */
+	final float[] rewards;
+	/**
+	 * The first child of each node, -1 if it has not been expanded.
+	 */
+	final int[] firstChild;
+	/**
+	 * The number of children of each node.
+	 */
+	final short[] childCount;
+	/**
+	 * The column played to reach each node.
+	 */
+	final short[] move;
+	/**
+	 * Where each live node moves to while pruning, -1 for a dead node.
+	 */
+	private final int[] forward;
+	/**
+	 * The nodes still to mark while pruning.
+	 */
+	private final int[] stack;
+	/**
+	 * The number of nodes allocated.
+	 */
+	private int size;
+
+	/**
+	 * Allocate a pool.
+	 * @param bytes
+	 *  The memory the pool may take.
+	 * @throws IllegalArgumentException
+	 *  Thrown if that is too little for a useful tree.
+	 */
+	NodePool(long bytes) throws IllegalArgumentException {
+		long nodes = Math.min(Integer.MAX_VALUE - 8, bytes / BYTES_PER_NODE);
+		if(nodes < 1024) throw new IllegalArgumentException("Too little memory for a tree: "+bytes+" bytes");
+		this.capacity = (int)nodes;
+		this.visits = new int[capacity];
+		this.rewards = new float[capacity];
+		this.firstChild = new int[capacity];
+		this.childCount = new short[capacity];
+		this.move = new short[capacity];
+		this.forward = new int[capacity];
+		this.stack = new int[capacity];
+	}
+
+	/**
+	 * @return
+	 *  The number of nodes in use.
+	 */
+	int size() { return size; }
+
+	/**
+	 * Free every node.
+	 */
+	void clear() { size = 0; }
+
+	/**
+	 * Allocate nodes one after another, unvisited and unexpanded.
+	 * @param count
+	 *  The number of nodes.
+	 * @param column
+	 *  The move of the first node, the rest are given theirs by the caller.
+	 * @return
+	 *  The first node, or -1 if the pool is full.
+	 */
+	int allocate(int count, int column) {
+		if(size + count > capacity) return -1;
+		int first = size;
+		for(int n = first; n < first + count; n++) {
+			visits[n] = 0;
+			rewards[n] = 0;
+			firstChild[n] = -1;
+			childCount[n] = 0;
+		}
+		move[first] = (short)column;
+		size += count;
+		return first;
+	}
+
+	/**
+	 * Drop everything outside a subtree, and the children of its least visited nodes until at most keep nodes are left.
+	 * @param root
+	 *  The root of the subtree, its own children are always kept.
+	 * @param keep
+	 *  The most nodes to leave.
+	 * @return
+	 *  Where the root has moved to.
+	 */
+	int prune(int root, int keep) {
+		int threshold = 0;
+		while(mark(root, threshold, false) > keep && threshold < visits[root]) threshold = Math.max(1, threshold * 2);
+		mark(root, threshold, true);
+		int live = 0;
+		for(int n = 0; n < size; n++) {
+			if(forward[n] >= 0) forward[n] = live++;
+		}
+		//live nodes only move down, and into places already read, so one pass in order is enough.
+		for(int n = 0; n < size; n++) {
+			int to = forward[n];
+			if(to < 0) continue;
+			visits[to] = visits[n];
+			rewards[to] = rewards[n];
+			childCount[to] = childCount[n];
+			move[to] = move[n];
+			firstChild[to] = firstChild[n] < 0 ? -1 : forward[firstChild[n]];
+		}
+		size = live;
+		return forward[root];
+	}
+
+	/**
+	 * Find the nodes a prune keeps.
+	 * @param root
+	 *  The root of the subtree.
+	 * @param threshold
+	 *  Nodes visited fewer times than this lose their children.
+	 * @param apply
+	 *  If true the nodes kept are marked in forward and the dropped children unlinked, otherwise they are only counted.
+	 * @return
+	 *  The number of nodes kept.
+	 */
+	private int mark(int root, int threshold, boolean apply) {
+		if(apply) {
+			for(int n = 0; n < size; n++) forward[n] = -1;
+			forward[root] = 0;
+		}
+		int kept = 1, top = 0;
+		stack[top++] = root;
+		while(top > 0) {
+			int n = stack[--top];
+			int first = firstChild[n];
+			if(first < 0) continue;
+			if(n != root && visits[n] < threshold) {
+				if(apply) {
+					firstChild[n] = -1;
+					childCount[n] = 0;
+				}
+				continue;
+			}
+			for(int c = first; c < first + childCount[n]; c++) {
+				if(apply) forward[c] = 0;
+				stack[top++] = c;
+			}
+			kept += childCount[n];
+		}
+		return kept;
+	}
+}
@@ -0,0 +1,50 @@
+package connect3DAI;
+
+/**
+ * Adds noise to another evaluator, to make the computer weaker.
+ * The noise is taken from the position's hash and a seed rather than a random number generator,
+ * so a position always gets the same score and searches stay repeatable.
+ * @author Benjamin
+ *
+ */
+final class NoisyEvaluator implements Evaluator {
+
+	/**
+	 * The evaluator the noise is added to.
+	 */
+	private final Evaluator base;
+	/**
+	 * The noise is between -amplitude and amplitude.
+	 */
+	private final int amplitude;
+	/**
+	 * Mixed into the hash, so different seeds make different mistakes.
+	 */
+	private final long seed;
+
+	/**
+	 * Create a noisy evaluator.
+	 * @param base
+	 *  The evaluator the noise is added to.
+	 * @param amplitude
+	 *  The largest noise, positive.
+	 * @param seed
+	 *  Chooses the noise.
+	 */
+	NoisyEvaluator(Evaluator base, int amplitude, long seed) {
+		this.base = base;
+		this.amplitude = amplitude;
+		this.seed = seed;
+	}
+
+	@Override
+	public int evaluate(Position p) {
+		//SplitMix64 finaliser, spreads similar hashes apart.
+		long z = p.hash() ^ seed;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		int noise = (int)Math.floorMod(z, 2L * amplitude + 1) - amplitude;
+		return base.evaluate(p) + noise;
+	}
+}
@@ -0,0 +1,184 @@
+package connect3DAI;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read only book of opening moves, memory mapped from a file made by the BookBuilder.
+ * The file is a small header followed by fixed width entries sorted by canonical hash,
+ * so opening a book does no parsing and looking up a move is a search over the mapped entries.
+ * Hashes are spread evenly, which lets interpolation search find most entries in a couple of probes.
+ *
+ * File layout, big endian:
+ *  header: int magic, short version, byte dim, byte seats, long entry count.
+ *  entry: long canonical hash, int score, short move in the canonical frame, short depth.
+ * @author Benjamin
+ *
+ */
+public final class OpeningBook {
+
+	/**
+	 * "C3DB"
+	 */
+	static final int MAGIC = 0x43334442;
+	/**
+	 * The layout version, bumped if the entry format changes.
+	 */
+	static final short VERSION = 1;
+	/**
+	 * The size of the header in bytes.
+	 */
+	static final int HEADER_BYTES = 16;
+	/**
+	 * The size of an entry in bytes.
+	 */
+	static final int ENTRY_BYTES = 16;
+
+	/**
+	 * The mapped file.
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The board size the book was built for.
+	 */
+	private final int dim;
+	/**
+	 * The number of players the book was built for.
+	 */
+	private final int seats;
+	/**
+	 * The number of entries in the book.
+	 */
+	private final int size;
+
+	/**
+	 * Map a book file into memory.
+	 * @param file
+	 *  The book file.
+	 * @return
+	 *  The book.
+	 * @throws IOException
+	 *  Thrown if the file can't be read or is not a book.
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			//the mapping stays valid after the channel is closed.
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Check the header of a mapped book.
+	 * @param buffer
+	 *  The mapped file.
+	 * @throws IOException
+	 *  Thrown if the header is wrong.
+	 */
+	private OpeningBook(MappedByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not an opening book");
+		if(buffer.getShort(4) != VERSION) throw new IOException("Unsupported book version: "+buffer.getShort(4));
+		this.buffer = buffer;
+		this.dim = buffer.get(6);
+		this.seats = buffer.get(7);
+		long count = buffer.getLong(8);
+		if(HEADER_BYTES + count * ENTRY_BYTES != buffer.capacity()) throw new IOException("Book is truncated");
+		this.size = (int)count;
+	}
+
+	/**
+	 * Look up the book move of a position.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The column the book recommends, or -1 if the position is not in the book.
+	 */
+	public int probe(Position p) {
+		if(p.dim() != dim || p.seats() != seats) return -1;
+		int symmetry = p.canonicalSymmetry();
+		int i = find(p.symmetricHash(symmetry));
+		if(i < 0) return -1;
+		int move = p.fromSymmetric(buffer.getShort(offset(i) + 12), symmetry);
+		return p.canPlay(move) ? move : -1;
+	}
+
+	/**
+	 * Look up the stored score of a position.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The score of the book move for the seat to move, or Integer.MIN_VALUE if the position is not in the book.
+	 */
+	public int score(Position p) {
+		if(p.dim() != dim || p.seats() != seats) return Integer.MIN_VALUE;
+		int i = find(p.canonicalHash());
+		return i < 0 ? Integer.MIN_VALUE : buffer.getInt(offset(i) + 8);
+	}
+
+	/**
+	 * Interpolation search, falling back to bisection when the guesses stop narrowing the range quickly.
+	 * Keys are compared unsigned-style by flipping the sign bit, which keeps them in the builder's sort order.
+	 * @param hash
+	 *  The canonical hash being looked for.
+	 * @return
+	 *  The index of the entry, or -1.
+	 */
+	private int find(long hash) {
+		long target = hash ^ Long.MIN_VALUE;
+		int lo = 0, hi = size - 1;
+		int probes = 0;
+		while(lo <= hi) {
+			long low = key(lo), high = key(hi);
+			if(target < low || target > high) return -1;
+			int mid;
+			if(probes++ < 4 && high != low) {
+				//guess where the key is from how far it is between the ends of the range.
+				double fraction = ((double)target - (double)low) / ((double)high - (double)low);
+				mid = lo + (int)Math.min(hi - lo, Math.max(0, (long)(fraction * (hi - lo))));
+			} else {
+				mid = (lo + hi) >>> 1;
+			}
+			long k = key(mid);
+			if(k == target) return mid;
+			if(k < target) lo = mid + 1;
+			else hi = mid - 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param i
+	 *  An entry index.
+	 * @return
+	 *  The key of the entry with the sign bit flipped.
+	 */
+	private long key(int i) {
+		return buffer.getLong(offset(i)) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param i
+	 *  An entry index.
+	 * @return
+	 *  The byte offset of the entry in the file.
+	 */
+	private static int offset(int i) {
+		return HEADER_BYTES + i * ENTRY_BYTES;
+	}
+
+	/**
+	 * @return
+	 *  The number of positions in the book.
+	 */
+	public int size() { return size; }
+
+	/**
+	 * @return
+	 *  The board size the book was built for.
+	 */
+	public int dim() { return dim; }
+}
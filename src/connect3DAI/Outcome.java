@@ -0,0 +1,37 @@
+package connect3DAI;
+
+/**
+ * The game theoretic result of a position, from the point of view of the seat to move.
+ * @author Benjamin
+ *
+ */
+public enum Outcome {
+	/**
+	 * The seat to move can force four in a row.
+	 */
+	WIN,
+	/**
+	 * The opponent can force four in a row.
+	 */
+	LOSS,
+	/**
+	 * Both seats can stop the other from winning until the board fills up.
+	 */
+	DRAW,
+	/**
+	 * The result could not be proven within the budget given.
+	 */
+	UNKNOWN;
+
+	/**
+	 * @return
+	 *  The outcome for the other seat.
+	 */
+	public Outcome flip() {
+		switch(this) {
+			case WIN: return LOSS;
+			case LOSS: return WIN;
+			default: return this;
+		}
+	}
+}
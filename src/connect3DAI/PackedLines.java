@@ -0,0 +1,193 @@
+package connect3DAI;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Scans every line of a two player position several lines at a time, for full board evaluation.
+ * The line counters of two players are bytes in pairs, one line per pair, so a long read from them holds four lines.
+ * Each byte is a lane: a few adds and masks find, in all eight lanes at once, which are empty and which hold
+ * 1, 2 or 3 pieces, and a bit count adds the lanes up. The counters never exceed Lines.LENGTH,
+ * so the adds never carry from one lane into the next.
+ * Lines holding three get a playable threat check each, there are only ever a few.
+ * @author Benjamin
+ *
+ */
+final class PackedLines {
+
+	/**
+	 * Reads eight line counters as one long, byte i of the array in bits 8i to 8i+7 whatever the platform.
+	 */
+	private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	/**
+	 * Turns the packed scan off, for comparing against the scalar scan.
+	 */
+	static final boolean ENABLED = !Boolean.getBoolean("connect3d.scalarLines");
+
+	/**
+	 * The high bit of every lane.
+	 */
+	private static final long HIGH = 0x8080808080808080L;
+	/**
+	 * Added to every lane to move any non zero value into its high bit.
+	 */
+	private static final long LOW = 0x7F7F7F7F7F7F7F7FL;
+	/**
+	 * One in every lane.
+	 */
+	private static final long ONES = 0x0101010101010101L;
+	/**
+	 * The high bits of the first seat's lanes, the even bytes.
+	 */
+	private static final long FIRST = 0x0080008000800080L;
+	/**
+	 * The high bits of the second seat's lanes, the odd bytes.
+	 */
+	private static final long SECOND = FIRST << 8;
+	/**
+	 * The lines in one long.
+	 */
+	private static final int LINES_PER_WORD = Long.BYTES / 2;
+
+	private PackedLines() {}
+
+	/**
+	 * @param p
+	 *  A position.
+	 * @return
+	 *  True if the position can be scanned this way, it has to have two players.
+	 */
+	static boolean supports(Position p) {
+		return ENABLED && p.seats == 2;
+	}
+
+	/**
+	 * Score a two player position with LineEvaluator weights.
+	 * @param p
+	 *  A two player position.
+	 * @param weights
+	 *  The value of an open line holding one, two and three pieces, and the bonus for a playable threat.
+	 * @return
+	 *  The first seat's score less the second seat's.
+	 */
+	static int score(Position p, int[] weights) {
+		byte[] counts = p.lineCounts;
+		int words = p.lines.count / LINES_PER_WORD;
+		int one = 0, two = 0, three = 0, threats = 0;
+		for(int w = 0; w < words; w++) {
+			long x = (long)WORDS.get(counts, w * Long.BYTES);
+			long open = open(x);
+			long m1 = held(x, open, 1), m2 = held(x, open, 2), m3 = held(x, open, 3);
+			one += Long.bitCount(m1 & FIRST) - Long.bitCount(m1 & SECOND);
+			two += Long.bitCount(m2 & FIRST) - Long.bitCount(m2 & SECOND);
+			three += Long.bitCount(m3 & FIRST) - Long.bitCount(m3 & SECOND);
+			if(m3 != 0) threats += threats(p, w, m3 & FIRST) - threats(p, w, m3 & SECOND);
+		}
+		int score = weights[0] * one + weights[1] * two + weights[2] * three + weights[3] * threats;
+		for(int l = words * LINES_PER_WORD; l < p.lines.count; l++) {
+			int a = counts[2 * l], b = counts[2 * l + 1];
+			if(b == 0 && a > 0 && a < Lines.LENGTH) score += value(p, l, a, weights);
+			else if(a == 0 && b > 0 && b < Lines.LENGTH) score -= value(p, l, b, weights);
+		}
+		return score;
+	}
+
+	/**
+	 * Count the LineEvaluator features of each seat of a two player position.
+	 * @param p
+	 *  A two player position.
+	 * @param out
+	 *  Written to with the count of each feature of seat s at s * LineEvaluator.FEATURES.
+	 */
+	static void count(Position p, int[] out) {
+		byte[] counts = p.lineCounts;
+		int words = p.lines.count / LINES_PER_WORD, f = LineEvaluator.FEATURES;
+		Arrays.fill(out, 0, 2 * f, 0);
+		for(int w = 0; w < words; w++) {
+			long x = (long)WORDS.get(counts, w * Long.BYTES);
+			long open = open(x);
+			for(int k = 1; k < Lines.LENGTH; k++) {
+				long m = held(x, open, k);
+				out[k - 1] += Long.bitCount(m & FIRST);
+				out[f + k - 1] += Long.bitCount(m & SECOND);
+				if(k == Lines.LENGTH - 1 && m != 0) {
+					out[f - 1] += threats(p, w, m & FIRST);
+					out[2 * f - 1] += threats(p, w, m & SECOND);
+				}
+			}
+		}
+		for(int l = words * LINES_PER_WORD; l < p.lines.count; l++) {
+			int a = counts[2 * l], b = counts[2 * l + 1];
+			int seat = b == 0 ? 0 : 1, held = seat == 0 ? a : b;
+			if((a == 0) == (b == 0) || held >= Lines.LENGTH) continue;
+			out[seat * f + held - 1]++;
+			if(held == Lines.LENGTH - 1 && p.isLinePlayable(l)) out[seat * f + f - 1]++;
+		}
+	}
+
+	/**
+	 * @param x
+	 *  Four lines of counters.
+	 * @return
+	 *  The high bit of every lane whose other seat has no pieces in the line.
+	 */
+	private static long open(long x) {
+		long empty = ~(x + LOW) & HIGH;
+		return ((empty >>> 8) & FIRST) | ((empty << 8) & SECOND);
+	}
+
+	/**
+	 * @param x
+	 *  Four lines of counters.
+	 * @param open
+	 *  The open lanes.
+	 * @param k
+	 *  A piece count, between 1 and 3.
+	 * @return
+	 *  The high bit of every open lane holding exactly k pieces.
+	 */
+	private static long held(long x, long open, int k) {
+		long y = x ^ (k * ONES); //zero where the lane is k, and at most 7 elsewhere
+		return ~(y + LOW) & open;
+	}
+
+	/**
+	 * @param p
+	 *  The position.
+	 * @param word
+	 *  The index of the long the lanes came from.
+	 * @param lanes
+	 *  The high bits of open lanes holding three.
+	 * @return
+	 *  The number of those lines whose empty cell is playable.
+	 */
+	private static int threats(Position p, int word, long lanes) {
+		int n = 0;
+		while(lanes != 0) {
+			int lane = Long.numberOfTrailingZeros(lanes) >>> 3;
+			if(p.isLinePlayable(word * LINES_PER_WORD + (lane >>> 1))) n++;
+			lanes &= lanes - 1;
+		}
+		return n;
+	}
+
+	/**
+	 * @param p
+	 *  The position.
+	 * @param line
+	 *  An open line.
+	 * @param held
+	 *  Its piece count, between 1 and 3.
+	 * @param weights
+	 *  The LineEvaluator weights.
+	 * @return
+	 *  The value of the line.
+	 */
+	private static int value(Position p, int line, int held, int[] weights) {
+		int value = weights[held - 1];
+		if(held == Lines.LENGTH - 1 && p.isLinePlayable(line)) value += weights[3];
+		return value;
+	}
+}
@@ -0,0 +1,188 @@
+package connect3DAI;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets a computer player think on its opponent's time.
+ * While the opponent decides, a background thread guesses their replies, most likely first,
+ * and searches the AI's answer to each one. When the opponent moves the answer is ready if the reply was searched (a hit),
+ * otherwise the position is searched as normal (a miss), starting from a transposition table the pondering has already filled.
+ * Either way the search is as deep as it would have been without pondering.
+ *
+ * A ponderer playing a difficulty level answers each reply with the level's own choice, which starts from a cleared table,
+ * so a pondered answer is the move and the node count a search after the reply would have given. Its play stays repeatable.
+ *
+ * A ponderer belongs to one game thread, only the search runs in the background.
+ * @author Benjamin
+ *
+ */
+public final class Ponderer {
+
+	/**
+	 * The depth a level's guess at the opponent's best reply is searched to, it only orders the replies.
+	 */
+	private static final int LEVEL_GUESS_DEPTH = 4;
+	/**
+	 * The search, shared by the background thread and the game thread, never at the same time.
+	 */
+	private final Search search;
+	/**
+	 * The level moves are chosen at, null to search to a depth.
+	 */
+	private final Difficulty level;
+	/**
+	 * The depth moves are searched to.
+	 */
+	private final int depth;
+	/**
+	 * The answers found so far to the opponent's replies, by the hash of the position after the reply.
+	 */
+	private final Map<Long, SearchResult> answers = new ConcurrentHashMap<>();
+	/**
+	 * The background thread, null when not pondering.
+	 */
+	private Thread thread;
+	/**
+	 * The number of moves that were answered from pondering, and that had to be searched.
+	 * Only counted by the game thread, but may be read from any.
+	 */
+	private volatile int hits, misses;
+
+	/**
+	 * Create a ponderer.
+	 * @param search
+	 *  The search used for every move.
+	 * @param depth
+	 *  The depth moves are searched to.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the search is null or the depth is not positive.
+	 */
+	public Ponderer(Search search, int depth) throws IllegalArgumentException {
+		if(search == null) throw new IllegalArgumentException("Search cannot be null!");
+		if(depth < 1) throw new IllegalArgumentException("Depth must be positive: "+depth);
+		this.search = search;
+		this.level = null;
+		this.depth = depth;
+	}
+
+	/**
+	 * Create a ponderer that plays at a difficulty level, its moves are repeatable.
+	 * @param level
+	 *  The level.
+	 * @param seed
+	 *  Chooses the noise of the weaker levels.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the level is null.
+	 */
+	public Ponderer(Difficulty level, long seed) throws IllegalArgumentException {
+		if(level == null) throw new IllegalArgumentException("Difficulty cannot be null!");
+		this.search = level.createSearch(seed);
+		this.level = level;
+		this.depth = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Start thinking about a position in the background, stopping any earlier pondering.
+	 * @param position
+	 *  The position with the opponent to move, it is copied.
+	 */
+	public void ponder(Position position) {
+		stop();
+		answers.clear();
+		if(position.isOver()) return;
+		Position p = new Position(position);
+		thread = new Thread(() -> think(p), "Ponder");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Choose a move, stopping the pondering first.
+	 * @param position
+	 *  The position with the computer to move.
+	 * @return
+	 *  The pondered answer if the opponent's reply was searched, otherwise the result of a new search.
+	 *  When playing a level, either way it is the level's choice.
+	 */
+	public SearchResult move(Position position) {
+		stop();
+		SearchResult answer = answers.get(position.hash());
+		answers.clear();
+		if(answer != null) {
+			hits++;
+			return answer;
+		}
+		misses++;
+		return answer(position);
+	}
+
+	/**
+	 * @param position
+	 *  The position with the computer to move.
+	 * @return
+	 *  The result of searching the position, the level's choice when playing a level.
+	 */
+	private SearchResult answer(Position position) {
+		return level != null ? level.choose(search, position) : search.search(position, depth);
+	}
+
+	/**
+	 * Stop pondering and wait for the background thread to finish. Does nothing if not pondering.
+	 */
+	public void stop() {
+		if(thread == null) return;
+		thread.interrupt();
+		boolean interrupted = false;
+		while(true) {
+			try {
+				thread.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		thread = null;
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * @return
+	 *  True if the background thread is still searching.
+	 */
+	public boolean isPondering() { return thread != null && thread.isAlive(); }
+
+	/**
+	 * @return
+	 *  The number of moves answered from pondering.
+	 */
+	public int hits() { return hits; }
+
+	/**
+	 * @return
+	 *  The number of moves that had to be searched.
+	 */
+	public int misses() { return misses; }
+
+	/**
+	 * The background thread. A shallow search from the opponent's side guesses their best reply,
+	 * which is answered first, then every other reply is answered in column order.
+	 * @param p
+	 *  The position with the opponent to move, owned by this thread.
+	 */
+	private void think(Position p) {
+		SearchResult guess = search.search(p, level != null ? LEVEL_GUESS_DEPTH : Math.max(1, depth - 2));
+		if(search.aborted()) return;
+		for(int i = -1; i < p.columns(); i++) {
+			int reply = i < 0 ? guess.move : i;
+			if((i >= 0 && reply == guess.move) || !p.canPlay(reply)) continue;
+			p.play(reply);
+			if(!p.isOver()) {
+				SearchResult answer = answer(p);
+				if(search.aborted()) return;
+				answers.put(p.hash(), answer);
+			}
+			p.undo();
+		}
+	}
+}
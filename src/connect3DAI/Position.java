@@ -0,0 +1,665 @@
+package connect3DAI;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import connect3DCore.Board;
+import connect3DCore.Piece;
+
+/**
+ * A compact, mutable game state that the AI searches over.
+ * Unlike the Board, moves can be undone and everything is stored in primitive arrays,
+ * so playing and undoing a move does not allocate.
+ * Players are referred to by seat, their index in the game's list of players.
+ * Moves are referred to by column index, (x * dim) + z.
+ * @author Benjamin
+ *
+ */
+public final class Position {
+
+	/**
+	 * The shared geometry of this board size.
+	 */
+	final Lines lines;
+	/**
+	 * The number of players.
+	 */
+	final int seats;
+	/**
+	 * The occupant of each cell, 0 for empty otherwise seat + 1.
+	 */
+	final byte[] cells;
+	/**
+	 * The number of pieces in each column.
+	 */
+	final byte[] heights;
+	/**
+	 * The number of pieces each seat has in each line, indexed line * seats + seat.
+	 */
+	final byte[] lineCounts;
+	/**
+	 * The features each line adds to its owner's counts, see LineEvaluator.lineShape, kept up to date as moves are played and undone.
+	 */
+	final byte[] lineShapes;
+	/**
+	 * The seat each line's features are counted for, -1 if no single seat holds the line.
+	 */
+	final byte[] lineOwners;
+	/**
+	 * The number of open lines each seat holds with one, two and three pieces, and of its playable threats,
+	 * indexed seat * LineEvaluator.FEATURES + feature. A seat's score is their dot product with the weights.
+	 */
+	final int[] seatFeatures;
+	/**
+	 * The columns that have been played, in order.
+	 */
+	private final int[] history;
+	/**
+	 * The number of moves that have been played.
+	 */
+	private int ply;
+	/**
+	 * The number of pieces on the board.
+	 */
+	private int pieces;
+	/**
+	 * The seat that is about to move.
+	 */
+	private int toMove;
+	/**
+	 * The seat that made four in a row, -1 if no one has.
+	 */
+	private int winner;
+	/**
+	 * The Zobrist hash of the position.
+	 */
+	private long hash;
+
+	/**
+	 * Create an empty position.
+	 * @param dim
+	 *  The board has dim * dim * dim cells.
+	 * @param seats
+	 *  The number of players, between 2 and 4.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board size or number of players is invalid.
+	 */
+	public Position(int dim, int seats) throws IllegalArgumentException {
+		if(seats < 2 || seats > Lines.MAX_SEATS) throw new IllegalArgumentException("Invalid number of players:"+seats);
+		this.lines = Lines.of(dim);
+		this.seats = seats;
+		this.cells = new byte[lines.cells];
+		this.heights = new byte[lines.columns];
+		this.lineCounts = new byte[lines.count * seats];
+		this.lineShapes = new byte[lines.count];
+		this.lineOwners = new byte[lines.count];
+		Arrays.fill(lineOwners, (byte)-1);
+		this.seatFeatures = new int[seats * LineEvaluator.FEATURES];
+		this.history = new int[lines.cells];
+		this.ply = 0;
+		this.pieces = 0;
+		this.toMove = 0;
+		this.winner = -1;
+		this.hash = lines.turnKeys[0];
+	}
+
+	/**
+	 * Copy a position.
+	 * @param other
+	 *  The position being copied.
+	 */
+	public Position(Position other) {
+		this.lines = other.lines;
+		this.seats = other.seats;
+		this.cells = other.cells.clone();
+		this.heights = other.heights.clone();
+		this.lineCounts = other.lineCounts.clone();
+		this.lineShapes = other.lineShapes.clone();
+		this.lineOwners = other.lineOwners.clone();
+		this.seatFeatures = other.seatFeatures.clone();
+		this.history = other.history.clone();
+		this.ply = other.ply;
+		this.pieces = other.pieces;
+		this.toMove = other.toMove;
+		this.winner = other.winner;
+		this.hash = other.hash;
+	}
+
+	/**
+	 * Read the pieces on a board into a new position.
+	 * The order the pieces were played in is not known, so undo cannot go further back than the returned position.
+	 * @param board
+	 *  The board being read.
+	 * @param dim
+	 *  The dimension of the board.
+	 * @param players
+	 *  The pieces of each seat, in turn order.
+	 * @param toMove
+	 *  The seat that is about to move.
+	 * @return
+	 *  A position with the same pieces as the board.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board contains a piece that does not belong to a player.
+	 */
+	public static Position of(Board board, int dim, List<Piece> players, int toMove) throws IllegalArgumentException {
+		Position p = new Position(dim, players.size());
+		for(int x = 0; x < dim; x++) {
+			for(int z = 0; z < dim; z++) {
+				for(int y = 0; y < dim; y++) {
+					Piece piece = board.getPieceAt(x, y, z);
+					if(piece == Piece.EMPTY) break;
+					int seat = players.indexOf(piece);
+					if(seat < 0) throw new IllegalArgumentException("Piece does not belong to a player: "+piece);
+					p.put(p.lines.column(x, z), seat);
+				}
+			}
+		}
+		p.ply = 0;
+		p.hash ^= p.lines.turnKeys[p.toMove] ^ p.lines.turnKeys[toMove];
+		p.toMove = toMove;
+		return p;
+	}
+
+	/**
+	 * Write the pieces and the seat to move, for sending to another process. The move history is not written.
+	 * @param out
+	 *  The output.
+	 * @throws IOException
+	 *  Thrown if writing fails.
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(lines.dim);
+		out.writeByte(seats);
+		out.writeByte(toMove);
+		for(int column = 0; column < lines.columns; column++) {
+			out.writeByte(heights[column]);
+			for(int y = 0; y < heights[column]; y++) out.writeByte(cells[column * lines.dim + y] - 1);
+		}
+	}
+
+	/**
+	 * Read a position written by write. Like positions read from a board, undo cannot go further back than it.
+	 * @param in
+	 *  The input.
+	 * @return
+	 *  The position.
+	 * @throws IOException
+	 *  Thrown if reading fails or the data is not a valid position.
+	 */
+	public static Position read(DataInput in) throws IOException {
+		Position p;
+		try {
+			p = new Position(in.readByte(), in.readByte());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Bad position: "+e.getMessage());
+		}
+		int toMove = in.readByte();
+		if(toMove < 0 || toMove >= p.seats) throw new IOException("Bad seat to move: "+toMove);
+		for(int column = 0; column < p.lines.columns; column++) {
+			int height = in.readByte();
+			if(height < 0 || height > p.lines.dim) throw new IOException("Bad column height: "+height);
+			for(int y = 0; y < height; y++) {
+				int seat = in.readByte();
+				if(seat < 0 || seat >= p.seats) throw new IOException("Bad seat: "+seat);
+				p.put(column, seat);
+			}
+		}
+		p.hash ^= p.lines.turnKeys[p.toMove] ^ p.lines.turnKeys[toMove];
+		p.toMove = toMove;
+		return p;
+	}
+
+	/**
+	 * Read a position written as the moves that lead to it, "dim[/seats]: xz xz ...",
+	 * where each move is the lateral and depth digits of the column played. For example "4: 11 12 22",
+	 * or "5/3: 00 44" for three players on a 5 board. Two players if the seat count is left out.
+	 * @param notation
+	 *  The position.
+	 * @return
+	 *  The position after the moves.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the notation can't be read, or a move can't be played.
+	 */
+	public static Position parse(String notation) throws IllegalArgumentException {
+		int colon = notation.indexOf(':');
+		if(colon < 0) throw new IllegalArgumentException("Expected dim[/seats]: moves, found: "+notation);
+		String[] size = notation.substring(0, colon).trim().split("/");
+		Position p;
+		try {
+			p = new Position(Integer.parseInt(size[0].trim()), size.length > 1 ? Integer.parseInt(size[1].trim()) : 2);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad board size: "+notation.substring(0, colon));
+		}
+		int dim = p.lines.dim;
+		for(String move : notation.substring(colon + 1).trim().split("\\s+")) {
+			if(move.isEmpty()) continue;
+			int x = move.length() == 2 ? Character.digit(move.charAt(0), 10) : -1;
+			int z = move.length() == 2 ? Character.digit(move.charAt(1), 10) : -1;
+			if(x < 0 || x >= dim || z < 0 || z >= dim) throw new IllegalArgumentException("Bad move: "+move);
+			int column = p.lines.column(x, z);
+			if(!p.canPlay(column)) throw new IllegalArgumentException("Move can't be played: "+move);
+			p.play(column);
+		}
+		return p;
+	}
+
+	/**
+	 * Write the position in the notation read by parse.
+	 * @return
+	 *  The board size, seats and every move played.
+	 * @throws IllegalStateException
+	 *  Thrown if the moves aren't known, because the position was read from a board.
+	 */
+	public String notation() throws IllegalStateException {
+		if(ply != pieces) throw new IllegalStateException("The moves that led to the position are not known");
+		StringBuilder b = new StringBuilder().append(lines.dim);
+		if(seats != 2) b.append('/').append(seats);
+		b.append(':');
+		for(int i = 0; i < ply; i++) b.append(' ').append(columnX(history[i])).append(columnZ(history[i]));
+		return b.toString();
+	}
+
+	/**
+	 * Place a piece for the seat to move and pass the turn to the next seat.
+	 * @param column
+	 *  The column being played, must not be full.
+	 */
+	public void play(int column) {
+		assert canPlay(column);
+		put(column, toMove);
+		history[ply++] = column;
+		int next = toMove + 1 == seats ? 0 : toMove + 1;
+		hash ^= lines.turnKeys[toMove] ^ lines.turnKeys[next];
+		toMove = next;
+	}
+
+	/**
+	 * Take back the last move that was played.
+	 * @throws IllegalStateException
+	 *  Thrown if there are no moves to take back.
+	 */
+	public void undo() throws IllegalStateException {
+		if(ply == 0) throw new IllegalStateException("No moves to undo");
+		int column = history[--ply];
+		int previous = toMove == 0 ? seats - 1 : toMove - 1;
+		hash ^= lines.turnKeys[toMove] ^ lines.turnKeys[previous];
+		toMove = previous;
+		int cell = column * lines.dim + (--heights[column]);
+		cells[cell] = 0;
+		pieces--;
+		hash ^= lines.pieceKeys[cell * Lines.MAX_SEATS + toMove];
+		for(int i = lines.cellStart[cell], end = lines.cellStart[cell+1]; i < end; i++) {
+			lineCounts[lines.cellLines[i] * seats + toMove]--;
+		}
+		winner = -1; //play is refused once someone has won, so the undone move must have been the winner.
+		rescore(cell);
+	}
+
+	/**
+	 * Add a piece to the top of a column and update the line counts and hash.
+	 * @param column
+	 *  The column the piece is dropped into.
+	 * @param seat
+	 *  The owner of the piece.
+	 */
+	private void put(int column, int seat) {
+		int cell = column * lines.dim + (heights[column]++);
+		cells[cell] = (byte)(seat + 1);
+		pieces++;
+		hash ^= lines.pieceKeys[cell * Lines.MAX_SEATS + seat];
+		for(int i = lines.cellStart[cell], end = lines.cellStart[cell+1]; i < end; i++) {
+			if(++lineCounts[lines.cellLines[i] * seats + seat] == Lines.LENGTH) winner = seat;
+		}
+		rescore(cell);
+	}
+
+	/**
+	 * Update the scores of the lines affected by a piece being added to or removed from a cell.
+	 * Those are the lines through the cell, whose counts changed, and the lines through the cell above,
+	 * which has just become playable or stopped being playable.
+	 * @param cell
+	 *  The cell that changed.
+	 */
+	private void rescore(int cell) {
+		for(int i = lines.cellStart[cell], end = lines.cellStart[cell+1]; i < end; i++) {
+			rescoreLine(lines.cellLines[i]);
+		}
+		if((cell % lines.dim) + 1 < lines.dim) {
+			int above = cell + 1;
+			for(int i = lines.cellStart[above], end = lines.cellStart[above+1]; i < end; i++) {
+				rescoreLine(lines.cellLines[i]);
+			}
+		}
+	}
+
+	/**
+	 * Replace a line's contribution to its owner's feature counts with its current one.
+	 * @param line
+	 *  The line index.
+	 */
+	private void rescoreLine(int line) {
+		int owner = -1, held = 0;
+		for(int s = 0, base = line * seats; s < seats; s++) {
+			int c = lineCounts[base + s];
+			if(c == 0) continue;
+			if(owner >= 0) { owner = -1; break; } //dead line
+			owner = s; held = c;
+		}
+		int old = lineOwners[line];
+		if(old >= 0) count(old, lineShapes[line], -1);
+		int shape = owner >= 0 ? LineEvaluator.lineShape(this, line, held) : 0;
+		lineOwners[line] = (byte)owner;
+		lineShapes[line] = (byte)shape;
+		if(owner >= 0) count(owner, shape, 1);
+	}
+
+	/**
+	 * Add a line's features to a seat's counts, or take them away.
+	 * @param seat
+	 *  The seat holding the line.
+	 * @param shape
+	 *  The line's shape.
+	 * @param delta
+	 *  1 to add the features, -1 to take them away.
+	 */
+	private void count(int seat, int shape, int delta) {
+		if(shape == 0) return;
+		int base = seat * LineEvaluator.FEATURES;
+		seatFeatures[base + (shape & LineEvaluator.HELD) - 1] += delta;
+		if((shape & LineEvaluator.THREAT) != 0) seatFeatures[base + LineEvaluator.FEATURES - 1] += delta;
+	}
+
+	/**
+	 * Check if the one empty cell of a line holding three pieces can be played into right now.
+	 * @param line
+	 *  The line index, must contain exactly one empty cell.
+	 * @return
+	 *  True if the empty cell is the next free cell of its column.
+	 */
+	boolean isLinePlayable(int line) {
+		for(int i = line * Lines.LENGTH, end = i + Lines.LENGTH; i < end; i++) {
+			int c = lines.lineCells[i];
+			if(cells[c] == 0) return c % lines.dim == heights[c / lines.dim];
+		}
+		return false;
+	}
+
+	/**
+	 * @param seat
+	 *  A seat.
+	 * @return
+	 *  The sum of the values of the open lines the seat holds, with the default weights.
+	 */
+	public int score(int seat) { return score(seat, LineEvaluator.DEFAULT_WEIGHTS); }
+
+	/**
+	 * @param seat
+	 *  A seat.
+	 * @param weights
+	 *  The weight of each feature, as given to LineEvaluator.
+	 * @return
+	 *  The sum of the values of the open lines the seat holds.
+	 */
+	int score(int seat, int[] weights) {
+		int score = 0;
+		for(int f = 0, base = seat * LineEvaluator.FEATURES; f < LineEvaluator.FEATURES; f++) {
+			score += weights[f] * seatFeatures[base + f];
+		}
+		return score;
+	}
+
+	/**
+	 * @return
+	 *  The sum of every seat's score, with the default weights.
+	 */
+	public int totalScore() { return totalScore(LineEvaluator.DEFAULT_WEIGHTS); }
+
+	/**
+	 * @param weights
+	 *  The weight of each feature, as given to LineEvaluator.
+	 * @return
+	 *  The sum of every seat's score.
+	 */
+	int totalScore(int[] weights) {
+		int total = 0;
+		for(int s = 0; s < seats; s++) total += score(s, weights);
+		return total;
+	}
+
+	/**
+	 * Check if a column has room for another piece, and the game has not ended.
+	 * @param column
+	 *  The column index.
+	 * @return
+	 *  True if a piece can be placed in the column.
+	 */
+	public boolean canPlay(int column) {
+		return winner < 0 && heights[column] < lines.dim;
+	}
+
+	/**
+	 * Check if dropping a piece into a column would make four in a row for a seat.
+	 * @param column
+	 *  The column index, must not be full.
+	 * @param seat
+	 *  The seat that would be placing the piece.
+	 * @return
+	 *  True if the seat would win by playing in the column.
+	 */
+	public boolean isWinningMove(int column, int seat) {
+		int cell = column * lines.dim + heights[column];
+		for(int i = lines.cellStart[cell], end = lines.cellStart[cell+1]; i < end; i++) {
+			if(lineCounts[lines.cellLines[i] * seats + seat] == Lines.LENGTH - 1) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the seat to move wins by playing in a column.
+	 * @param column
+	 *  The column index, must not be full.
+	 * @return
+	 *  True if the move wins the game.
+	 */
+	public boolean isWinningMove(int column) {
+		return isWinningMove(column, toMove);
+	}
+
+	/**
+	 * Calculate the hash the position would have after a move, without playing it.
+	 * @param column
+	 *  The column index, must not be full.
+	 * @return
+	 *  The Zobrist hash of the position after the seat to move plays in the column.
+	 */
+	public long hashAfter(int column) {
+		int cell = column * lines.dim + heights[column];
+		int next = toMove + 1 == seats ? 0 : toMove + 1;
+		return hash ^ lines.pieceKeys[cell * Lines.MAX_SEATS + toMove] ^ lines.turnKeys[toMove] ^ lines.turnKeys[next];
+	}
+
+	/**
+	 * Find the symmetry of the board whose hash is the smallest.
+	 * Positions that are rotations or reflections of each other share a canonical hash,
+	 * so tables stored on disk only need one entry for all of them.
+	 * @return
+	 *  The symmetry that turns this position into its canonical form.
+	 */
+	public int canonicalSymmetry() {
+		long[] hashes = new long[Lines.SYMMETRIES];
+		for(int cell = 0; cell < cells.length; cell++) {
+			int seat = cells[cell] - 1;
+			if(seat < 0) continue;
+			for(int s = 0; s < Lines.SYMMETRIES; s++) {
+				hashes[s] ^= lines.pieceKeys[lines.symCells[s][cell] * Lines.MAX_SEATS + seat];
+			}
+		}
+		int best = 0;
+		for(int s = 1; s < Lines.SYMMETRIES; s++) {
+			if(hashes[s] < hashes[best]) best = s;
+		}
+		return best;
+	}
+
+	/**
+	 * @param symmetry
+	 *  A symmetry, usually from canonicalSymmetry.
+	 * @return
+	 *  The hash the position would have after it is rotated or reflected by the symmetry.
+	 */
+	public long symmetricHash(int symmetry) {
+		long h = lines.turnKeys[toMove];
+		for(int cell = 0; cell < cells.length; cell++) {
+			int seat = cells[cell] - 1;
+			if(seat >= 0) h ^= lines.pieceKeys[lines.symCells[symmetry][cell] * Lines.MAX_SEATS + seat];
+		}
+		return h;
+	}
+
+	/**
+	 * @return
+	 *  The hash shared by this position and all of its rotations and reflections.
+	 */
+	public long canonicalHash() {
+		return symmetricHash(canonicalSymmetry());
+	}
+
+	/**
+	 * @param column
+	 *  A column of this position.
+	 * @param symmetry
+	 *  A symmetry.
+	 * @return
+	 *  The column after it is rotated or reflected by the symmetry.
+	 */
+	public int toSymmetric(int column, int symmetry) {
+		return lines.symColumns[symmetry][column];
+	}
+
+	/**
+	 * @param column
+	 *  A column of the rotated or reflected position.
+	 * @param symmetry
+	 *  The symmetry that was applied.
+	 * @return
+	 *  The column of this position that the symmetry moved to column.
+	 */
+	public int fromSymmetric(int column, int symmetry) {
+		return lines.symInverse[symmetry][column];
+	}
+
+	/**
+	 * @return
+	 *  The seat that has made four in a row, or -1.
+	 */
+	public int winner() { return winner; }
+
+	/**
+	 * @return
+	 *  True if every cell is occupied.
+	 */
+	public boolean isFull() {
+		return pieces == lines.cells;
+	}
+
+	/**
+	 * @return
+	 *  The number of pieces on the board.
+	 */
+	public int pieces() { return pieces; }
+
+	/**
+	 * @return
+	 *  True if someone has won or the board is full.
+	 */
+	public boolean isOver() {
+		return winner >= 0 || isFull();
+	}
+
+	/**
+	 * @return
+	 *  The seat that is about to move.
+	 */
+	public int toMove() { return toMove; }
+
+	/**
+	 * @return
+	 *  The number of moves played since this position was created.
+	 */
+	public int ply() { return ply; }
+
+	/**
+	 * @return
+	 *  The Zobrist hash of the pieces and the seat to move.
+	 */
+	public long hash() { return hash; }
+
+	/**
+	 * @return
+	 *  The number of players.
+	 */
+	public int seats() { return seats; }
+
+	/**
+	 * @return
+	 *  The dimension of the board.
+	 */
+	public int dim() { return lines.dim; }
+
+	/**
+	 * @return
+	 *  The number of columns, which is also the largest number of moves available in a position.
+	 */
+	public int columns() { return lines.columns; }
+
+	/**
+	 * @param column
+	 *  The column index.
+	 * @return
+	 *  The next free height in the column, equal to dim if the column is full.
+	 */
+	public int height(int column) { return heights[column]; }
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The seat occupying the location, or -1 if it is empty.
+	 */
+	public int seatAt(int x, int y, int z) {
+		return cells[lines.cell(x, y, z)] - 1;
+	}
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The column index of (x,z).
+	 */
+	public int column(int x, int z) { return lines.column(x, z); }
+
+	/**
+	 * @param column
+	 *  A column index.
+	 * @return
+	 *  The lateral component of the column.
+	 */
+	public int columnX(int column) { return column / lines.dim; }
+
+	/**
+	 * @param column
+	 *  A column index.
+	 * @return
+	 *  The depth component of the column.
+	 */
+	public int columnZ(int column) { return column % lines.dim; }
+}
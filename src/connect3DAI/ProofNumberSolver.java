@@ -0,0 +1,254 @@
+package connect3DAI;
+
+/**
+ * Depth-first proof-number search (df-pn) for proving two player positions as a win, loss or draw.
+ * Small boards such as 4*4*4 are within reach of a full solve, which gives perfect play for openings
+ * and a reference to check the heuristic search against.
+ *
+ * Each solve asks a yes or no question, "can the attacker force four in a row?".
+ * The first solve takes the seat to move as the attacker, if it can't win the opponent is tried.
+ * If neither can force a win the position is a draw.
+ *
+ * Proof numbers use the phi/delta form: phi is the number of leaves the seat to move must prove to reach
+ * its goal and delta the number to show it can't. The attacker's goal is four in a row, the defender's goal
+ * is to stop that, so a full board is a success for the defender.
+ * Memory is bounded by the ProofTable, which collects cheap and solved entries as it fills.
+ * @author Benjamin
+ *
+ */
+public final class ProofNumberSolver {
+
+	/**
+	 * Proof numbers saturate at this value, it means the goal can't be reached.
+	 */
+	static final int INFINITY = 100_000_000;
+	/**
+	 * Mixed into the hash when the second seat is the attacker, so both questions can share a table.
+	 */
+	private static final long ATTACKER_KEY = 0x5DEECE66DL * 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The proof numbers of positions that have been looked at.
+	 */
+	private final ProofTable table;
+	/**
+	 * The most positions a single solve may expand before giving up, over both of its questions.
+	 */
+	private final long budget;
+	/**
+	 * A move list for each ply.
+	 */
+	private int[][] moveLists;
+	/**
+	 * The seat trying to make four in a row in the current solve.
+	 */
+	private int attacker;
+	/**
+	 * Positions expanded during the current solve.
+	 */
+	private long nodes;
+
+	/**
+	 * Create a solver.
+	 * @param memoryBytes
+	 *  The most memory the solver's table may use.
+	 * @param nodeBudget
+	 *  The most positions a solve may expand before returning UNKNOWN.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the memory budget is too small.
+	 */
+	public ProofNumberSolver(long memoryBytes, long nodeBudget) throws IllegalArgumentException {
+		this.table = new ProofTable(memoryBytes);
+		this.budget = nodeBudget;
+	}
+
+	/**
+	 * Prove the result of a position for the seat to move.
+	 * @param position
+	 *  The position, it is not modified.
+	 * @return
+	 *  WIN, LOSS or DRAW, or UNKNOWN if the node budget ran out first.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players.
+	 */
+	public Outcome solve(Position position) throws IllegalArgumentException {
+		if(position.seats() != 2) throw new IllegalArgumentException("The solver needs two players, found: "+position.seats());
+		Position p = new Position(position);
+		if(p.winner() >= 0) return p.winner() == p.toMove() ? Outcome.WIN : Outcome.LOSS;
+		if(p.isFull()) return Outcome.DRAW;
+		if(moveLists == null || moveLists[0].length != p.columns()) {
+			moveLists = new int[p.columns() * p.dim() + 1][p.columns()];
+		}
+		nodes = 0; //the budget is shared by both questions
+		int me = p.toMove();
+		Outcome first = prove(p, me);
+		if(first == Outcome.WIN) return Outcome.WIN;
+		Outcome second = prove(p, 1 - me);
+		if(second == Outcome.WIN) return Outcome.LOSS;
+		if(first == Outcome.UNKNOWN || second == Outcome.UNKNOWN) return Outcome.UNKNOWN;
+		return Outcome.DRAW;
+	}
+
+	/**
+	 * Find a move that achieves the best result in a position, by solving each move in turn.
+	 * @param position
+	 *  The position, it is not modified.
+	 * @return
+	 *  The column of a winning move, or else a drawing move, or else any move.
+	 *  -1 if the position has no moves.
+	 */
+	public int solveMove(Position position) {
+		Position p = new Position(position);
+		int draw = -1, fallback = -1;
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			if(p.isWinningMove(c)) return c;
+			if(fallback < 0) fallback = c;
+			p.play(c);
+			Outcome reply = solve(p);
+			p.undo();
+			if(reply == Outcome.LOSS) return c;
+			if(reply == Outcome.DRAW && draw < 0) draw = c;
+		}
+		return draw >= 0 ? draw : fallback;
+	}
+
+	/**
+	 * Answer whether a seat can force four in a row.
+	 * @param p
+	 *  The position.
+	 * @param attacker
+	 *  The seat trying to win.
+	 * @return
+	 *  WIN if it can, DRAW if it can't, UNKNOWN if what was left of the solve's budget ran out.
+	 */
+	private Outcome prove(Position p, int attacker) {
+		this.attacker = attacker;
+		mid(p, INFINITY, INFINITY, 0);
+		int slot = table.find(key(p));
+		if(slot < 0) return Outcome.UNKNOWN;
+		boolean attackerToMove = p.toMove() == attacker;
+		if(table.phi(slot) == 0) return attackerToMove ? Outcome.WIN : Outcome.DRAW;
+		if(table.delta(slot) == 0) return attackerToMove ? Outcome.DRAW : Outcome.WIN;
+		return Outcome.UNKNOWN;
+	}
+
+	/**
+	 * Expand a position until its proof numbers pass the thresholds, then store them.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param thPhi
+	 *  Return once phi reaches this.
+	 * @param thDelta
+	 *  Return once delta reaches this.
+	 * @param ply
+	 *  The distance from the root.
+	 */
+	private void mid(Position p, int thPhi, int thDelta, int ply) {
+		long start = ++nodes;
+		long key = key(p);
+		int[] moves = moveLists[ply];
+		int n = expand(p, moves);
+		if(n <= 0) {
+			//n is 0 when the seat to move reaches its goal now, -1 when it can't reach it.
+			if(n == 0) table.store(key, 0, INFINITY, 1);
+			else table.store(key, INFINITY, 0, 1);
+			return;
+		}
+		int phi = 0, delta = 0;
+		while(true) {
+			//phi is the easiest child to disprove, delta the sum of every child's proof number.
+			int best = -1, bestPhi = 0, bestDelta = INFINITY, secondDelta = INFINITY;
+			phi = INFINITY;
+			delta = 0;
+			for(int i = 0; i < n; i++) {
+				int m = moves[i];
+				int slot = table.find(key(p.hashAfter(m)));
+				int cPhi = slot < 0 ? 1 : table.phi(slot);
+				int cDelta = slot < 0 ? 1 : table.delta(slot);
+				delta = Math.min(INFINITY, delta + cPhi);
+				if(cDelta < bestDelta) {
+					secondDelta = bestDelta;
+					bestDelta = cDelta;
+					bestPhi = cPhi;
+					best = m;
+				} else if(cDelta < secondDelta) {
+					secondDelta = cDelta;
+				}
+			}
+			phi = bestDelta;
+			if(phi >= thPhi || delta >= thDelta || nodes > budget) break;
+			int childPhi = thDelta - delta + bestPhi;
+			int childDelta = Math.min(thPhi, secondDelta == INFINITY ? INFINITY : secondDelta + 1);
+			p.play(best);
+			mid(p, childPhi, childDelta, ply + 1);
+			p.undo();
+		}
+		table.store(key, phi, delta, (int)Math.min(Integer.MAX_VALUE, nodes - start + 1));
+	}
+
+	/**
+	 * Generate the moves worth considering and detect positions that are already decided.
+	 * @param p
+	 *  The position.
+	 * @param moves
+	 *  Written to with the moves.
+	 * @return
+	 *  The number of moves, 0 if the seat to move reaches its goal now, -1 if it has failed.
+	 */
+	private int expand(Position p, int[] moves) {
+		int me = p.toMove();
+		boolean attacking = me == attacker;
+		//whoever just made four in a row reached their goal, so the seat to move failed.
+		if(p.winner() >= 0) return -1;
+		if(p.isFull()) return attacking ? -1 : 0;
+		int forced = -1, threats = 0, n = 0;
+		for(int c = 0, end = p.columns(); c < end; c++) {
+			if(!p.canPlay(c)) continue;
+			if(p.isWinningMove(c, me)) return 0;
+			if(p.isWinningMove(c, 1 - me)) {
+				threats++;
+				forced = c;
+			}
+			moves[n++] = c;
+		}
+		if(threats > 1) return -1;
+		if(threats == 1) {
+			moves[0] = forced;
+			return 1;
+		}
+		return n;
+	}
+
+	/**
+	 * @param p
+	 *  A position.
+	 * @return
+	 *  The table key of the position for the current attacker.
+	 */
+	private long key(Position p) {
+		return key(p.hash());
+	}
+
+	/**
+	 * @param hash
+	 *  The Zobrist hash of a position.
+	 * @return
+	 *  The table key of the position for the current attacker.
+	 */
+	private long key(long hash) {
+		return attacker == 0 ? hash : hash ^ ATTACKER_KEY;
+	}
+
+	/**
+	 * @return
+	 *  The number of positions expanded by the last solve.
+	 */
+	public long nodes() { return nodes; }
+
+	/**
+	 * @return
+	 *  The number of times the table has been garbage collected.
+	 */
+	public int collections() { return table.collections(); }
+}
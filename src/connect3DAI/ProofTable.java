@@ -0,0 +1,194 @@
+package connect3DAI;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size table of proof and disproof numbers for the proof-number solver.
+ * The table never grows, when it gets close to full the least valuable entries are collected:
+ * first solved positions that took little work to prove, then unsolved positions that took little work,
+ * raising the work threshold until enough room has been made.
+ * Entries are held in parallel primitive arrays, so the memory used is fixed when the table is created.
+ * @author Benjamin
+ *
+ */
+final class ProofTable {
+
+	/**
+	 * The number of bytes each entry occupies across the arrays.
+	 */
+	static final int ENTRY_BYTES = Long.BYTES + 3 * Integer.BYTES;
+	/**
+	 * Positions are placed in the first free slot of a cluster of this many slots.
+	 */
+	private static final int CLUSTER = 4;
+
+	/**
+	 * The key of the position stored in each slot.
+	 */
+	private final long[] keys;
+	/**
+	 * The proof number of each slot, the work the seat to move needs to prove it reaches its goal.
+	 */
+	private final int[] phi;
+	/**
+	 * The disproof number of each slot, the work needed to prove the seat to move fails.
+	 */
+	private final int[] delta;
+	/**
+	 * The number of positions expanded below each entry, used to decide what to collect. 0 for an empty slot.
+	 */
+	private final int[] work;
+	/**
+	 * Mask that turns a key into a slot index.
+	 */
+	private final int mask;
+	/**
+	 * The number of slots in use.
+	 */
+	private int used;
+	/**
+	 * The number of times the table has been collected.
+	 */
+	private int collections;
+
+	/**
+	 * Create a table that fits in a memory budget.
+	 * @param bytes
+	 *  The most memory the table may use.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the budget can't fit a single cluster.
+	 */
+	ProofTable(long bytes) throws IllegalArgumentException {
+		long slots = Long.highestOneBit(Math.max(1, bytes / ENTRY_BYTES));
+		if(slots < CLUSTER) throw new IllegalArgumentException("Memory budget too small: "+bytes);
+		slots = Math.min(slots, 1 << 30);
+		this.keys = new long[(int)slots];
+		this.phi = new int[(int)slots];
+		this.delta = new int[(int)slots];
+		this.work = new int[(int)slots];
+		this.mask = (int)slots - 1;
+	}
+
+	/**
+	 * Find a position.
+	 * @param key
+	 *  The key of the position.
+	 * @return
+	 *  The slot holding the position, or -1 if it is not in the table.
+	 */
+	int find(long key) {
+		int start = (int)key & mask;
+		for(int i = 0; i < CLUSTER; i++) {
+			int slot = (start + i) & mask;
+			if(work[slot] != 0 && keys[slot] == key) return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param slot
+	 *  A slot returned by find.
+	 * @return
+	 *  The proof number stored in the slot.
+	 */
+	int phi(int slot) { return phi[slot]; }
+
+	/**
+	 * @param slot
+	 *  A slot returned by find.
+	 * @return
+	 *  The disproof number stored in the slot.
+	 */
+	int delta(int slot) { return delta[slot]; }
+
+	/**
+	 * Store the proof numbers of a position.
+	 * If the position's cluster is full the entry with the least work is replaced.
+	 * @param key
+	 *  The key of the position.
+	 * @param phi
+	 *  The proof number for the seat to move.
+	 * @param delta
+	 *  The disproof number for the seat to move.
+	 * @param work
+	 *  The number of positions expanded to find these numbers, at least 1.
+	 */
+	void store(long key, int phi, int delta, int work) {
+		int victim = find(key);
+		int start = (int)key & mask;
+		for(int i = 0; victim < 0 && i < CLUSTER; i++) {
+			int slot = (start + i) & mask;
+			if(this.work[slot] == 0) victim = slot;
+		}
+		if(victim < 0) {
+			victim = start;
+			for(int i = 1; i < CLUSTER; i++) {
+				int slot = (start + i) & mask;
+				if(this.work[slot] < this.work[victim]) victim = slot;
+			}
+		}
+		if(this.work[victim] == 0) used++;
+		keys[victim] = key;
+		this.phi[victim] = phi;
+		this.delta[victim] = delta;
+		this.work[victim] = Math.max(1, work);
+		if(used > (mask + 1) - ((mask + 1) >> 3)) collect();
+	}
+
+	/**
+	 * Free at least half of the table.
+	 */
+	private void collect() {
+		collections++;
+		int target = (mask + 1) >> 1;
+		for(int threshold = 1; used > target; threshold <<= 1) {
+			//solved positions first, they can be cheaply proved again if they are needed.
+			sweep(threshold, true);
+			if(used > target) sweep(threshold, false);
+			if(threshold > (Integer.MAX_VALUE >> 1)) break;
+		}
+	}
+
+	/**
+	 * Remove entries with little work.
+	 * @param threshold
+	 *  Entries with at most this much work are removed.
+	 * @param solvedOnly
+	 *  Only remove positions that have been proved or disproved.
+	 */
+	private void sweep(int threshold, boolean solvedOnly) {
+		for(int slot = 0; slot <= mask; slot++) {
+			int w = work[slot];
+			if(w == 0 || w > threshold) continue;
+			if(solvedOnly && phi[slot] != 0 && delta[slot] != 0) continue;
+			work[slot] = 0;
+			used--;
+		}
+	}
+
+	/**
+	 * Empty the table.
+	 */
+	void clear() {
+		Arrays.fill(work, 0);
+		used = 0;
+	}
+
+	/**
+	 * @return
+	 *  The number of slots in use.
+	 */
+	int used() { return used; }
+
+	/**
+	 * @return
+	 *  The number of slots in the table.
+	 */
+	int capacity() { return mask + 1; }
+
+	/**
+	 * @return
+	 *  The number of times the table has been garbage collected.
+	 */
+	int collections() { return collections; }
+}
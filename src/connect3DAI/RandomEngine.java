@@ -0,0 +1,35 @@
+package connect3DAI;
+
+import java.util.Random;
+
+/**
+ * Plays a random playable column. A baseline for tournaments.
+ * @author Benjamin
+ *
+ */
+public final class RandomEngine implements Engine {
+
+	/**
+	 * The source of moves.
+	 */
+	private final Random random;
+
+	/**
+	 * Create a random engine.
+	 * @param seed
+	 *  The seed of the engine's moves.
+	 */
+	public RandomEngine(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public int chooseMove(Position p) {
+		int c;
+		do { c = random.nextInt(p.columns()); } while(!p.canPlay(c));
+		return c;
+	}
+
+	@Override
+	public String name() { return "random"; }
+}
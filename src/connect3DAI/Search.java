@@ -0,0 +1,467 @@
+package connect3DAI;
+
+import java.util.Arrays;
+
+/**
+ * Two player alpha-beta search with iterative deepening and a transposition table.
+ * Scores are from the point of view of the seat to move (negamax).
+ * Before searching, a threat search looks for a forced win, and for root moves that let the opponent force one.
+ * @author Benjamin
+ *
+ */
+public final class Search {
+
+	/**
+	 * The score of making four in a row. A win found n plies into the search scores WIN - n,
+	 * so the search prefers faster wins and slower losses.
+	 */
+	public static final int WIN = 1_000_000;
+	/**
+	 * Scores further than this from zero are wins or losses rather than evaluations.
+	 */
+	static final int WIN_BOUND = WIN - 1024;
+	/**
+	 * Larger than any score.
+	 */
+	private static final int INFINITY = WIN + 1;
+
+	/**
+	 * Scores positions at the search horizon.
+	 */
+	private final Evaluator evaluator;
+	/**
+	 * The evaluator if it scores children in batches, otherwise null.
+	 */
+	private final BatchEvaluator batch;
+	/**
+	 * Remembers positions that have been searched.
+	 */
+	private final TranspositionTable table;
+	/**
+	 * Sorts the moves of each position, created for the first board size searched.
+	 */
+	private MoveOrderer orderer;
+	/**
+	 * A move list for each ply, so generating moves does not allocate.
+	 */
+	private int[][] moveLists;
+	/**
+	 * The moves scored in a batch, their scores, and the score of each column's child,
+	 * for the node being searched just above the horizon.
+	 */
+	private int[] leafMoves, batchScores, leafScores;
+	/**
+	 * Opening moves are taken from here instead of being searched, may be null.
+	 */
+	private OpeningBook book;
+	/**
+	 * Exact results near the end of the game, or null.
+	 */
+	private Tablebase tablebase;
+	/**
+	 * Finds forced wins made of threats before the full search, null to skip it.
+	 */
+	private ThreatSearch threats = new ThreatSearch(THREAT_PLIES);
+	/**
+	 * Root moves that lose to a threat sequence, they are not searched.
+	 */
+	private boolean[] losing;
+	/**
+	 * The longest threat sequence looked for, in plies.
+	 */
+	private static final int THREAT_PLIES = 24;
+	/**
+	 * Whether the moves should be sorted before they are searched.
+	 */
+	private boolean ordering = true;
+	/**
+	 * The number of positions visited in the current search.
+	 */
+	private long nodes;
+	/**
+	 * Counters for the stats of the current search, see SearchStats.
+	 */
+	private long threatNodes, probes, hits, overwrites, cutoffs, firstMoveCutoffs;
+	/**
+	 * The best move found at the root of the current iteration.
+	 */
+	private int rootMove;
+	/**
+	 * Set when the searching thread is interrupted or the node limit is reached,
+	 * the search then unwinds without storing anything.
+	 */
+	private boolean aborted;
+	/**
+	 * Set when the search was stopped by an interrupt rather than the node limit.
+	 */
+	private boolean interrupted;
+	/**
+	 * The most nodes one search may visit before it stops, see setNodeLimit.
+	 */
+	private long nodeLimit = Long.MAX_VALUE;
+	/**
+	 * The node limit of the current iteration, the first iteration is never limited so there is always a move.
+	 */
+	private long iterationLimit;
+
+	/**
+	 * Create a search.
+	 * @param evaluator
+	 *  Scores positions at the search horizon.
+	 * @param tableBits
+	 *  The transposition table will have 2^tableBits slots.
+	 */
+	public Search(Evaluator evaluator, int tableBits) {
+		if(evaluator == null) throw new IllegalArgumentException("Evaluator cannot be null!");
+		this.evaluator = evaluator;
+		this.batch = evaluator instanceof BatchEvaluator ? (BatchEvaluator)evaluator : null;
+		this.table = new TranspositionTable(tableBits);
+	}
+
+	/**
+	 * Create a search with the incremental evaluator and a 2^20 slot transposition table.
+	 */
+	public Search() {
+		this(new IncrementalEvaluator(), 20);
+	}
+
+	/**
+	 * Turn move ordering on or off. Without it moves are searched in column order,
+	 * which is only useful to measure how much the ordering helps.
+	 * @param ordering
+	 *  True to sort moves before searching them.
+	 */
+	public void setOrdering(boolean ordering) { this.ordering = ordering; }
+
+	/**
+	 * Stop each search after a number of nodes and return the deepest iteration that finished.
+	 * The first iteration always finishes, so there is always a move.
+	 * Unlike a time limit this gives the same move on any machine under any load,
+	 * as long as the search starts from the same state, see clear.
+	 * @param nodeLimit
+	 *  The most nodes a search visits, Long.MAX_VALUE for no limit.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the limit is not positive.
+	 */
+	public void setNodeLimit(long nodeLimit) throws IllegalArgumentException {
+		if(nodeLimit < 1) throw new IllegalArgumentException("Node limit must be positive: "+nodeLimit);
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Turn the threat search before each search on or off.
+	 * @param on
+	 *  True to look for forced wins and losses by threats first.
+	 */
+	public void setThreatSearch(boolean on) { this.threats = on ? new ThreatSearch(THREAT_PLIES) : null; }
+
+	/**
+	 * Use an opening book. Positions found in the book are answered without searching.
+	 * @param book
+	 *  The book, or null to search every position.
+	 */
+	public void setBook(OpeningBook book) { this.book = book; }
+
+	/**
+	 * Use an endgame tablebase. Positions in it are answered without searching,
+	 * and searches stop at positions in it instead of searching to the end of the game.
+	 * @param tablebase
+	 *  The tablebase, or null to search every position.
+	 */
+	public void setTablebase(Tablebase tablebase) { this.tablebase = tablebase; }
+
+	/**
+	 * Forget every position and move statistic the search has learnt.
+	 */
+	public void clear() {
+		table.clear();
+		if(orderer != null) orderer.clear();
+	}
+
+	/**
+	 * Find the best move in a position by searching one ply deeper each iteration until depth is reached.
+	 * If the searching thread is interrupted, or the node limit is reached, the search stops early and returns
+	 * the last finished iteration, whose move is -1 if none finished. The interrupt is left set.
+	 * @param position
+	 *  The position to search, it is not modified.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @return
+	 *  The best move found.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players or the depth is not positive.
+	 */
+	public SearchResult search(Position position, int depth) throws IllegalArgumentException {
+		return search(position, depth, -INFINITY, INFINITY);
+	}
+
+	/**
+	 * Search as search(Position, int) does, but with a window on the last iteration.
+	 * Scores at or below alpha are only upper bounds and scores at or above beta only lower bounds,
+	 * which is all a caller that already has a move at least as good as alpha needs to know, and costs less to find.
+	 * @param position
+	 *  The position to search, it is not modified.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @param alpha
+	 *  The score below which the exact score doesn't matter.
+	 * @param beta
+	 *  The score above which the exact score doesn't matter.
+	 * @return
+	 *  The best move found.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players, the depth is not positive or alpha is not below beta.
+	 */
+	public SearchResult search(Position position, int depth, int alpha, int beta) throws IllegalArgumentException {
+		if(alpha >= beta) throw new IllegalArgumentException("Empty window: "+alpha+", "+beta);
+		if(position.seats() != 2) throw new IllegalArgumentException("Alpha-beta search needs two players, found: "+position.seats());
+		if(depth < 1) throw new IllegalArgumentException("Depth must be positive: "+depth);
+		if(book != null) {
+			int move = book.probe(position);
+			if(move >= 0) return new SearchResult(move, book.score(position), 0, 0);
+		}
+		if(tablebase != null && tablebase.inRange(position)) {
+			int move = tablebase.probe(position);
+			if(move >= 0) return new SearchResult(move, Tablebase.score(tablebase.distance(position), 0), 0, 0);
+		}
+		long start = System.nanoTime();
+		Position p = new Position(position);
+		prepare(p);
+		nodes = threatNodes = probes = hits = overwrites = cutoffs = firstMoveCutoffs = 0;
+		aborted = interrupted = false;
+		int maxDepth = Math.min(depth, p.columns() * p.dim() - p.pieces());
+		long[] iterationNodes = new long[maxDepth], iterationNanos = new long[maxDepth];
+		if(threats != null && !p.isOver()) {
+			int win = threats.findWin(p);
+			threatNodes += threats.nodes();
+			if(win >= 0) {
+				//only the threat search ran, its nodes are in the stats' threat nodes
+				return new SearchResult(win, WIN - threats.length(), threats.length(), nodes,
+						stats(start, 0, iterationNodes, iterationNanos));
+			}
+			findLosingMoves(p);
+		}
+		int score = 0, reached = 0, best = -1;
+		for(int d = 1; d <= maxDepth && !p.isOver(); d++) {
+			long iterationStart = System.nanoTime(), nodesBefore = nodes;
+			iterationLimit = d == 1 ? Long.MAX_VALUE : nodeLimit;
+			int result = d == maxDepth ? negamax(p, d, alpha, beta, 0) : negamax(p, d, -INFINITY, INFINITY, 0);
+			iterationNodes[d - 1] = nodes - nodesBefore;
+			iterationNanos[d - 1] = System.nanoTime() - iterationStart;
+			if(aborted) break;
+			score = result;
+			best = rootMove;
+			reached = d;
+			if(Math.abs(score) > WIN_BOUND) break; //forced result, searching deeper won't change it.
+		}
+		return new SearchResult(best, score, reached, nodes, stats(start, reached, iterationNodes, iterationNanos));
+	}
+
+	/**
+	 * Copy the counters of the search that just finished.
+	 * @param start
+	 *  When the search started.
+	 * @param depth
+	 *  The depth reached.
+	 * @param iterationNodes
+	 *  The nodes of each iteration.
+	 * @param iterationNanos
+	 *  The time of each iteration.
+	 * @return
+	 *  The stats.
+	 */
+	private SearchStats stats(long start, int depth, long[] iterationNodes, long[] iterationNanos) {
+		return new SearchStats(1, nodes, threatNodes, System.nanoTime() - start, probes, hits, overwrites,
+				cutoffs, firstMoveCutoffs, depth, depth, iterationNodes, iterationNanos);
+	}
+
+	/**
+	 * Mark the root moves after which the opponent has a forced win by threats.
+	 * If every move loses none are marked, so there is still something to search.
+	 * @param p
+	 *  The root position.
+	 */
+	private void findLosingMoves(Position p) {
+		boolean any = false, all = true;
+		for(int c = 0; c < p.columns(); c++) {
+			losing[c] = false;
+			if(!p.canPlay(c)) continue;
+			p.play(c);
+			losing[c] = threats.findWin(p) >= 0;
+			threatNodes += threats.nodes();
+			p.undo();
+			any |= losing[c];
+			all &= losing[c];
+		}
+		if(all && any) Arrays.fill(losing, false);
+	}
+
+	/**
+	 * @return
+	 *  True if the last search was stopped by an interrupt before reaching its depth.
+	 */
+	boolean aborted() { return interrupted; }
+
+	/**
+	 * Make sure the per board size structures fit the position, and forget the root moves marked losing.
+	 * @param p
+	 *  The position about to be searched.
+	 */
+	private void prepare(Position p) {
+		int cells = p.columns() * p.dim();
+		if(moveLists == null || moveLists[0].length != p.columns()) {
+			moveLists = new int[cells + 1][p.columns()];
+			leafMoves = new int[p.columns()];
+			batchScores = new int[p.columns()];
+			leafScores = new int[p.columns()];
+			orderer = new MoveOrderer(p.columns(), cells);
+			losing = new boolean[p.columns()];
+			table.clear();
+		} else {
+			orderer.age();
+			//marked by an earlier search with threat search on, findLosingMoves may not run for this one
+			Arrays.fill(losing, false);
+		}
+	}
+
+	/**
+	 * Alpha-beta negamax.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param depth
+	 *  The remaining plies to search.
+	 * @param alpha
+	 *  The score the seat to move is already guaranteed.
+	 * @param beta
+	 *  The score the opponent is already guaranteed, as seen by the seat to move.
+	 * @param ply
+	 *  The distance from the root.
+	 * @return
+	 *  The score of the position.
+	 */
+	private int negamax(Position p, int depth, int alpha, int beta, int ply) {
+		if(countNode()) return 0;
+		if(p.isFull()) return 0;
+		if(depth == 0) return evaluator.evaluate(p);
+		//finding the canonical hash costs about as much as a shallow search, so only probe where it saves more.
+		if(tablebase != null && ply > 0 && depth > 1 && tablebase.inRange(p)) {
+			int distance = tablebase.distance(p);
+			if(distance != Tablebase.MISSING) {
+				return Tablebase.score(distance, ply);
+			}
+		}
+		long hash = p.hash();
+		long entry = table.probe(hash);
+		probes++;
+		int tableMove = -1;
+		if(entry != 0) {
+			hits++;
+			tableMove = TranspositionTable.move(entry);
+			if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int stored = fromTable(TranspositionTable.score(entry), ply);
+				int flag = TranspositionTable.flag(entry);
+				if(flag == TranspositionTable.EXACT) return stored;
+				if(flag == TranspositionTable.LOWER && stored >= beta) return stored;
+				if(flag == TranspositionTable.UPPER && stored <= alpha) return stored;
+			}
+		}
+		int[] moves = moveLists[ply];
+		int n = ordering ? orderer.order(p, ply, tableMove, moves) : orderer.generate(p, moves);
+		//every child is a leaf, score them together, unless the next move fills the board.
+		boolean batched = depth == 1 && batch != null && p.pieces() + 1 < p.columns() * p.dim();
+		if(batched) scoreLeaves(p, moves, n);
+		int alphaStart = alpha;
+		int best = -INFINITY, bestMove = -1;
+		for(int i = 0; i < n; i++) {
+			int m = moves[i];
+			if(ply == 0 && losing[m]) continue;
+			int score;
+			if(p.isWinningMove(m)) {
+				score = WIN - ply - 1;
+			} else if(batched) {
+				if(countNode()) return 0;
+				score = -leafScores[m];
+			} else {
+				p.play(m);
+				score = -negamax(p, depth - 1, -beta, -alpha, ply + 1);
+				p.undo();
+				if(aborted) return 0;
+			}
+			if(score > best) {
+				best = score;
+				bestMove = m;
+			}
+			if(score > alpha) alpha = score;
+			if(alpha >= beta) {
+				cutoffs++;
+				if(i == 0) firstMoveCutoffs++;
+				if(ordering) orderer.cutoff(p, m, ply, depth);
+				break;
+			}
+		}
+		int flag = best <= alphaStart ? TranspositionTable.UPPER
+				: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		if(table.store(hash, toTable(best, ply), bestMove, depth, flag)) overwrites++;
+		if(ply == 0) rootMove = bestMove;
+		return best;
+	}
+
+	/**
+	 * Count a node and check whether the search should stop.
+	 * @return
+	 *  True if the search has been aborted.
+	 */
+	private boolean countNode() {
+		if((++nodes & 1023) == 0 && Thread.currentThread().isInterrupted()) aborted = interrupted = true;
+		if(nodes > iterationLimit) aborted = true;
+		return aborted;
+	}
+
+	/**
+	 * Score the children of a node just above the horizon with one batch, into leafScores by column.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param moves
+	 *  Its moves.
+	 * @param n
+	 *  The number of moves.
+	 */
+	private void scoreLeaves(Position p, int[] moves, int n) {
+		int count = 0;
+		for(int i = 0; i < n; i++) {
+			if(!p.isWinningMove(moves[i])) leafMoves[count++] = moves[i];
+		}
+		batch.evaluateAfter(p, leafMoves, count, batchScores);
+		for(int i = 0; i < count; i++) leafScores[leafMoves[i]] = batchScores[i];
+	}
+
+	/**
+	 * Win scores depend on the distance from the root, store them as the distance from the position instead.
+	 * @param score
+	 *  The score relative to the root.
+	 * @param ply
+	 *  The distance of the position from the root.
+	 * @return
+	 *  The score to store.
+	 */
+	static int toTable(int score, int ply) {
+		if(score > WIN_BOUND) return score + ply;
+		if(score < -WIN_BOUND) return score - ply;
+		return score;
+	}
+
+	/**
+	 * Reverse of toTable.
+	 * @param score
+	 *  The stored score.
+	 * @param ply
+	 *  The distance of the position from the root.
+	 * @return
+	 *  The score relative to the root.
+	 */
+	static int fromTable(int score, int ply) {
+		if(score > WIN_BOUND) return score - ply;
+		if(score < -WIN_BOUND) return score + ply;
+		return score;
+	}
+}
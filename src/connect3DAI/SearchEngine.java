@@ -0,0 +1,50 @@
+package connect3DAI;
+
+/**
+ * Plays the best move found by a fixed depth alpha-beta search.
+ * @author Benjamin
+ *
+ */
+public final class SearchEngine implements Engine {
+
+	/**
+	 * The search, which keeps its transposition table between moves.
+	 */
+	private final Search search;
+	/**
+	 * The depth each move is searched to.
+	 */
+	private final int depth;
+	/**
+	 * The stats of the last move.
+	 */
+	private SearchStats stats = SearchStats.EMPTY;
+
+	/**
+	 * Create a search engine.
+	 * @param depth
+	 *  The depth each move is searched to.
+	 * @param tableBits
+	 *  The transposition table will have 2^tableBits slots.
+	 */
+	public SearchEngine(int depth, int tableBits) {
+		this.search = new Search(new IncrementalEvaluator(), tableBits);
+		this.depth = depth;
+	}
+
+	@Override
+	public int chooseMove(Position p) {
+		SearchResult r = search.search(p, depth);
+		stats = r.stats;
+		return r.move;
+	}
+
+	@Override
+	public SearchStats lastStats() { return stats; }
+
+	@Override
+	public String name() { return "search:"+depth; }
+
+	@Override
+	public boolean supports(int seats) { return seats == 2; }
+}
@@ -0,0 +1,70 @@
+package connect3DAI;
+
+/**
+ * The outcome of a search.
+ * @author Benjamin
+ *
+ */
+public final class SearchResult {
+	/**
+	 * The best column found, -1 if the position had no moves.
+	 */
+	public final int move;
+	/**
+	 * The score of the best move from the point of view of the seat to move.
+	 */
+	public final int score;
+	/**
+	 * The deepest iteration that completed.
+	 */
+	public final int depth;
+	/**
+	 * The number of positions visited.
+	 */
+	public final long nodes;
+	/**
+	 * What the search did, SearchStats.EMPTY if it was not recorded.
+	 */
+	public final SearchStats stats;
+
+	/**
+	 * Create a search result without stats.
+	 * @param move
+	 *  The best column.
+	 * @param score
+	 *  The score of the best column.
+	 * @param depth
+	 *  The depth searched.
+	 * @param nodes
+	 *  The positions visited.
+	 */
+	public SearchResult(int move, int score, int depth, long nodes) {
+		this(move, score, depth, nodes, SearchStats.EMPTY);
+	}
+
+	/**
+	 * Create a search result.
+	 * @param move
+	 *  The best column.
+	 * @param score
+	 *  The score of the best column.
+	 * @param depth
+	 *  The depth searched.
+	 * @param nodes
+	 *  The positions visited.
+	 * @param stats
+	 *  What the search did.
+	 */
+	public SearchResult(int move, int score, int depth, long nodes, SearchStats stats) {
+		this.move = move;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.stats = stats;
+	}
+
+	@Override
+	public String toString() {
+		return "move: "+move+" score: "+score+" depth: "+depth+" nodes: "+nodes;
+	}
+}
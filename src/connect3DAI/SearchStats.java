@@ -0,0 +1,188 @@
+package connect3DAI;
+
+import java.util.Arrays;
+
+/**
+ * What a search did, for finding out why a move was slow.
+ * The search counts in plain fields of its own, as each search belongs to one thread,
+ * and copies them here when it finishes. Stats from many searches, such as every move an engine made
+ * in a tournament, are combined with plus.
+ * @author Benjamin
+ *
+ */
+public final class SearchStats {
+
+	/**
+	 * Stats for no searches.
+	 */
+	public static final SearchStats EMPTY = new SearchStats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, new long[0], new long[0]);
+
+	/**
+	 * The number of searches combined.
+	 */
+	public final int searches;
+	/**
+	 * Positions visited by the full width search.
+	 */
+	public final long nodes;
+	/**
+	 * Positions visited by the narrow threat search before it, the search's only selective extension.
+	 */
+	public final long threatNodes;
+	/**
+	 * Time spent searching.
+	 */
+	public final long nanos;
+	/**
+	 * Transposition table lookups, ones that found the position, and stores that replaced a different position.
+	 */
+	public final long probes, hits, overwrites;
+	/**
+	 * Beta cutoffs, and those caused by the first move searched.
+	 */
+	public final long cutoffs, firstMoveCutoffs;
+	/**
+	 * The sum of the depths reached, over every search.
+	 */
+	public final long depthSum;
+	/**
+	 * The deepest any of the searches reached.
+	 */
+	public final int maxDepth;
+	/**
+	 * Nodes and time of each iteration, index depth - 1, summed over searches.
+	 */
+	private final long[] iterationNodes, iterationNanos;
+
+	SearchStats(int searches, long nodes, long threatNodes, long nanos, long probes, long hits, long overwrites,
+			long cutoffs, long firstMoveCutoffs, long depthSum, int maxDepth, long[] iterationNodes, long[] iterationNanos) {
+		this.searches = searches;
+		this.nodes = nodes;
+		this.threatNodes = threatNodes;
+		this.nanos = nanos;
+		this.probes = probes;
+		this.hits = hits;
+		this.overwrites = overwrites;
+		this.cutoffs = cutoffs;
+		this.firstMoveCutoffs = firstMoveCutoffs;
+		this.depthSum = depthSum;
+		this.maxDepth = maxDepth;
+		this.iterationNodes = iterationNodes;
+		this.iterationNanos = iterationNanos;
+	}
+
+	/**
+	 * @return
+	 *  Positions visited per second, threat search included.
+	 */
+	public double nodesPerSecond() {
+		return nanos == 0 ? 0 : (nodes + threatNodes) * 1e9 / nanos;
+	}
+
+	/**
+	 * @return
+	 *  The fraction of transposition table lookups that found the position.
+	 */
+	public double hitRate() {
+		return probes == 0 ? 0 : (double)hits / probes;
+	}
+
+	/**
+	 * @return
+	 *  The fraction of cutoffs caused by the first move, a measure of the move ordering.
+	 */
+	public double firstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double)firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * The effective branching factor, how many times more nodes the deepest iteration took than the one before it.
+	 * @return
+	 *  The ratio, or 0 if fewer than two iterations were run.
+	 */
+	public double branchingFactor() {
+		int last = iterationNodes.length - 1;
+		while(last > 0 && iterationNodes[last] == 0) last--;
+		if(last < 1 || iterationNodes[last - 1] == 0) return 0;
+		return (double)iterationNodes[last] / iterationNodes[last - 1];
+	}
+
+	/**
+	 * @return
+	 *  The mean depth reached.
+	 */
+	public double averageDepth() {
+		return searches == 0 ? 0 : (double)depthSum / searches;
+	}
+
+	/**
+	 * @param depth
+	 *  An iteration depth, from 1.
+	 * @return
+	 *  The time spent on that iteration.
+	 */
+	public long iterationNanos(int depth) {
+		return depth < 1 || depth > iterationNanos.length ? 0 : iterationNanos[depth - 1];
+	}
+
+	/**
+	 * @param depth
+	 *  An iteration depth, from 1.
+	 * @return
+	 *  The nodes visited by that iteration.
+	 */
+	public long iterationNodes(int depth) {
+		return depth < 1 || depth > iterationNodes.length ? 0 : iterationNodes[depth - 1];
+	}
+
+	/**
+	 * Combine the stats of two sets of searches.
+	 * @param o
+	 *  The other stats.
+	 * @return
+	 *  The combined stats.
+	 */
+	public SearchStats plus(SearchStats o) {
+		return new SearchStats(searches + o.searches, nodes + o.nodes, threatNodes + o.threatNodes, nanos + o.nanos,
+				probes + o.probes, hits + o.hits, overwrites + o.overwrites, cutoffs + o.cutoffs,
+				firstMoveCutoffs + o.firstMoveCutoffs, depthSum + o.depthSum, Math.max(maxDepth, o.maxDepth),
+				add(iterationNodes, o.iterationNodes), add(iterationNanos, o.iterationNanos));
+	}
+
+	/**
+	 * @param a
+	 *  An array.
+	 * @param b
+	 *  An array.
+	 * @return
+	 *  Their element wise sum, as long as the longer one.
+	 */
+	private static long[] add(long[] a, long[] b) {
+		long[] sum = Arrays.copyOf(a, Math.max(a.length, b.length));
+		for(int i = 0; i < b.length; i++) sum[i] += b[i];
+		return sum;
+	}
+
+	/**
+	 * @return
+	 *  A one line summary for the HUD.
+	 */
+	public String summary() {
+		return String.format("depth %.1f, %,d nodes, %.0fk nps, tt hit %.0f%%, ebf %.1f",
+				averageDepth(), nodes + threatNodes, nodesPerSecond() / 1000, hitRate() * 100, branchingFactor());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append(String.format("searches: %d nodes: %d threat nodes: %d time: %.1fms nps: %.0f%n",
+				searches, nodes, threatNodes, nanos / 1e6, nodesPerSecond()));
+		b.append(String.format("tt probes: %d hits: %d (%.1f%%) overwrites: %d%n", probes, hits, hitRate() * 100, overwrites));
+		b.append(String.format("cutoffs: %d first move: %.1f%% ebf: %.2f depth: %.1f (max %d)%n",
+				cutoffs, firstMoveCutoffRate() * 100, branchingFactor(), averageDepth(), maxDepth));
+		for(int d = 1; d <= iterationNodes.length; d++) {
+			b.append(String.format("  depth %d: %d nodes %.2fms%n", d, iterationNodes[d - 1], iterationNanos[d - 1] / 1e6));
+		}
+		return b.toString();
+	}
+}
@@ -0,0 +1,158 @@
+package connect3DAI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Searches jobs for a DistributedSearch, one at a time, until the coordinator disconnects.
+ * The connection is read while a job is searched, so a cancel interrupts the search as soon as it arrives.
+ * @author Benjamin
+ *
+ */
+public final class SearchWorker implements Runnable {
+
+	/**
+	 * Searches the jobs, kept between jobs so the table stays warm.
+	 */
+	private final Search search;
+	/**
+	 * The coordinator's address.
+	 */
+	private final String host;
+	private final int port;
+	/**
+	 * The job being searched and the thread searching it, and the last job cancelled. Guarded by this.
+	 */
+	private int searching = -1, cancelled = -1;
+	private Thread searcher;
+
+	/**
+	 * Create a worker.
+	 * @param search
+	 *  Searches the jobs. Should be set up the same as the coordinator's.
+	 * @param host
+	 *  The coordinator's host.
+	 * @param port
+	 *  The coordinator's port.
+	 */
+	public SearchWorker(Search search, String host, int port) {
+		if(search == null) throw new IllegalArgumentException("Search cannot be null!");
+		this.search = search;
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Connect and search jobs until the coordinator disconnects or the thread is interrupted.
+	 * @throws IllegalStateException
+	 *  Thrown if the coordinator can't be reached.
+	 */
+	@Override
+	public void run() throws IllegalStateException {
+		ExecutorService pool = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "Search worker");
+			t.setDaemon(true);
+			return t;
+		});
+		try(Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			while(!Thread.currentThread().isInterrupted()) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break; //the coordinator has gone
+				}
+				if(type == DistributedSearch.JOB) {
+					int id = in.readInt(), depth = in.readInt(), alpha = in.readInt(), beta = in.readInt();
+					Position p = Position.read(in);
+					pool.submit(() -> answer(out, id, p, depth, alpha, beta));
+				} else if(type == DistributedSearch.CANCEL) {
+					cancel(in.readInt());
+				} else {
+					throw new IOException("Unknown message: "+type);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Lost the coordinator at "+host+":"+port, e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stop a job. A cancel can cross the answer on the wire, so only the job it was meant for is stopped.
+	 * @param id
+	 *  The job.
+	 */
+	private synchronized void cancel(int id) {
+		cancelled = id;
+		if(searching == id) searcher.interrupt();
+	}
+
+	/**
+	 * Search a job and send the result.
+	 * @param out
+	 *  The connection.
+	 * @param id
+	 *  The job.
+	 * @param p
+	 *  The position.
+	 * @param depth
+	 *  The number of plies to search.
+	 * @param alpha
+	 *  The bottom of the window.
+	 * @param beta
+	 *  The top of the window.
+	 * @throws IOException
+	 *  Thrown if the result can't be sent.
+	 */
+	private Void answer(DataOutputStream out, int id, Position p, int depth, int alpha, int beta) throws IOException {
+		SearchResult r = null;
+		boolean start;
+		synchronized(this) {
+			start = cancelled != id;
+			if(start) {
+				searching = id;
+				searcher = Thread.currentThread();
+			}
+		}
+		if(start) r = search.search(p, depth, alpha, beta);
+		boolean aborted = r == null || search.aborted();
+		synchronized(this) {
+			searching = -1;
+			Thread.interrupted(); //a cancel that came too late to stop the search is spent
+		}
+		synchronized(out) {
+			out.writeByte(DistributedSearch.RESULT);
+			out.writeInt(id);
+			out.writeInt(r == null ? 0 : r.score);
+			out.writeLong(r == null ? 0 : r.stats.nodes + r.stats.threatNodes);
+			out.writeBoolean(aborted);
+			out.flush();
+		}
+		return null;
+	}
+
+	/**
+	 * Run a worker with the default search.
+	 * @param args
+	 *  The coordinator's host and port.
+	 */
+	public static void main(String[] args) {
+		if(args.length != 2) {
+			System.out.println("Usage: SearchWorker <host> <port>");
+			return;
+		}
+		new SearchWorker(new Search(), args[0], Integer.parseInt(args[1])).run();
+	}
+}
@@ -0,0 +1,204 @@
+package connect3DAI;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read only table of exact results for two player positions near the end of the game,
+ * memory mapped from a file made by the TablebaseBuilder.
+ * Entries are kept in an open addressing hash table in the file itself, so a lookup reads the slot
+ * the canonical hash points at and the few after it, and opening a tablebase does no parsing.
+ *
+ * File layout, big endian:
+ *  header: int magic, short version, byte dim, byte seats, int slot count (a power of two), int most empty cells.
+ *  slot: long canonical hash (0 for an empty slot), short move in the canonical frame, short distance.
+ * The distance is the number of plies until the game ends with perfect play: positive if the seat to move wins,
+ * negative if it loses, 0 for a draw.
+ * @author Benjamin
+ *
+ */
+public final class Tablebase {
+
+	/**
+	 * "C3DE", for endgame
+	 */
+	static final int MAGIC = 0x43334445;
+	/**
+	 * The layout version, bumped if the slot format changes.
+	 */
+	static final short VERSION = 1;
+	/**
+	 * The size of the header in bytes.
+	 */
+	static final int HEADER_BYTES = 16;
+	/**
+	 * The size of a slot in bytes.
+	 */
+	static final int SLOT_BYTES = 12;
+	/**
+	 * Returned by lookup when the position is not in the table.
+	 */
+	static final int MISSING = Integer.MIN_VALUE;
+
+	/**
+	 * The mapped file.
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The board size the table was built for.
+	 */
+	private final int dim;
+	/**
+	 * The number of slots less one, for masking hashes.
+	 */
+	private final int mask;
+	/**
+	 * Positions with more empty cells than this are never in the table.
+	 */
+	private final int maxEmpty;
+
+	/**
+	 * Map a tablebase file into memory.
+	 * @param file
+	 *  The tablebase file.
+	 * @return
+	 *  The tablebase.
+	 * @throws IOException
+	 *  Thrown if the file can't be read or is not a tablebase.
+	 */
+	public static Tablebase open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Check the header of a mapped tablebase.
+	 * @param buffer
+	 *  The mapped file.
+	 * @throws IOException
+	 *  Thrown if the header is wrong.
+	 */
+	private Tablebase(MappedByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not a tablebase");
+		if(buffer.getShort(4) != VERSION) throw new IOException("Unsupported tablebase version: "+buffer.getShort(4));
+		if(buffer.get(7) != 2) throw new IOException("Tablebases are for two players");
+		int slots = buffer.getInt(8);
+		if(Integer.bitCount(slots) != 1) throw new IOException("Slot count is not a power of two: "+slots);
+		if(HEADER_BYTES + (long)slots * SLOT_BYTES != buffer.capacity()) throw new IOException("Tablebase is truncated");
+		this.buffer = buffer;
+		this.dim = buffer.get(6);
+		this.mask = slots - 1;
+		this.maxEmpty = buffer.getInt(12);
+	}
+
+	/**
+	 * @param p
+	 *  A position.
+	 * @return
+	 *  True if the position is near enough the end that it may be in the table.
+	 */
+	public boolean inRange(Position p) {
+		return p.dim() == dim && p.seats() == 2 && p.columns() * dim - p.pieces() <= maxEmpty;
+	}
+
+	/**
+	 * Look up the perfect move of a position.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The column to play, or -1 if the position is not in the table.
+	 */
+	public int probe(Position p) {
+		if(!inRange(p)) return -1;
+		int symmetry = p.canonicalSymmetry();
+		int slot = find(p.symmetricHash(symmetry));
+		if(slot < 0) return -1;
+		int move = p.fromSymmetric(buffer.getShort(offset(slot) + 8), symmetry);
+		return p.canPlay(move) ? move : -1;
+	}
+
+	/**
+	 * Look up how a position ends with perfect play.
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The plies until the game ends, positive if the seat to move wins, negative if it loses and 0 for a draw,
+	 *  or MISSING if the position is not in the table.
+	 */
+	public int distance(Position p) {
+		if(!inRange(p)) return MISSING;
+		int slot = find(p.canonicalHash());
+		return slot < 0 ? MISSING : buffer.getShort(offset(slot) + 10);
+	}
+
+	/**
+	 * @param p
+	 *  The position.
+	 * @return
+	 *  The result for the seat to move, UNKNOWN if the position is not in the table.
+	 */
+	public Outcome outcome(Position p) {
+		int d = distance(p);
+		if(d == MISSING) return Outcome.UNKNOWN;
+		return d > 0 ? Outcome.WIN : d < 0 ? Outcome.LOSS : Outcome.DRAW;
+	}
+
+	/**
+	 * Convert a distance to a Search score.
+	 * @param distance
+	 *  A distance from the table.
+	 * @param ply
+	 *  The distance of the position from the search root.
+	 * @return
+	 *  The score relative to the root, as the search would find it.
+	 */
+	static int score(int distance, int ply) {
+		if(distance > 0) return Search.WIN - ply - distance;
+		if(distance < 0) return -(Search.WIN - ply + distance);
+		return 0;
+	}
+
+	/**
+	 * Linear probing from the slot the hash points at until the hash or an empty slot is found.
+	 * @param hash
+	 *  A canonical hash.
+	 * @return
+	 *  The slot, or -1.
+	 */
+	private int find(long hash) {
+		if(hash == 0) return -1; //marks empty slots, the builder never stores it
+		for(int slot = (int)hash & mask; ; slot = (slot + 1) & mask) {
+			long key = buffer.getLong(offset(slot));
+			if(key == hash) return slot;
+			if(key == 0) return -1;
+		}
+	}
+
+	/**
+	 * @param slot
+	 *  A slot index.
+	 * @return
+	 *  The byte offset of the slot in the file.
+	 */
+	private static int offset(int slot) {
+		return HEADER_BYTES + slot * SLOT_BYTES;
+	}
+
+	/**
+	 * @return
+	 *  The board size the table was built for.
+	 */
+	public int dim() { return dim; }
+
+	/**
+	 * @return
+	 *  The most empty cells a position in the table can have.
+	 */
+	public int maxEmpty() { return maxEmpty; }
+}
@@ -0,0 +1,239 @@
+package connect3DAI;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds tablebase files offline by forward enumeration.
+ * There are far too many positions with a few empty cells to list them all, so the builder plays random quiet games
+ * until they reach the range of the table, then solves every position that can follow, exactly and without pruning.
+ * The positions real games reach near the end are covered along with everything that can happen after them.
+ * Games are solved on several threads that share one table of results, so a position reached from two games
+ * is only solved once.
+ * @author Benjamin
+ *
+ */
+public final class TablebaseBuilder {
+
+	/**
+	 * The board size of the table.
+	 */
+	private final int dim;
+	/**
+	 * Positions with more empty cells than this are not added.
+	 */
+	private final int maxEmpty;
+	/**
+	 * The solved positions by canonical hash, the move in the canonical frame in the high half and the distance in the low.
+	 */
+	private final Map<Long, Integer> solved = new ConcurrentHashMap<>();
+
+	/**
+	 * Create an empty builder.
+	 * @param dim
+	 *  The board size the table is for.
+	 * @param maxEmpty
+	 *  The most empty cells a position in the table can have.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the board size is invalid or maxEmpty is not positive.
+	 */
+	public TablebaseBuilder(int dim, int maxEmpty) throws IllegalArgumentException {
+		new Position(dim, 2); //validate the arguments
+		if(maxEmpty < 1) throw new IllegalArgumentException("maxEmpty must be positive: "+maxEmpty);
+		this.dim = dim;
+		this.maxEmpty = maxEmpty;
+	}
+
+	/**
+	 * Play random games into the range of the table and solve everything that can follow each of them.
+	 * @param games
+	 *  The number of games.
+	 * @param seed
+	 *  Seeds the games.
+	 * @param threads
+	 *  The number of games solved at once.
+	 * @throws InterruptedException
+	 *  Thrown if the thread is interrupted while waiting for the games.
+	 */
+	public void addGames(int games, long seed, int threads) throws InterruptedException {
+		Random random = new Random(seed);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for(int g = 0; g < games; g++) {
+			Position p = randomGame(random);
+			if(p != null) tasks.add(() -> { solve(p); return null; });
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			for(Future<Void> f : pool.invokeAll(tasks)) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Solving failed", e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Play random quiet moves until the position has maxEmpty empty cells.
+	 * Moves that win, or let the other seat win at once, are avoided, as purely random games rarely last long enough.
+	 * @param random
+	 *  Chooses the moves.
+	 * @return
+	 *  The position, or null if the game ended first.
+	 */
+	Position randomGame(Random random) {
+		Position p = new Position(dim, 2);
+		int[] moves = new int[p.columns()];
+		while(p.columns() * dim - p.pieces() > maxEmpty) {
+			int n = 0;
+			for(int c = 0; c < p.columns(); c++) {
+				if(p.canPlay(c) && !p.isWinningMove(c) && isQuiet(p, c)) moves[n++] = c;
+			}
+			if(n == 0) return null;
+			p.play(moves[random.nextInt(n)]);
+		}
+		return p;
+	}
+
+	/**
+	 * @param p
+	 *  A position, left as it was found.
+	 * @param column
+	 *  A playable column.
+	 * @return
+	 *  True if the other seat can't win straight after the move.
+	 */
+	private static boolean isQuiet(Position p, int column) {
+		p.play(column);
+		boolean quiet = true;
+		for(int c = 0; c < p.columns() && quiet; c++) quiet = !p.canPlay(c) || !p.isWinningMove(c);
+		p.undo();
+		return quiet;
+	}
+
+	/**
+	 * Solve a position and everything after it, without pruning, so the distances are exact.
+	 * A win is preferred the sooner it comes, a loss the later.
+	 * @param p
+	 *  A position that isn't over, left as it was found.
+	 * @return
+	 *  The distance of the position, as stored in the tablebase.
+	 */
+	private int solve(Position p) {
+		int symmetry = p.canonicalSymmetry();
+		long key = p.symmetricHash(symmetry);
+		Integer known = solved.get(key);
+		if(known != null) return (short)(int)known;
+		int best = Integer.MIN_VALUE, bestDistance = 0, bestMove = -1;
+		for(int c = 0; c < p.columns(); c++) {
+			if(!p.canPlay(c)) continue;
+			int distance;
+			if(p.isWinningMove(c)) {
+				distance = 1;
+			} else {
+				p.play(c);
+				int child = p.isFull() ? 0 : solve(p);
+				p.undo();
+				distance = child > 0 ? -(child + 1) : child < 0 ? -child + 1 : 0;
+			}
+			int rank = rank(distance);
+			if(rank > best) {
+				best = rank;
+				bestDistance = distance;
+				bestMove = c;
+			}
+			if(distance == 1) break;
+		}
+		if(key != 0) solved.put(key, p.toSymmetric(bestMove, symmetry) << 16 | (bestDistance & 0xFFFF));
+		return bestDistance;
+	}
+
+	/**
+	 * @param distance
+	 *  A distance.
+	 * @return
+	 *  A number that is larger the better the distance is for the seat to move.
+	 */
+	private static int rank(int distance) {
+		if(distance > 0) return Short.MAX_VALUE - distance;
+		if(distance < 0) return Short.MIN_VALUE - distance;
+		return 0;
+	}
+
+	/**
+	 * @return
+	 *  The number of positions solved.
+	 */
+	public int size() { return solved.size(); }
+
+	/**
+	 * Write the tablebase as an open addressing hash table at most half full, so it can be memory mapped by Tablebase.
+	 * @param file
+	 *  The file to write, replaced if it exists.
+	 * @throws IOException
+	 *  Thrown if the file can't be written.
+	 */
+	public void write(Path file) throws IOException {
+		int slots = Integer.highestOneBit(Math.max(1, solved.size()) * 2 - 1) << 1;
+		int mask = slots - 1;
+		ByteBuffer table = ByteBuffer.allocate(slots * Tablebase.SLOT_BYTES);
+		for(Map.Entry<Long, Integer> e : solved.entrySet()) {
+			long key = e.getKey();
+			int slot = (int)key & mask;
+			while(table.getLong(slot * Tablebase.SLOT_BYTES) != 0) slot = (slot + 1) & mask;
+			int offset = slot * Tablebase.SLOT_BYTES;
+			table.putLong(offset, key);
+			table.putShort(offset + 8, (short)(e.getValue() >>> 16));
+			table.putShort(offset + 10, (short)(int)e.getValue());
+		}
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(Tablebase.MAGIC);
+			out.writeShort(Tablebase.VERSION);
+			out.writeByte(dim);
+			out.writeByte(2);
+			out.writeInt(slots);
+			out.writeInt(maxEmpty);
+			out.write(table.array());
+		}
+	}
+
+	/**
+	 * Build a tablebase file.
+	 * @param args
+	 *  The board size, most empty cells, number of games and file.
+	 * @throws IOException
+	 *  Thrown if the file can't be written.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while solving.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length != 4) {
+			System.out.println("Usage: TablebaseBuilder <dimension> <max empty> <games> <file>");
+			return;
+		}
+		TablebaseBuilder builder = new TablebaseBuilder(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+		int threads = Runtime.getRuntime().availableProcessors();
+		long start = System.currentTimeMillis();
+		builder.addGames(Integer.parseInt(args[2]), System.nanoTime(), threads);
+		builder.write(Paths.get(args[3]));
+		System.out.println("Wrote "+builder.size()+" positions in "+(System.currentTimeMillis() - start)+"ms on "+threads+" threads");
+	}
+}
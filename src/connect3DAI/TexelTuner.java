@@ -0,0 +1,376 @@
+package connect3DAI;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Tunes the LineEvaluator weights from self-play, Texel style.
+ * Every position of a game is labelled with how the game ended for the seat to move, 1 for a win, 0.5 for a draw and 0 for a loss.
+ * The evaluation, squashed by a sigmoid, is read as the chance of winning, and the weights are fitted to minimise
+ * the squared error against the labels.
+ *
+ * Positions are stored as their feature counts in a flat file, so the data set is read from disk on every pass
+ * and does not need to fit in the heap. Each pass splits the file between the cores with fork-join,
+ * every task sums its share of the gradient into a primitive array and the arrays are added together.
+ *
+ * File format, big endian:
+ *  int magic, int feature count, long sample count,
+ *  then per sample a float per feature followed by the float label.
+ * @author Benjamin
+ *
+ */
+public final class TexelTuner implements AutoCloseable {
+
+	/**
+	 * Identifies a sample file.
+	 */
+	static final int MAGIC = 0x43334454;
+	/**
+	 * Size of the file header.
+	 */
+	static final int HEADER_BYTES = 16;
+	/**
+	 * Size of one sample.
+	 */
+	static final int SAMPLE_BYTES = (LineEvaluator.FEATURES + 1) * Float.BYTES;
+	/**
+	 * Samples read at once, and the most a task sums without splitting.
+	 */
+	private static final int CHUNK = 8192;
+
+	/**
+	 * The sample file, read with positional reads so tasks can share it.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The number of samples in the file.
+	 */
+	private final long samples;
+	/**
+	 * Runs the gradient tasks.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Open a sample file for tuning.
+	 * @param data
+	 *  A file written by generate.
+	 * @param threads
+	 *  The number of threads to compute gradients with.
+	 * @throws IOException
+	 *  Thrown if the file can't be read or is not a sample file.
+	 */
+	public TexelTuner(Path data, int threads) throws IOException {
+		this.channel = FileChannel.open(data, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while(header.hasRemaining() && channel.read(header) >= 0);
+		header.flip();
+		if(header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != LineEvaluator.FEATURES) {
+			channel.close();
+			throw new IOException("Not a sample file: "+data);
+		}
+		this.samples = header.getLong();
+		if(channel.size() < HEADER_BYTES + samples * SAMPLE_BYTES) {
+			channel.close();
+			throw new IOException("Sample file is truncated: "+data);
+		}
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/**
+	 * @return
+	 *  The number of samples.
+	 */
+	public long size() { return samples; }
+
+	/**
+	 * The mean squared error of the weights, and its gradient.
+	 * @param weights
+	 *  The weights.
+	 * @param scale
+	 *  Multiplies the evaluation before the sigmoid.
+	 * @return
+	 *  {error, d error / d weight 0, ...}
+	 */
+	double[] gradient(double[] weights, double scale) {
+		double[] sum = pool.invoke(new Gradient(weights, scale, 0, samples));
+		for(int i = 0; i < sum.length; i++) sum[i] /= Math.max(1, samples);
+		return sum;
+	}
+
+	/**
+	 * @param weights
+	 *  The weights.
+	 * @param scale
+	 *  Multiplies the evaluation before the sigmoid.
+	 * @return
+	 *  The mean squared error of the weights.
+	 */
+	public double error(double[] weights, double scale) {
+		return gradient(weights, scale)[0];
+	}
+
+	/**
+	 * Find the scale that best turns evaluations into winning chances for some weights.
+	 * Done once before tuning, so the weights can't shrink or grow to fit the sigmoid instead of the data.
+	 * @param weights
+	 *  The weights.
+	 * @return
+	 *  The scale with the least error.
+	 */
+	public double fitScale(double[] weights) {
+		//golden section search over log10(scale)
+		double lo = -5, hi = 1, ratio = (Math.sqrt(5) - 1) / 2;
+		double a = hi - ratio * (hi - lo), b = lo + ratio * (hi - lo);
+		double fa = error(weights, Math.pow(10, a)), fb = error(weights, Math.pow(10, b));
+		for(int i = 0; i < 40; i++) {
+			if(fa < fb) {
+				hi = b; b = a; fb = fa;
+				a = hi - ratio * (hi - lo);
+				fa = error(weights, Math.pow(10, a));
+			} else {
+				lo = a; a = b; fa = fb;
+				b = lo + ratio * (hi - lo);
+				fb = error(weights, Math.pow(10, b));
+			}
+		}
+		return Math.pow(10, (lo + hi) / 2);
+	}
+
+	/**
+	 * Fit the weights with Adam gradient descent.
+	 * @param start
+	 *  The weights to start from.
+	 * @param scale
+	 *  Multiplies the evaluation before the sigmoid, see fitScale.
+	 * @param iterations
+	 *  The number of passes over the data.
+	 * @param rate
+	 *  The largest step a weight takes in one pass.
+	 * @return
+	 *  The tuned weights.
+	 */
+	public double[] tune(double[] start, double scale, int iterations, double rate) {
+		double[] w = start.clone();
+		double[] m = new double[w.length], v = new double[w.length];
+		double beta1 = 0.9, beta2 = 0.999;
+		for(int t = 1; t <= iterations; t++) {
+			double[] g = gradient(w, scale);
+			for(int i = 0; i < w.length; i++) {
+				m[i] = beta1 * m[i] + (1 - beta1) * g[i + 1];
+				v[i] = beta2 * v[i] + (1 - beta2) * g[i + 1] * g[i + 1];
+				double mHat = m[i] / (1 - Math.pow(beta1, t));
+				double vHat = v[i] / (1 - Math.pow(beta2, t));
+				w[i] -= rate * mHat / (Math.sqrt(vHat) + 1e-12);
+			}
+		}
+		return w;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pool.shutdown();
+		channel.close();
+	}
+
+	/**
+	 * Sums the error and gradient of a range of samples, splitting it between tasks when it is large.
+	 */
+	private final class Gradient extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 3445187265420471L;
+		private final double[] weights;
+		private final double scale;
+		private final long from, to;
+
+		Gradient(double[] weights, double scale, long from, long to) {
+			this.weights = weights;
+			this.scale = scale;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if(to - from > CHUNK) {
+				long mid = (from + to) >>> 1;
+				Gradient left = new Gradient(weights, scale, from, mid);
+				left.fork();
+				double[] right = new Gradient(weights, scale, mid, to).compute();
+				double[] sum = left.join();
+				for(int i = 0; i < sum.length; i++) sum[i] += right[i];
+				return sum;
+			}
+			int features = LineEvaluator.FEATURES;
+			double[] sum = new double[features + 1];
+			ByteBuffer buffer = ByteBuffer.allocate((int)(to - from) * SAMPLE_BYTES);
+			try {
+				long position = HEADER_BYTES + from * SAMPLE_BYTES;
+				while(buffer.hasRemaining()) {
+					int read = channel.read(buffer, position + buffer.position());
+					if(read < 0) throw new IOException("Sample file ended early");
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			buffer.flip();
+			float[] f = new float[features];
+			for(long s = from; s < to; s++) {
+				double eval = 0;
+				for(int i = 0; i < features; i++) {
+					f[i] = buffer.getFloat();
+					eval += weights[i] * f[i];
+				}
+				double label = buffer.getFloat();
+				double predicted = 1.0 / (1.0 + Math.exp(-scale * eval));
+				double error = label - predicted;
+				sum[0] += error * error;
+				double slope = -2 * error * predicted * (1 - predicted) * scale;
+				for(int i = 0; i < features; i++) sum[i + 1] += slope * f[i];
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * Play games between copies of an engine and write every position after the random opening as a sample.
+	 * Games are played in parallel and written as they finish, so only one game per thread is held in memory.
+	 * @param out
+	 *  The sample file, replaced if it exists.
+	 * @param dim
+	 *  The board size.
+	 * @param seats
+	 *  The number of players.
+	 * @param games
+	 *  The number of games.
+	 * @param engine
+	 *  The engine spec, see Tournament.createEngine.
+	 * @param randomPlies
+	 *  Random moves played at the start of each game, not written.
+	 * @return
+	 *  The number of samples written.
+	 * @throws IOException
+	 *  Thrown if the file can't be written.
+	 */
+	public static long generate(Path out, int dim, int seats, int games, String engine, int randomPlies) throws IOException {
+		Tournament.createEngine(engine, 0); //fail early on a bad spec
+		long[] count = new long[1];
+		try(DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(out)))) {
+			stream.writeInt(MAGIC);
+			stream.writeInt(LineEvaluator.FEATURES);
+			stream.writeLong(0); //patched once the count is known
+			IOException[] failure = new IOException[1];
+			IntStream.range(0, games).parallel().forEach(g -> {
+				float[] game = playGame(dim, seats, engine, randomPlies, g);
+				synchronized(stream) {
+					try {
+						for(float v : game) stream.writeFloat(v);
+					} catch (IOException e) {
+						failure[0] = e;
+					}
+					count[0] += game.length / (LineEvaluator.FEATURES + 1);
+				}
+			});
+			if(failure[0] != null) throw failure[0];
+		}
+		try(RandomAccessFile file = new RandomAccessFile(out.toFile(), "rw")) {
+			file.seek(8);
+			file.writeLong(count[0]);
+		}
+		return count[0];
+	}
+
+	/**
+	 * Play one self-play game.
+	 * @param dim
+	 *  The board size.
+	 * @param seats
+	 *  The number of players.
+	 * @param engine
+	 *  The engine spec.
+	 * @param randomPlies
+	 *  Random opening moves.
+	 * @param seed
+	 *  Seeds the opening and the engines.
+	 * @return
+	 *  The samples of the game, features and label, one after another.
+	 */
+	private static float[] playGame(int dim, int seats, String engine, int randomPlies, long seed) {
+		Random random = new Random(seed);
+		Engine[] players = new Engine[seats];
+		for(int s = 0; s < seats; s++) players[s] = Tournament.createEngine(engine, random.nextLong());
+		Position p = new Position(dim, seats);
+		int[] quiet = new int[p.columns()];
+		for(int i = 0; i < randomPlies && !p.isOver(); i++) {
+			int count = 0;
+			for(int c = 0; c < p.columns(); c++) {
+				if(p.canPlay(c) && !p.isWinningMove(c)) quiet[count++] = c;
+			}
+			//every move wins, the opening is over.
+			if(count == 0) break;
+			p.play(quiet[random.nextInt(count)]);
+		}
+		int stride = LineEvaluator.FEATURES + 1;
+		float[] samples = new float[(p.columns() * dim - p.pieces()) * stride];
+		int[] movers = new int[samples.length / stride];
+		double[] features = new double[LineEvaluator.FEATURES];
+		int n = 0;
+		while(!p.isOver()) {
+			LineEvaluator.features(p, features);
+			for(int f = 0; f < features.length; f++) samples[n * stride + f] = (float)features[f];
+			movers[n++] = p.toMove();
+			p.play(players[p.toMove()].chooseMove(p));
+		}
+		int winner = p.winner();
+		for(int i = 0; i < n; i++) {
+			samples[i * stride + stride - 1] = winner < 0 ? 0.5f : winner == movers[i] ? 1f : 0f;
+		}
+		return Arrays.copyOf(samples, n * stride);
+	}
+
+	/**
+	 * Generate samples or tune weights from the command line.
+	 * @param args
+	 *  generate file dim seats games engine random-plies
+	 *  tune file iterations [threads]
+	 * @throws IOException
+	 *  Thrown if the sample file can't be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 7 && args[0].equals("generate")) {
+			long start = System.currentTimeMillis();
+			long n = generate(Paths.get(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+					Integer.parseInt(args[4]), args[5], Integer.parseInt(args[6]));
+			System.out.println("Wrote "+n+" samples in "+(System.currentTimeMillis() - start)+"ms");
+		} else if((args.length == 3 || args.length == 4) && args[0].equals("tune")) {
+			int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			try(TexelTuner tuner = new TexelTuner(Paths.get(args[1]), threads)) {
+				double[] start = {LineEvaluator.WEIGHTS[1], LineEvaluator.WEIGHTS[2], LineEvaluator.WEIGHTS[3], LineEvaluator.PLAYABLE_THREAT};
+				long begin = System.currentTimeMillis();
+				double scale = tuner.fitScale(start);
+				System.out.println(tuner.size()+" samples, scale "+scale+", error "+tuner.error(start, scale));
+				double[] tuned = tuner.tune(start, scale, Integer.parseInt(args[2]), 0.5);
+				System.out.println("Tuned error "+tuner.error(tuned, scale)+" in "+(System.currentTimeMillis() - begin)+"ms");
+				System.out.println("Weights (one, two, three, playable threat): "+Arrays.toString(tuned));
+				int[] rounded = Arrays.stream(tuned).mapToInt((w) -> (int)Math.round(w)).toArray();
+				System.out.println("Search with new IncrementalEvaluator("+Arrays.toString(rounded)+")");
+			}
+		} else {
+			System.out.println("Usage: TexelTuner generate <file> <dimension> <seats> <games> <engine> <random plies>");
+			System.out.println("       TexelTuner tune <file> <iterations> [threads]");
+		}
+	}
+}
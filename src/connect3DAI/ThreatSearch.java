@@ -0,0 +1,179 @@
+package connect3DAI;
+
+/**
+ * Looks for forced wins made only of threats, before the full width search.
+ * The attacker only tries moves that make a new immediate threat, so the defender only has one reply,
+ * blocking it. A move that makes two threats in different columns wins, since only one can be blocked.
+ * If the defender already threatens to win, the attacker's only move is to block, and that block has to make a threat itself.
+ * The tree is one move wide on the defender's side and narrow on the attacker's, so sequences many plies long are found quickly.
+ *
+ * New threats are found from the line counters through the cell that was just filled and the column heights,
+ * rather than by checking every column.
+ * @author Benjamin
+ *
+ */
+public final class ThreatSearch {
+
+	/**
+	 * The longest sequence searched, in plies.
+	 */
+	private final int maxPlies;
+	/**
+	 * Scratch space for the threat columns of each ply.
+	 */
+	private int[][] threatLists;
+	/**
+	 * The number of positions visited by the last search.
+	 */
+	private long nodes;
+	/**
+	 * The length in plies of the last win found, including the winning move.
+	 */
+	private int length;
+
+	/**
+	 * Create a threat search.
+	 * @param maxPlies
+	 *  The longest sequence to search, in plies.
+	 * @throws IllegalArgumentException
+	 *  Thrown if maxPlies is not positive.
+	 */
+	public ThreatSearch(int maxPlies) throws IllegalArgumentException {
+		if(maxPlies < 1) throw new IllegalArgumentException("maxPlies must be positive: "+maxPlies);
+		this.maxPlies = maxPlies;
+	}
+
+	/**
+	 * Find a forced win for the seat to move that only uses threats.
+	 * @param position
+	 *  A two player position, not modified.
+	 * @return
+	 *  The first move of the win, or -1 if none was found. Not finding one does not mean there isn't one.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the position does not have two players.
+	 */
+	public int findWin(Position position) throws IllegalArgumentException {
+		if(position.seats() != 2) throw new IllegalArgumentException("Threat search needs two players, found: "+position.seats());
+		nodes = 0;
+		length = 0;
+		if(position.isOver()) return -1;
+		if(threatLists == null || threatLists[0].length != position.columns()) {
+			threatLists = new int[maxPlies + 2][position.columns()];
+		}
+		Position p = new Position(position);
+		return attack(p, maxPlies, 0);
+	}
+
+	/**
+	 * @return
+	 *  The number of positions visited by the last search.
+	 */
+	public long nodes() { return nodes; }
+
+	/**
+	 * @return
+	 *  The length in plies of the last win found, counting the winning move.
+	 */
+	public int length() { return length; }
+
+	/**
+	 * Search for a threat sequence for the seat to move.
+	 * @param p
+	 *  The position, left as it was found.
+	 * @param plies
+	 *  The plies left in the sequence.
+	 * @param ply
+	 *  The plies played so far.
+	 * @return
+	 *  The attacker's move, or -1.
+	 */
+	private int attack(Position p, int plies, int ply) {
+		nodes++;
+		int me = p.toMove(), them = 1 - me;
+		int forced = -1, blocks = 0;
+		for(int c = 0, end = p.columns(); c < end; c++) {
+			if(!p.canPlay(c)) continue;
+			if(p.isWinningMove(c, me)) {
+				length = ply + 1;
+				return c;
+			}
+			if(p.isWinningMove(c, them)) {
+				forced = c;
+				blocks++;
+			}
+		}
+		if(plies < 3 || blocks > 1 || p.pieces() + 3 > p.columns() * p.dim()) return -1;
+		int[] threats = threatLists[ply];
+		for(int c = forced < 0 ? 0 : forced, end = forced < 0 ? p.columns() : forced + 1; c < end; c++) {
+			if(!p.canPlay(c)) continue;
+			p.play(c);
+			//the defender can only have gained a win on top of the move, any other was blocked or there were none.
+			if(p.canPlay(c) && p.isWinningMove(c, them)) {
+				p.undo();
+				continue;
+			}
+			int n = newThreats(p, c, me, threats);
+			int result = -1;
+			if(n >= 2) {
+				length = ply + 3;
+				result = c;
+			} else if(n == 1) {
+				p.play(threats[0]);
+				if(attack(p, plies - 2, ply + 2) >= 0) result = c;
+				p.undo();
+			}
+			p.undo();
+			if(result >= 0) return result;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the columns a seat can now win in because of its last move, which was the only way to make new threats.
+	 * A threat is new if the move filled the third cell of a line, or raised the column so a win on top became playable.
+	 * @param p
+	 *  The position after the move.
+	 * @param column
+	 *  The column the move was played in.
+	 * @param seat
+	 *  The seat that moved.
+	 * @param out
+	 *  Written to with the distinct threat columns.
+	 * @return
+	 *  The number of threat columns.
+	 */
+	private static int newThreats(Position p, int column, int seat, int[] out) {
+		Lines lines = p.lines;
+		int dim = lines.dim, seats = p.seats;
+		int n = 0;
+		if(p.canPlay(column) && p.isWinningMove(column, seat)) out[n++] = column;
+		int cell = column * dim + p.heights[column] - 1;
+		for(int i = lines.cellStart[cell], end = lines.cellStart[cell+1]; i < end; i++) {
+			int line = lines.cellLines[i];
+			if(p.lineCounts[line * seats + seat] != Lines.LENGTH - 1) continue;
+			for(int j = line * Lines.LENGTH, last = j + Lines.LENGTH; j < last; j++) {
+				int e = lines.lineCells[j];
+				if(p.cells[e] != 0) continue;
+				int col = e / dim;
+				if(e % dim == p.heights[col] && !contains(out, n, col)) out[n++] = col;
+				break;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @param a
+	 *  An array.
+	 * @param n
+	 *  The number of values in use.
+	 * @param v
+	 *  A value.
+	 * @return
+	 *  True if one of the first n values is v.
+	 */
+	private static boolean contains(int[] a, int n, int v) {
+		for(int i = 0; i < n; i++) if(a[i] == v) return true;
+		return false;
+	}
+}
@@ -0,0 +1,539 @@
+package connect3DAI;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays engines against each other without a renderer, for tuning engines and testing game balance.
+ * Every combination of engines is played on every board size and player count, with the seats rotated
+ * between games so each engine plays from each seat equally often.
+ * Games run in parallel on a bounded pool with one thread per core, each game is written out
+ * as a line of CSV the moment it finishes, and the standings are printed at the end.
+ *
+ * Multi player games are scored pairwise: the winner beats every other seat and the rest draw with each other.
+ * @author Benjamin
+ *
+ */
+public final class Tournament {
+
+	/**
+	 * The engines taking part, as engine specs.
+	 */
+	private final List<String> engines;
+	/**
+	 * The board sizes to play on.
+	 */
+	private final int[] sizes;
+	/**
+	 * The player counts to play.
+	 */
+	private final int[] seatCounts;
+	/**
+	 * The number of games played by each combination of engines, on each size and player count.
+	 */
+	private final int games;
+	/**
+	 * The number of random moves each game opens with, so repeated games between deterministic engines differ.
+	 */
+	private final int randomPlies;
+	/**
+	 * The number of games played at once.
+	 */
+	private final int threads;
+	/**
+	 * Where each finished game is written.
+	 */
+	private final PrintWriter out;
+	/**
+	 * The results so far.
+	 */
+	private final Standings standings;
+	/**
+	 * The number of games that have finished.
+	 */
+	private int finished;
+	/**
+	 * The number of games that ended because an engine threw.
+	 */
+	private int failed;
+
+	/**
+	 * Create a tournament.
+	 * @param engines
+	 *  Engine specs, see createEngine.
+	 * @param sizes
+	 *  The board sizes to play on.
+	 * @param seatCounts
+	 *  The player counts to play, between 2 and 4.
+	 * @param games
+	 *  The games played by each combination of engines.
+	 * @param randomPlies
+	 *  The random opening moves of each game.
+	 * @param threads
+	 *  The number of games played at once.
+	 * @param out
+	 *  Receives one line of CSV per game.
+	 * @throws IllegalArgumentException
+	 *  Thrown if an engine spec is unknown.
+	 */
+	public Tournament(List<String> engines, int[] sizes, int[] seatCounts, int games, int randomPlies, int threads, Writer out)
+			throws IllegalArgumentException {
+		for(String e : engines) createEngine(e, 0); //fail early on a bad spec
+		this.engines = List.copyOf(engines);
+		this.sizes = sizes.clone();
+		this.seatCounts = seatCounts.clone();
+		this.games = games;
+		this.randomPlies = randomPlies;
+		this.threads = Math.max(1, threads);
+		this.out = new PrintWriter(out);
+		this.standings = new Standings(engines);
+	}
+
+	/**
+	 * Create an engine from a spec.
+	 * @param spec
+	 *  "random", "greedy", "search:depth", "mcts:playouts", "maxn:depth", "paranoid:depth" or "level:difficulty".
+	 * @param seed
+	 *  Seeds engines that make random choices.
+	 * @return
+	 *  A new engine.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the spec is unknown.
+	 */
+	public static Engine createEngine(String spec, long seed) throws IllegalArgumentException {
+		String[] parts = spec.toLowerCase().split(":");
+		switch(parts[0]) {
+			case "random":
+				return new RandomEngine(seed);
+			case "greedy":
+				return new GreedyEngine();
+			case "search":
+				if(parts.length != 2) break;
+				return new SearchEngine(Integer.parseInt(parts[1]), 18);
+			case "maxn":
+				if(parts.length != 2) break;
+				return new MultiPlayerEngine(MultiPlayerSearch.Mode.MAXN, Integer.parseInt(parts[1]));
+			case "paranoid":
+				if(parts.length != 2) break;
+				return new MultiPlayerEngine(MultiPlayerSearch.Mode.PARANOID, Integer.parseInt(parts[1]));
+			case "mcts":
+				if(parts.length != 2) break;
+				return new MonteCarloEngine(Long.parseLong(parts[1]), seed);
+			case "level":
+				if(parts.length != 2) break;
+				return new DifficultyEngine(Difficulty.of(parts[1]), seed);
+			default:
+				break;
+		}
+		throw new IllegalArgumentException("Unknown engine! ->"+spec);
+	}
+
+	/**
+	 * Play every game and return the standings.
+	 * @return
+	 *  The standings once every game has finished.
+	 * @throws InterruptedException
+	 *  Thrown if the thread is interrupted while waiting for the games.
+	 */
+	public Standings run() throws InterruptedException {
+		out.println("game,dim,seats,engines,winner,plies,mean_move_ms,max_move_ms");
+		out.flush();
+		//the queue is bounded so the games are created as they are played, not all up front.
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+		int id = 0;
+		for(int dim : sizes) {
+			for(int seats : seatCounts) {
+				for(int[] lineup : lineups(seats)) {
+					for(int g = 0; g < games; g++) {
+						int[] rotated = new int[seats];
+						for(int s = 0; s < seats; s++) rotated[s] = lineup[(s + g) % seats];
+						final int game = id++;
+						pool.execute(() -> {
+							try {
+								record(play(game, dim, rotated));
+							} catch (RuntimeException e) {
+								fail(game, dim, rotated, e);
+							}
+						});
+					}
+				}
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		out.flush();
+		return standings;
+	}
+
+	/**
+	 * Every combination of engines for a player count, leaving out engines that can't play it.
+	 * Distinct engines are used when there are enough, otherwise engines take more than one seat.
+	 * @param seats
+	 *  The player count.
+	 * @return
+	 *  Each line up of engine indices.
+	 */
+	private List<int[]> lineups(int seats) {
+		List<Integer> able = new ArrayList<>();
+		for(int i = 0; i < engines.size(); i++) {
+			if(createEngine(engines.get(i), 0).supports(seats)) able.add(i);
+		}
+		List<int[]> result = new ArrayList<>();
+		combine(able, seats, 0, new int[seats], 0, able.size() >= seats, result);
+		return result;
+	}
+
+	/**
+	 * Recursively build combinations.
+	 * @param able
+	 *  The engines to pick from.
+	 * @param seats
+	 *  The size of a combination.
+	 * @param from
+	 *  The first index of able that may be picked next.
+	 * @param picked
+	 *  The combination being built.
+	 * @param n
+	 *  The number picked so far.
+	 * @param distinct
+	 *  True if an engine may only be picked once.
+	 * @param result
+	 *  Receives the combinations.
+	 */
+	private static void combine(List<Integer> able, int seats, int from, int[] picked, int n, boolean distinct, List<int[]> result) {
+		if(n == seats) {
+			//an engine playing only itself tells us nothing.
+			if(Arrays.stream(picked).distinct().count() > 1) result.add(picked.clone());
+			return;
+		}
+		for(int i = from; i < able.size(); i++) {
+			picked[n] = able.get(i);
+			combine(able, seats, distinct ? i + 1 : i, picked, n + 1, distinct, result);
+		}
+	}
+
+	/**
+	 * Play one game.
+	 * @param game
+	 *  The game number, used as the seed.
+	 * @param dim
+	 *  The board size.
+	 * @param lineup
+	 *  The engine index of each seat.
+	 * @return
+	 *  The result.
+	 */
+	private GameRecord play(int game, int dim, int[] lineup) {
+		int seats = lineup.length;
+		Random random = new Random(game);
+		Engine[] players = new Engine[seats];
+		for(int s = 0; s < seats; s++) players[s] = createEngine(engines.get(lineup[s]), random.nextLong());
+		Position p = new Position(dim, seats);
+		GameRecord record = new GameRecord(game, dim, lineup);
+		for(int i = 0; i < randomPlies && !p.isOver(); i++) {
+			int c;
+			do { c = random.nextInt(p.columns()); } while(!p.canPlay(c));
+			p.play(c);
+		}
+		while(!p.isOver()) {
+			int seat = p.toMove();
+			long start = System.nanoTime();
+			int move = players[seat].chooseMove(p);
+			long took = System.nanoTime() - start;
+			if(!p.canPlay(move)) throw new IllegalStateException(players[seat].name()+" played an illegal move: "+move);
+			p.play(move);
+			record.moves[seat]++;
+			record.nanos[seat] += took;
+			record.maxNanos[seat] = Math.max(record.maxNanos[seat], took);
+			record.stats[seat] = record.stats[seat].plus(players[seat].lastStats());
+		}
+		record.winner = p.winner();
+		record.plies = p.pieces();
+		return record;
+	}
+
+	/**
+	 * Add a finished game to the standings and write it out.
+	 * @param r
+	 *  The finished game.
+	 */
+	private synchronized void record(GameRecord r) {
+		standings.add(r);
+		StringBuilder names = new StringBuilder(), mean = new StringBuilder(), max = new StringBuilder();
+		for(int s = 0; s < r.lineup.length; s++) {
+			String sep = s == 0 ? "" : ";";
+			names.append(sep).append(engines.get(r.lineup[s]));
+			mean.append(sep).append(String.format("%.3f", r.moves[s] == 0 ? 0.0 : r.nanos[s] / 1e6 / r.moves[s]));
+			max.append(sep).append(String.format("%.3f", r.maxNanos[s] / 1e6));
+		}
+		out.println(r.game+","+r.dim+","+r.lineup.length+","+names+","+r.winner+","+r.plies+","+mean+","+max);
+		out.flush();
+		finished++;
+	}
+
+	/**
+	 * Write out a game an engine threw in. It has no result, so it is left out of the standings.
+	 * @param game
+	 *  The game number.
+	 * @param dim
+	 *  The board size.
+	 * @param lineup
+	 *  The engine index of each seat.
+	 * @param e
+	 *  What the engine threw.
+	 */
+	private synchronized void fail(int game, int dim, int[] lineup, RuntimeException e) {
+		StringBuilder names = new StringBuilder();
+		for(int s = 0; s < lineup.length; s++) names.append(s == 0 ? "" : ";").append(engines.get(lineup[s]));
+		out.println(game+","+dim+","+lineup.length+","+names+",error: "+String.valueOf(e).replace(',', ';')+",,,");
+		out.flush();
+		failed++;
+	}
+
+	/**
+	 * @return
+	 *  The number of games that have finished.
+	 */
+	public synchronized int finished() { return finished; }
+
+	/**
+	 * @return
+	 *  The number of games that ended because an engine threw, they are not counted as finished.
+	 */
+	public synchronized int failed() { return failed; }
+
+	/**
+	 * The result of one game.
+	 */
+	static final class GameRecord {
+		final int game, dim;
+		/**
+		 * The engine index of each seat.
+		 */
+		final int[] lineup;
+		/**
+		 * The seat that won, -1 for a draw.
+		 */
+		int winner = -1;
+		/**
+		 * The number of pieces on the board at the end.
+		 */
+		int plies;
+		/**
+		 * Per seat move count, total and longest thinking time.
+		 */
+		final long[] moves, nanos, maxNanos;
+		/**
+		 * Per seat search stats, summed over its moves.
+		 */
+		final SearchStats[] stats;
+
+		GameRecord(int game, int dim, int[] lineup) {
+			this.game = game;
+			this.dim = dim;
+			this.lineup = lineup;
+			this.moves = new long[lineup.length];
+			this.nanos = new long[lineup.length];
+			this.maxNanos = new long[lineup.length];
+			this.stats = new SearchStats[lineup.length];
+			Arrays.fill(stats, SearchStats.EMPTY);
+		}
+	}
+
+	/**
+	 * Win/draw/loss counts and Elo differences between every pair of engines.
+	 */
+	public static final class Standings {
+		private final List<String> names;
+		/**
+		 * [a][b] counts from a's point of view against b.
+		 */
+		private final int[][] wins, draws, losses;
+		/**
+		 * Per engine thinking time and move count.
+		 */
+		private final long[] nanos, moves, maxNanos;
+		/**
+		 * Per engine search stats, summed over every game.
+		 */
+		private final SearchStats[] stats;
+
+		Standings(List<String> names) {
+			int n = names.size();
+			this.names = names;
+			this.wins = new int[n][n];
+			this.draws = new int[n][n];
+			this.losses = new int[n][n];
+			this.nanos = new long[n];
+			this.moves = new long[n];
+			this.maxNanos = new long[n];
+			this.stats = new SearchStats[n];
+			Arrays.fill(stats, SearchStats.EMPTY);
+		}
+
+		/**
+		 * Score a game pairwise between its seats.
+		 * @param r
+		 *  The game.
+		 */
+		void add(GameRecord r) {
+			int[] lineup = r.lineup;
+			for(int s = 0; s < lineup.length; s++) {
+				int a = lineup[s];
+				nanos[a] += r.nanos[s];
+				moves[a] += r.moves[s];
+				maxNanos[a] = Math.max(maxNanos[a], r.maxNanos[s]);
+				stats[a] = stats[a].plus(r.stats[s]);
+				for(int t = 0; t < lineup.length; t++) {
+					int b = lineup[t];
+					if(s == t || a == b) continue;
+					if(r.winner == s) wins[a][b]++;
+					else if(r.winner == t) losses[a][b]++;
+					else draws[a][b]++;
+				}
+			}
+		}
+
+		/**
+		 * @param a
+		 *  An engine index.
+		 * @param b
+		 *  An engine index.
+		 * @return
+		 *  {elo, low, high}, a's rating above b with a 95% confidence interval, or null if they haven't met.
+		 */
+		public double[] elo(int a, int b) {
+			return elo(wins[a][b], draws[a][b], losses[a][b]);
+		}
+
+		/**
+		 * @param a
+		 *  An engine index.
+		 * @return
+		 *  {elo, low, high}, a's rating above the rest of the field.
+		 */
+		public double[] eloVsField(int a) {
+			int w = 0, d = 0, l = 0;
+			for(int b = 0; b < names.size(); b++) {
+				w += wins[a][b]; d += draws[a][b]; l += losses[a][b];
+			}
+			return elo(w, d, l);
+		}
+
+		/**
+		 * Convert a score into an Elo difference, with a normal approximation confidence interval.
+		 * @param w
+		 *  Wins.
+		 * @param d
+		 *  Draws.
+		 * @param l
+		 *  Losses.
+		 * @return
+		 *  {elo, low, high}, or null if no games were played.
+		 */
+		static double[] elo(int w, int d, int l) {
+			int n = w + d + l;
+			if(n == 0) return null;
+			double score = (w + 0.5 * d) / n;
+			double variance = (w * Math.pow(1 - score, 2) + d * Math.pow(0.5 - score, 2) + l * Math.pow(score, 2)) / n;
+			double margin = 1.96 * Math.sqrt(variance / n);
+			return new double[] {toElo(score), toElo(score - margin), toElo(score + margin)};
+		}
+
+		/**
+		 * @param score
+		 *  Expected score between 0 and 1.
+		 * @return
+		 *  The matching Elo difference, clamped to +/-1000 for perfect scores.
+		 */
+		static double toElo(double score) {
+			double s = Math.min(0.9966, Math.max(0.0034, score));
+			return -400.0 * Math.log10(1.0 / s - 1.0);
+		}
+
+		/**
+		 * @param a
+		 *  An engine index.
+		 * @return
+		 *  The engine's search stats over every move it made.
+		 */
+		public SearchStats stats(int a) { return stats[a]; }
+
+		@Override
+		public String toString() {
+			StringBuilder b = new StringBuilder("Pairwise W/D/L and Elo (95% CI):\n");
+			for(int i = 0; i < names.size(); i++) {
+				for(int j = i + 1; j < names.size(); j++) {
+					double[] e = elo(i, j);
+					if(e == null) continue;
+					b.append(String.format("  %-12s vs %-12s %5d/%5d/%5d  %+7.1f [%+7.1f, %+7.1f]%n",
+							names.get(i), names.get(j), wins[i][j], draws[i][j], losses[i][j], e[0], e[1], e[2]));
+				}
+			}
+			b.append("Against the field:\n");
+			for(int i = 0; i < names.size(); i++) {
+				double[] e = eloVsField(i);
+				if(e == null) continue;
+				b.append(String.format("  %-12s %+7.1f [%+7.1f, %+7.1f]  mean move %.3fms  max move %.3fms%n",
+						names.get(i), e[0], e[1], e[2], moves[i] == 0 ? 0.0 : nanos[i] / 1e6 / moves[i], maxNanos[i] / 1e6));
+			}
+			b.append("Search stats:\n");
+			for(int i = 0; i < names.size(); i++) {
+				if(stats[i].searches == 0) continue;
+				b.append(String.format("  %-12s %s, first move cutoffs %.0f%%, tt overwrites %d%n", names.get(i),
+						stats[i].summary(), stats[i].firstMoveCutoffRate() * 100, stats[i].overwrites));
+			}
+			return b.toString();
+		}
+	}
+
+	/**
+	 * Run a tournament from the command line.
+	 * @param args
+	 *  --engines a,b,c --sizes 4,5 --seats 2,3,4 --games n --random-plies n --threads n --out file.csv
+	 *  Games are written to standard out if no file is given.
+	 * @throws IOException
+	 *  Thrown if the output file can't be written.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while the games are running.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		List<String> engines = List.of("random", "greedy", "search:4");
+		int[] sizes = {4}, seats = {2};
+		int games = 10, randomPlies = 2, threads = Runtime.getRuntime().availableProcessors();
+		Writer out = new PrintWriter(System.out);
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i+1];
+			switch(args[i]) {
+				case "--engines": engines = List.of(value.split(",")); break;
+				case "--sizes": sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray(); break;
+				case "--seats": seats = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray(); break;
+				case "--games": games = Integer.parseInt(value); break;
+				case "--random-plies": randomPlies = Integer.parseInt(value); break;
+				case "--threads": threads = Integer.parseInt(value); break;
+				case "--out": out = Files.newBufferedWriter(Paths.get(value)); break;
+				default: throw new IllegalArgumentException("Unknown option! ->"+args[i]);
+			}
+		}
+		long start = System.currentTimeMillis();
+		Tournament t = new Tournament(engines, sizes, seats, games, randomPlies, threads, out);
+		Standings s = t.run();
+		//closing the writer around standard out would close standard out too, and lose the summary.
+		if(out instanceof PrintWriter) out.flush();
+		else out.close();
+		System.out.println(t.finished()+" games in "+(System.currentTimeMillis() - start)+"ms on "+threads+" threads");
+		if(t.failed() > 0) System.out.println(t.failed()+" games failed, see the error lines");
+		System.out.print(s);
+	}
+}
@@ -0,0 +1,131 @@
+package connect3DAI;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the results of positions the search has already looked at, indexed by Zobrist hash.
+ * Positions are reached through many move orders, so this saves searching them again,
+ * and the best move found last time is the first move worth trying next time.
+ * Entries are packed into a pair of primitive arrays so the table does not create garbage.
+ * @author Benjamin
+ *
+ */
+final class TranspositionTable {
+
+	/**
+	 * The stored score is the exact value of the position.
+	 */
+	static final int EXACT = 1;
+	/**
+	 * The stored score is a lower bound, the search failed high.
+	 */
+	static final int LOWER = 2;
+	/**
+	 * The stored score is an upper bound, the search failed low.
+	 */
+	static final int UPPER = 3;
+
+	/**
+	 * The hash of the position stored in each slot.
+	 */
+	private final long[] keys;
+	/**
+	 * The packed entry stored in each slot, 0 if the slot is empty.
+	 * bits 0-31 score, 32-39 move + 1, 40-47 depth, 48-49 flag.
+	 */
+	private final long[] entries;
+	/**
+	 * Mask that turns a hash into a slot index.
+	 */
+	private final int mask;
+
+	/**
+	 * Create a table.
+	 * @param bits
+	 *  The table will have 2^bits slots.
+	 */
+	TranspositionTable(int bits) {
+		if(bits < 1 || bits > 30) throw new IllegalArgumentException("Invalid table size: "+bits);
+		this.keys = new long[1 << bits];
+		this.entries = new long[1 << bits];
+		this.mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Look up a position.
+	 * @param hash
+	 *  The hash of the position.
+	 * @return
+	 *  The packed entry, or 0 if the position is not in the table.
+	 */
+	long probe(long hash) {
+		int slot = (int)hash & mask;
+		return keys[slot] == hash ? entries[slot] : 0L;
+	}
+
+	/**
+	 * Store the result of searching a position, replacing whatever was in its slot.
+	 * @param hash
+	 *  The hash of the position.
+	 * @param score
+	 *  The score, already adjusted with Search.toTable.
+	 * @param move
+	 *  The best move found, or -1.
+	 * @param depth
+	 *  The depth the position was searched to.
+	 * @param flag
+	 *  EXACT, LOWER or UPPER.
+	 * @return
+	 *  True if a different position was replaced.
+	 */
+	boolean store(long hash, int score, int move, int depth, int flag) {
+		int slot = (int)hash & mask;
+		boolean overwrote = keys[slot] != 0 && keys[slot] != hash;
+		keys[slot] = hash;
+		entries[slot] = (score & 0xFFFFFFFFL)
+				| ((long)((move + 1) & 0xFF) << 32)
+				| ((long)(Math.min(depth, 0xFF)) << 40)
+				| ((long)flag << 48);
+		return overwrote;
+	}
+
+	/**
+	 * Empty the table.
+	 */
+	void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(entries, 0L);
+	}
+
+	/**
+	 * @param entry
+	 *  A packed entry.
+	 * @return
+	 *  The stored score.
+	 */
+	static int score(long entry) { return (int)entry; }
+
+	/**
+	 * @param entry
+	 *  A packed entry.
+	 * @return
+	 *  The stored move, -1 if there is none.
+	 */
+	static int move(long entry) { return (int)((entry >>> 32) & 0xFF) - 1; }
+
+	/**
+	 * @param entry
+	 *  A packed entry.
+	 * @return
+	 *  The depth the entry was searched to.
+	 */
+	static int depth(long entry) { return (int)((entry >>> 40) & 0xFF); }
+
+	/**
+	 * @param entry
+	 *  A packed entry.
+	 * @return
+	 *  EXACT, LOWER or UPPER.
+	 */
+	static int flag(long entry) { return (int)((entry >>> 48) & 0x3); }
+}
@@ -270,21 +270,16 @@ final class ArrayBoard implements Board {
 	@Override
 	public void draw(Graphics g) {
 		assert pieces.length >= 4;
-		float unit = 1.0f;
-		float width = pieces.length * unit;
-		//Draw the base below 0,0,0
-		g.setActiveColor(EMPTY);
-		g.drawCubeAt(-1, -2, -1, unit + width + unit, unit);
-		//draw the pieces as spheres
-		for(int x = 0; x < pieces.length; x++) {
-			for(int y = 0; y < pieces.length; y++) {
-				for(int z = 0; z < pieces.length; z++) {
-					Piece p = getPieceAt(x, y, z);
-					g.setActiveColor(p);
-					g.drawSphereAt(x, y, z, unit);
+		int dim = pieces.length;
+		Piece[] cells = new Piece[dim * dim * dim];
+		for(int x = 0; x < dim; x++) {
+			for(int y = 0; y < dim; y++) {
+				for(int z = 0; z < dim; z++) {
+					cells[Board.cell(dim, x, y, z)] = pieces[x][y][z];
 				}
 			}
 		}
+		Board.draw(g, dim, cells);
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package connect3DCore;
 import java.util.List;
 
 import connect3DRender.Component;
+import connect3DRender.Graphics;
 
 /**
  * Public facing board interface.
@@ -94,4 +95,44 @@ public interface Board extends Component {
 	 */
 	public int getNextFree(int x, int z) throws IllegalArgumentException;
 	
+	/**
+	 * Get the index of a cell in a flat copy of a board's pieces.
+	 * @param size
+	 *  The board size.
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The index of the cell, (x * size + z) * size + y, so each column is contiguous.
+	 */
+	public static int cell(int size, int x, int y, int z) {
+		return (x * size + z) * size + y;
+	}
+	
+	/**
+	 * Draw a board's base below 0,0,0 and a sphere for each cell, coloured by its piece.
+	 * Boards and the game's copies of them both draw through here, so they look the same.
+	 * @param g
+	 *  The graphics object.
+	 * @param size
+	 *  The board size.
+	 * @param cells
+	 *  The piece in each cell, indexed by cell.
+	 */
+	public static void draw(Graphics g, int size, Piece[] cells) {
+		float unit = 1.0f;
+		g.setActiveColor(Piece.EMPTY);
+		g.drawCubeAt(-1, -2, -1, unit + size * unit + unit, unit);
+		for(int x = 0; x < size; x++) {
+			for(int y = 0; y < size; y++) {
+				for(int z = 0; z < size; z++) {
+					g.setActiveColor(cells[cell(size, x, y, z)]);
+					g.drawSphereAt(x, y, z, unit);
+				}
+			}
+		}
+	}
 }
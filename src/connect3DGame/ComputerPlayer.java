@@ -0,0 +1,82 @@
+package connect3DGame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import connect3DAI.Ponderer;
+import connect3DAI.Position;
+import connect3DAI.SearchResult;
+import connect3DAI.SearchStats;
+
+/**
+ * The computer, searching on a thread of its own so the game thread never waits for it.
+ * The ponderer is only ever used from that thread, which also starts the pondering while humans decide.
+ * @author Benjamin
+ *
+ */
+public final class ComputerPlayer implements Player {
+
+	/**
+	 * Chooses the moves.
+	 */
+	private final Ponderer ai;
+	/**
+	 * The thread the ponderer is used from.
+	 */
+	private final ExecutorService thread = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Computer");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * What the search for the last move did.
+	 */
+	private volatile SearchStats stats = SearchStats.EMPTY;
+
+	/**
+	 * Create a computer player.
+	 * @param ai
+	 *  Chooses the moves.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the ponderer is null.
+	 */
+	public ComputerPlayer(Ponderer ai) throws IllegalArgumentException {
+		if(ai == null) throw new IllegalArgumentException("Ponderer cannot be null!");
+		this.ai = ai;
+	}
+
+	@Override
+	public CompletableFuture<Move> requestMove(Position position) {
+		return CompletableFuture.supplyAsync(() -> {
+			SearchResult r = ai.move(position);
+			stats = r.stats;
+			return new Move(position.columnX(r.move), position.columnZ(r.move));
+		}, thread);
+	}
+
+	@Override
+	public void humanToMove(Position position) {
+		thread.execute(() -> ai.ponder(position));
+	}
+
+	@Override
+	public SearchStats stats() { return stats; }
+
+	@Override
+	public void stop() {
+		thread.shutdownNow(); //interrupts a search in progress
+		boolean interrupted = false;
+		while(true) {
+			try {
+				thread.awaitTermination(1, TimeUnit.DAYS);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		ai.stop();
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+}
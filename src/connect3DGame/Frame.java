@@ -0,0 +1,145 @@
+package connect3DGame;
+
+import java.util.Arrays;
+
+import connect3DAI.SearchStats;
+import connect3DCore.Board;
+import connect3DCore.Piece;
+import connect3DRender.Graphics;
+import connect3DUtil.Coord;
+
+/**
+ * Everything the renderer shows of one moment of the game, written by the simulation thread and drawn by the render
+ * thread. Frames are passed through a triple buffer and reused, the simulation writes every field of a frame before
+ * publishing it and never touches it again until the render thread has moved on.
+ * @author Benjamin
+ *
+ */
+final class Frame {
+
+	/**
+	 * The board size.
+	 */
+	final int dim;
+	/**
+	 * The piece in each cell, indexed by cell.
+	 */
+	final Piece[] cells;
+	/**
+	 * The value of each column for the heatmap, indexed x * dim + z, NaN where there is none.
+	 */
+	final float[] heat;
+	/**
+	 * The player to move.
+	 */
+	Piece toMove = Piece.EMPTY;
+	/**
+	 * What the search for the computer's last move did.
+	 */
+	SearchStats computerStats = SearchStats.EMPTY;
+	/**
+	 * The hinted column, -1 for none.
+	 */
+	int hint = -1;
+
+	/**
+	 * Create an empty frame.
+	 * @param dim
+	 *  The board size.
+	 */
+	Frame(int dim) {
+		this.dim = dim;
+		this.cells = new Piece[dim * dim * dim];
+		this.heat = new float[dim * dim];
+		Arrays.fill(cells, Piece.EMPTY);
+		Arrays.fill(heat, Float.NaN);
+	}
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The index of the cell.
+	 */
+	int cell(int x, int y, int z) { return Board.cell(dim, x, y, z); }
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The height the next piece dropped in the column lands at, -1 if it is full.
+	 */
+	int nextFree(int x, int z) {
+		for(int y = 0; y < dim; y++) {
+			if(cells[cell(x, y, z)] == Piece.EMPTY) return y;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param other
+	 *  Another frame of the same size.
+	 * @return
+	 *  True if the frames look the same.
+	 */
+	boolean sameAs(Frame other) {
+		return toMove == other.toMove && computerStats == other.computerStats && hint == other.hint
+				&& Arrays.equals(cells, other.cells) && Arrays.equals(heat, other.heat);
+	}
+
+	/**
+	 * Draw the frame: the board, whose turn it is, the computer's stats, the hovered column, the hint and the heatmap.
+	 * @param g
+	 *  The graphics.
+	 * @param hover
+	 *  The location the mouse is over, or null.
+	 */
+	void draw(Graphics g, Coord hover) {
+		Board.draw(g, dim, cells);
+		if(toMove != Piece.EMPTY) g.drawMessage(toMove.name()+"'s Turn");
+		if(computerStats.searches > 0) g.drawMessage("Computer: "+computerStats.summary());
+		if(hover != null) {
+			int x = (int)hover.x;
+			int z = (int)hover.z;
+			int y = isXZvalid(x, z) ? nextFree(x, z) : -1;
+			if(y >= 0) {
+				g.setActiveColor(Piece.WHITE);
+				g.drawSphereAt(x, y, z, 1);
+			}
+		}
+		if(hint >= 0) {
+			int x = hint / dim; //columns are numbered (x * size) + z
+			int z = hint % dim;
+			int y = nextFree(x, z);
+			if(y >= 0) {
+				g.setActiveColor(toMove);
+				g.drawGhostAt(x, y, z, 1);
+			}
+		}
+		for(int move = 0; move < heat.length; move++) {
+			if(Float.isNaN(heat[move])) continue;
+			int x = move / dim;
+			int z = move % dim;
+			int y = nextFree(x, z);
+			if(y >= 0) g.drawHeatAt(x, y, z, 1, heat[move]);
+		}
+	}
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param z
+	 *  depth
+	 * @return
+	 *  True if the column is on the board.
+	 */
+	private boolean isXZvalid(int x, int z) {
+		return x >= 0 && x < dim && z >= 0 && z < dim;
+	}
+}
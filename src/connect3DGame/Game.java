@@ -1,21 +1,43 @@
 package connect3DGame;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
 
+import connect3DAI.HintSearch;
+import connect3DAI.MoveHeatmap;
+import connect3DAI.Ponderer;
+import connect3DAI.Position;
+import connect3DAI.SearchStats;
 import connect3DCore.Board;
 import connect3DCore.BoardFactory;
 import connect3DCore.Piece;
 import connect3DRender.InitializationException;
 import connect3DRender.Observer;
 import connect3DRender.Renderer;
+import connect3DRender.UserEvent;
 import connect3DUtil.Coord;
+import connect3DUtil.Signal;
+import connect3DUtil.TripleBuffer;
 
 /**
  * Main game thread. 
- * Registers as an observer of renderer events.
- * Continuously polls the renderer to check for events and then redraw.
- * Maintains the state of game.
+ * Registers as an observer of renderer events, which are delivered on the simulation thread once a tick.
+ * The game is simulated on a thread of its own, which plays the moves and publishes what should be shown as a Frame
+ * through a triple buffer whenever it changes. The thread that runs the game polls the renderer for events and redraws,
+ * and the renderer draws the newest frame at its own rate, so a slow frame never holds up the game
+ * and the game never makes the renderer drop a frame.
+ * Every visible change bumps the scene version, and the renderer is only redrawn when the version or its own view
+ * has changed, otherwise the thread parks until there is input, so an idle board takes next to no CPU.
+ * Each seat is played by a Player, which delivers its moves asynchronously, so a slow computer never stops
+ * the simulation from publishing frames. Computers also ponder while the humans decide.
+ * If a player fails to deliver a move the game ends, and run throws what the player failed with.
+ * Hints can be turned on, then the best move found so far is shown to humans as a ghost piece.
+ * The heatmap can be turned on too, then every move is shown as a ghost colored by how good it is.
+ * A game never exits the program, so many can run side by side, see GameHost.
  * @author Benjamin
  *
  */
@@ -25,8 +47,100 @@ public final class Game implements Runnable, Observer {
 	private List<Piece> players;
 	private Board board;
 	private final int BOARD_SIZE;
-	private int currentPlayer;
-	private Coord currentSelect;
+	private volatile int currentPlayer;
+	private volatile Coord currentSelect;
+	/**
+	 * The player of each seat.
+	 */
+	private final Player[] seats;
+	/**
+	 * Finds hints for human players, null if hints are off.
+	 */
+	private HintSearch hints;
+	/**
+	 * The number of moves played so far, used to tell when the hints need restarting.
+	 */
+	private volatile int turn;
+	/**
+	 * The turn the hints are being searched for.
+	 */
+	private volatile int hintTurn = -1;
+	/**
+	 * Values every move for human players, null if the heatmap is off.
+	 */
+	private MoveHeatmap heatmap;
+	/**
+	 * The turn the heatmap is being searched for.
+	 */
+	private volatile int heatTurn = -1;
+	/**
+	 * The turn the other seats were last told a human is to move, so asking again after a move that couldn't be played
+	 * doesn't restart their pondering.
+	 */
+	private int ponderTurn = -1;
+	/**
+	 * How often the simulation publishes a frame while the hint or heatmap is being searched.
+	 */
+	private static final long TICK_MILLIS = 16;
+	/**
+	 * The longest the render loop or the simulation parks while nothing changes. Wake ups aren't lost,
+	 * so this is only a safety net, and it is long as idle games should cost next to nothing.
+	 */
+	private static final long IDLE_MILLIS = 60000;
+	/**
+	 * How long a renderer that blocks on input waits for the input to change the game before redrawing anyway.
+	 */
+	private static final long INPUT_MILLIS = 250;
+	/**
+	 * Hands frames from the simulation thread to the thread drawing the renderer's components.
+	 */
+	private final TripleBuffer<Frame> frames;
+	/**
+	 * The scene version, counts the visible changes to the game: new frames, hovering, new turns and the end.
+	 * Guarded by its monitor for waiting, and volatile for reading.
+	 */
+	private volatile int version;
+	/**
+	 * The frame last published, only used by the simulation thread. The writer never changes a published frame,
+	 * so it can still be compared against.
+	 */
+	private Frame shown;
+	/**
+	 * The monitor the render loop waits on for the version to change.
+	 */
+	private final Object changes = new Object();
+	/**
+	 * True while a human is being asked for a move.
+	 */
+	private volatile boolean humanToMove;
+	/**
+	 * True once the game is over and its last frame published.
+	 */
+	private volatile boolean over;
+	/**
+	 * Set to end the game early.
+	 */
+	private volatile boolean quit;
+	/**
+	 * What a player failed with when asked for a move, which ended the game, null if none did.
+	 */
+	private volatile Throwable failure;
+	/**
+	 * Raised when the simulation should tick without waiting: input arrived, a move arrived, or the game is stopping.
+	 */
+	private final Signal nudged = new Signal();
+	/**
+	 * Creates the simulation thread.
+	 */
+	private ThreadFactory threads = (r) -> {
+		Thread t = new Thread(r, "Simulation");
+		t.setDaemon(true);
+		return t;
+	};
+	/**
+	 * What the search for the computer's last move did, shown on the HUD.
+	 */
+	private SearchStats computerStats = SearchStats.EMPTY;
 	
 	/**
 	 * Games need a renderer to perform IO through.
@@ -42,78 +156,369 @@ public final class Game implements Runnable, Observer {
 	 * @throws IllegalArgumentException 
 	 *  Thrown if the players list is empty, does not contain two or more pieces, or contains empty
 	 *  which is an invalid player type.
+	 * @throws IllegalStateException
+	 *  Thrown if the renderer fails to initialize, it is destroyed.
 	 */
-	public Game(Renderer r, List<Piece> players, int board_size) throws IllegalArgumentException {
+	public Game(Renderer r, List<Piece> players, int board_size) throws IllegalArgumentException, IllegalStateException {
 		if(r == null || players == null) throw new IllegalArgumentException("Params cannot be null!");
 		if(players.isEmpty() || players.contains(Piece.EMPTY)) throw new IllegalArgumentException("Must provide valid players");
 		this.BOARD_SIZE = board_size;
 		this.players = Collections.unmodifiableList(players);
 		this.currentPlayer = 0;
+		this.seats = new Player[players.size()];
+		Arrays.setAll(seats, i -> new HumanPlayer());
+		this.frames = new TripleBuffer<>(() -> new Frame(board_size));
 		this.renderer = r;
 		renderer.addObserver(this);
+		renderer.setInputListener(this::nudge);
 		try {
 			renderer.initialize();
 		} catch (InitializationException e) {
 			renderer.destroy();
-			e.printStackTrace();
-			System.exit(-1);
+			throw new IllegalStateException("The renderer failed to initialize", e);
 		}
 		board = BoardFactory.board(BOARD_SIZE);
-		//These components will be redrawn each frame.
-		renderer.addComponent(board);
-		renderer.addComponent((g) -> {
-			//Anonymous component to display the current player.
-			g.drawMessage(players.get(currentPlayer).name()+"'s Turn");
-		});
-		renderer.addComponent((g) -> {
-			if(currentSelect == null) return;
-			int x = (int)this.currentSelect.x;
-			int z = (int)this.currentSelect.z;
-			if(board.isXZvalid(x, z)) {
-				int y = board.getNextFree(x, z);
-				if(y >= 0) {
-					g.setActiveColor(Piece.WHITE);
-					g.drawSphereAt(x, y, z, 1);
-				}
-			}
-		});
-		
+		//The newest frame is redrawn each frame, on whichever thread the renderer draws on.
+		renderer.addComponent((g) -> frames.acquire().draw(g, currentSelect));
 	}
 	
+	/**
+	 * Give a seat to a player, every seat starts with a human.
+	 * @param piece
+	 *  The piece of the seat.
+	 * @param player
+	 *  The player for the seat.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the piece is not a player or the player is null.
+	 */
+	public void setPlayer(Piece piece, Player player) throws IllegalArgumentException {
+		int seat = players.indexOf(piece);
+		if(seat < 0 || player == null) throw new IllegalArgumentException("Must provide a piece and a player");
+		seats[seat] = player;
+	}
+
+	/**
+	 * Give a player's seat to the computer.
+	 * @param player
+	 *  The player the computer will play as.
+	 * @param ai
+	 *  Chooses the computer's moves.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the piece is not a player, or the game does not have two players, as the search only plays two player games.
+	 */
+	public void setComputer(Piece player, Ponderer ai) throws IllegalArgumentException {
+		if(players.indexOf(player) < 0 || ai == null) throw new IllegalArgumentException("Must provide a player and an AI");
+		if(players.size() != 2) throw new IllegalArgumentException("The computer can only play two player games");
+		setPlayer(player, new ComputerPlayer(ai));
+	}
+
+	/**
+	 * Show human players the move the computer would make.
+	 * @param hints
+	 *  Searches for hints, or null to turn hints off.
+	 */
+	public void setHints(HintSearch hints) {
+		if(this.hints != null) this.hints.stop();
+		this.hints = hints;
+		this.hintTurn = -1;
+	}
+
+	/**
+	 * Show human players how good every move is.
+	 * @param heatmap
+	 *  Values the moves, or null to turn the heatmap off.
+	 */
+	public void setHeatmap(MoveHeatmap heatmap) {
+		if(this.heatmap != null) this.heatmap.stop();
+		this.heatmap = heatmap;
+		this.heatTurn = -1;
+	}
+	
+	/**
+	 * Choose how the simulation thread is created, before the game is run.
+	 * @param threads
+	 *  Creates the thread.
+	 * @throws IllegalArgumentException
+	 *  Thrown if threads is null.
+	 */
+	public void setThreadFactory(ThreadFactory threads) throws IllegalArgumentException {
+		if(threads == null) throw new IllegalArgumentException("Must provide a thread factory");
+		this.threads = threads;
+	}
+
+	/**
+	 * End the game early, as if the user asked to exit. Run returns once the last frame is drawn.
+	 * Safe to call from any thread.
+	 */
+	public void stop() {
+		quit = true;
+		nudge();
+	}
+
+	/**
+	 * Safe to call from any thread.
+	 * @return
+	 *  The number of moves played so far.
+	 */
+	public int movesPlayed() { return turn; }
+
+	/**
+	 * Safe to call from any thread.
+	 * @return
+	 *  True once the game has finished, whether it was won, drawn or stopped.
+	 */
+	public boolean isOver() { return over; }
+
+	/**
+	 * Only call once run has returned.
+	 * @return
+	 *  The piece that won, EMPTY if no one did.
+	 */
+	public Piece winner() { return board.hasSomeoneWon() ? board.getWinner() : Piece.EMPTY; }
+	
 	@Override
 	public void run() {
-		while((!board.hasSomeoneWon()) && (!board.isBoardFull() && renderer.isActive())) {
-			renderer.pollEvents();
+		Thread simulation = threads.newThread(this::simulate);
+		simulation.start();
+		int drawn = -1;
+		boolean finished = false;
+		while(!finished && renderer.isActive()) {
+			if(renderer.pollBlocks()) {
+				drawn = awaitChange(drawn);
+			} else if(version == drawn && !renderer.isDirty()) {
+				renderer.awaitEvents(IDLE_MILLIS); //nothing new to draw
+				continue;
+			} else {
+				//the scene only changes when the simulation ticks, so this needs no pacing of its own.
+				drawn = version;
+			}
+			finished = over; //read before drawing, so the last frame is drawn
 			renderer.redraw();
+			if(!finished && (humanToMove || !renderer.pollBlocks())) renderer.pollEvents();
 		}
-		
-		if(board.isBoardFull() || !board.hasSomeoneWon()) {
-			System.out.println("No one wins...");
-		} else {
-			System.out.println(board.getWinner() + " WINS!!!");
+		simulation.interrupt();
+		boolean interrupted = false;
+		while(true) {
+			try {
+				simulation.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
 		}
+		if(interrupted) Thread.currentThread().interrupt();
 		renderer.destroy();
+		if(failure != null) throw new IllegalStateException("A player failed to move", failure);
+	}
+
+	/**
+	 * The simulation thread: asks the players for their moves and plays them, publishing a frame each tick
+	 * the game looks different, until the game is over, stopped or the thread is interrupted.
+	 */
+	private void simulate() {
+		CompletableFuture<Move> move = null;
+		try {
+			while(!board.hasSomeoneWon() && !board.isBoardFull() && !quit && !Thread.currentThread().isInterrupted()) {
+				Player player = seats[currentPlayer];
+				boolean human = player instanceof HumanPlayer;
+				if(move == null) {
+					move = requestMove(player, human);
+					move.whenComplete((m, e) -> nudge());
+					humanToMove = human;
+					changed();
+				}
+				renderer.notifyObservers(); //the input queued since the last tick
+				publish();
+				awaitTick(move);
+				if(move.isDone()) {
+					humanToMove = false;
+					play(player, move.join());
+					move = null;
+					changed();
+				}
+			}
+		} catch (CompletionException e) {
+			failure = e.getCause();
+		} finally {
+			humanToMove = false;
+			for(Player player : seats) player.stop();
+			if(hints != null) hints.stop();
+			if(heatmap != null) heatmap.stop();
+			publish();
+			over = true;
+			changed();
+		}
 	}
 
 	@Override
-	public void update(int x, int y, int z, String type) {
-		switch(type.toLowerCase()) {
-			case "exit":
-				System.out.println("Good bye.");
-				renderer.destroy();
-				System.exit(0);
-			case "place":
-				placeAt(x,z);
+	public void update(UserEvent event) {
+		switch(event.type()) {
+			case EXIT:
+				stop();
 				break;
-			case "hover":
-				this.currentSelect = new Coord(x,y,z,-1);
+			case PLACE:
+				//moves are played on the simulation thread, this only answers the human's request.
+				Player player = seats[currentPlayer];
+				if(player instanceof HumanPlayer) ((HumanPlayer)player).place(event.x(), event.z());
 				break;
-			default:
-				System.out.println("Unrecognized input: "+type);
+			case HOVER:
+				Coord select = currentSelect;
+				if(select == null || (int)select.x != event.x() || (int)select.z != event.z()) {
+					this.currentSelect = new Coord(event.x(), event.y(), event.z(), -1);
+					changed();
+				}
 				break;
 		}
 	}
 
+	/**
+	 * Ask the current player for their move. When a human is asked, the other seats may think on their time.
+	 * @param player
+	 *  The current player.
+	 * @param human
+	 *  True if the player is a human.
+	 * @return
+	 *  The move, when it arrives.
+	 */
+	private CompletableFuture<Move> requestMove(Player player, boolean human) {
+		if(human) {
+			if(hints != null && hintTurn != turn) startHints();
+			if(heatmap != null && heatTurn != turn) startHeatmap();
+			if(ponderTurn != turn) {
+				for(Player other : seats) {
+					if(other != player) other.humanToMove(position());
+				}
+				ponderTurn = turn;
+			}
+		}
+		return player.requestMove(position());
+	}
+
+	/**
+	 * Park until the next tick: the move or input arrives, or the game is stopped.
+	 * While a hint or the heatmap is being searched, tick at least every TICK_MILLIS to show its progress,
+	 * otherwise nothing changes without a nudge, so only wake now and then.
+	 * @param move
+	 *  The requested move.
+	 */
+	private void awaitTick(CompletableFuture<Move> move) {
+		if(move.isDone()) return;
+		boolean searching = (hints != null && hintTurn == turn) || (heatmap != null && heatTurn == turn);
+		nudged.await(searching ? TICK_MILLIS : IDLE_MILLIS);
+	}
+
+	/**
+	 * Wake the simulation for a tick. Safe to call from any thread.
+	 */
+	private void nudge() { nudged.raise(); }
+
+	/**
+	 * Fill the back frame from the game and hand it to the renderer, if it differs from the last one.
+	 * Only called on the simulation thread.
+	 */
+	private void publish() {
+		Frame frame = frames.back();
+		for(int x = 0; x < BOARD_SIZE; x++) {
+			for(int y = 0; y < BOARD_SIZE; y++) {
+				for(int z = 0; z < BOARD_SIZE; z++) {
+					frame.cells[frame.cell(x, y, z)] = board.getPieceAt(x, y, z);
+				}
+			}
+		}
+		frame.toMove = players.get(currentPlayer);
+		frame.computerStats = computerStats;
+		frame.hint = hints != null && hintTurn == turn ? hints.best() : -1;
+		if(heatmap != null && heatTurn == turn) heatmap.heat(frame.heat);
+		else Arrays.fill(frame.heat, Float.NaN);
+		if(shown != null && frame.sameAs(shown)) return;
+		frames.publish();
+		shown = frame;
+		changed();
+	}
+
+	/**
+	 * Bump the scene version, and wake the render loop if it is waiting for the game to change.
+	 */
+	private void changed() {
+		synchronized(changes) {
+			version++;
+			changes.notifyAll();
+		}
+		renderer.wakeEvents();
+	}
+
+	/**
+	 * Wait for the game to change since it was last drawn. While a human is to move their input may not change it,
+	 * so then only wait a little.
+	 * @param drawn
+	 *  The version last drawn.
+	 * @return
+	 *  The version about to be drawn.
+	 */
+	private int awaitChange(int drawn) {
+		long deadline = System.currentTimeMillis() + INPUT_MILLIS;
+		synchronized(changes) {
+			try {
+				while(version == drawn) {
+					if(humanToMove) {
+						long left = deadline - System.currentTimeMillis();
+						if(left <= 0) break;
+						changes.wait(left);
+					} else {
+						changes.wait();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return version;
+		}
+	}
+
+
+	/**
+	 * Play the move a player delivered. If it can't be played the player is asked again.
+	 * @param player
+	 *  The player who moved.
+	 * @param move
+	 *  Their move.
+	 */
+	private void play(Player player, Move move) {
+		int before = turn;
+		placeAt(move.x, move.z);
+		//the heatmap's pool has a thread per core, it mustn't slow down the next player's search
+		if(heatmap != null && heatTurn == before && turn != before) heatmap.stop();
+		SearchStats stats = player.stats();
+		if(stats.searches > 0) computerStats = stats;
+	}
+
+	/**
+	 * Start searching for a hint for the human to move.
+	 * Hints need the two player search, so there are none in bigger games.
+	 */
+	private void startHints() {
+		int current = turn;
+		if(players.size() == 2) hints.start(position());
+		hintTurn = current;
+	}
+
+	/**
+	 * Start valuing the moves of the human to move. The heatmap only values two player games.
+	 */
+	private void startHeatmap() {
+		int current = turn;
+		heatmap.start(position());
+		heatTurn = current;
+	}
+
+	/**
+	 * @return
+	 *  The board as a position for the AI to search.
+	 */
+	private Position position() {
+		return Position.of(board, BOARD_SIZE, players, currentPlayer);
+	}
+
 	/**
 	 * Tell the board to place a piece at (x,z) for the current player.
 	 * If placement succeeded then increment to the next player.
@@ -141,6 +546,7 @@ public final class Game implements Runnable, Observer {
 	 */
 	private void incrementPlayer() {
 		int rollOver = players.size();
+		turn++;
 		currentPlayer++;
 		if(currentPlayer == rollOver) {
 			currentPlayer = 0;
@@ -0,0 +1,260 @@
+package connect3DGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many independent games side by side in one JVM, for serving games rather than playing one at a desk.
+ * Each game gets a thread for its render loop and one for its simulation, from the host's thread factory.
+ * On a JVM with virtual threads they are virtual, so thousands of games cost little more than their memory,
+ * otherwise they are daemon platform threads with small stacks.
+ * An idle game parks both threads until it gets input, so mostly idle games take next to no CPU.
+ *
+ * A game's memory is bounded by its board: the board, three frames and a fixed size event queue.
+ * Shutting the host down stops every game and waits for them to finish.
+ * @author Benjamin
+ *
+ */
+public final class GameHost {
+
+	/**
+	 * The stack size of platform threads, the game threads only need shallow stacks.
+	 */
+	private static final long STACK_BYTES = 256 * 1024;
+
+	/**
+	 * Creates the game threads.
+	 */
+	private final ThreadFactory threads;
+	/**
+	 * The games still running.
+	 */
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+	/**
+	 * Numbers the games.
+	 */
+	private final AtomicInteger ids = new AtomicInteger();
+	/**
+	 * The number of games started.
+	 */
+	private final LongAdder started = new LongAdder();
+	/**
+	 * The number of games finished.
+	 */
+	private final LongAdder finished = new LongAdder();
+	/**
+	 * The moves played in finished games.
+	 */
+	private final LongAdder finishedMoves = new LongAdder();
+	/**
+	 * The moves played and the time when the move rate was last sampled, guarded by this.
+	 */
+	private long sampleMoves, sampleNanos = System.nanoTime();
+	/**
+	 * True once shut down, no more games are started. Guarded by sessions, with the starting of game threads,
+	 * so shutdown never sees a game whose thread hasn't started.
+	 */
+	private boolean closed;
+
+	/**
+	 * Create a host that runs its games on virtual threads if the JVM has them, otherwise on platform threads.
+	 */
+	public GameHost() {
+		this(gameThreads());
+	}
+
+	/**
+	 * Create a host.
+	 * @param threads
+	 *  Creates the threads the games run on.
+	 * @throws IllegalArgumentException
+	 *  Thrown if threads is null.
+	 */
+	public GameHost(ThreadFactory threads) throws IllegalArgumentException {
+		if(threads == null) throw new IllegalArgumentException("Must provide a thread factory");
+		this.threads = threads;
+	}
+
+	/**
+	 * @return
+	 *  A factory of virtual threads where the JVM has them, looked up reflectively so the host still runs on older
+	 *  JVMs, and of small daemon platform threads otherwise.
+	 */
+	private static ThreadFactory gameThreads() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			AtomicInteger count = new AtomicInteger();
+			return (r) -> {
+				Thread t = new Thread(null, r, "Game-"+count.incrementAndGet(), STACK_BYTES);
+				t.setDaemon(true);
+				return t;
+			};
+		}
+	}
+
+	/**
+	 * Start running a game. The game must be set up, with its players, hints and so on, but not yet run.
+	 * Its renderer is destroyed when it finishes.
+	 * @param game
+	 *  The game.
+	 * @return
+	 *  The running game.
+	 * @throws IllegalArgumentException
+	 *  Thrown if game is null.
+	 * @throws IllegalStateException
+	 *  Thrown if the host has been shut down.
+	 */
+	public Session start(Game game) throws IllegalArgumentException, IllegalStateException {
+		if(game == null) throw new IllegalArgumentException("Must provide a game");
+		game.setThreadFactory(threads);
+		Session session = new Session(ids.incrementAndGet(), game);
+		synchronized(sessions) {
+			if(closed) throw new IllegalStateException("The host has been shut down");
+			sessions.add(session);
+			started.increment();
+			session.thread.start();
+		}
+		return session;
+	}
+
+	/**
+	 * @return
+	 *  The number of games running.
+	 */
+	public int activeGames() { return sessions.size(); }
+
+	/**
+	 * @return
+	 *  The number of games started.
+	 */
+	public long gamesStarted() { return started.sum(); }
+
+	/**
+	 * @return
+	 *  The number of games finished.
+	 */
+	public long gamesFinished() { return finished.sum(); }
+
+	/**
+	 * @return
+	 *  The number of moves played in every game, running and finished.
+	 */
+	public long movesPlayed() {
+		long moves = finishedMoves.sum();
+		for(Session s : sessions) moves += s.game.movesPlayed();
+		return moves;
+	}
+
+	/**
+	 * The move rate since the last call, the first call measures from when the host was created.
+	 * @return
+	 *  The moves played per second across every game.
+	 */
+	public synchronized double movesPerSecond() {
+		long moves = movesPlayed();
+		long now = System.nanoTime();
+		double rate = (moves - sampleMoves) * 1e9 / Math.max(1, now - sampleNanos);
+		sampleMoves = moves;
+		sampleNanos = now;
+		return rate;
+	}
+
+	/**
+	 * Stop every game and wait for them to finish. No more games can be started.
+	 * @throws InterruptedException
+	 *  Thrown if interrupted while waiting, the games are still stopping.
+	 */
+	public void shutdown() throws InterruptedException {
+		List<Session> running;
+		synchronized(sessions) {
+			closed = true;
+			running = new ArrayList<>(sessions);
+		}
+		for(Session s : running) s.stop();
+		for(Session s : running) s.join();
+	}
+
+	/**
+	 * A game running on the host.
+	 * @author Benjamin
+	 *
+	 */
+	public final class Session {
+
+		/**
+		 * The number of the game on its host.
+		 */
+		public final int id;
+		/**
+		 * The game.
+		 */
+		public final Game game;
+		/**
+		 * Runs the game's render loop.
+		 */
+		private final Thread thread;
+		/**
+		 * The exception that ended the game, null if it ended normally or is still running.
+		 */
+		private volatile RuntimeException failure;
+
+		/**
+		 * @param id
+		 *  The number of the game.
+		 * @param game
+		 *  The game.
+		 */
+		private Session(int id, Game game) {
+			this.id = id;
+			this.game = game;
+			this.thread = threads.newThread(this::run);
+		}
+
+		/**
+		 * The game thread: runs the game and takes it off the host when it ends, however it ends.
+		 */
+		private void run() {
+			try {
+				game.run();
+			} catch (RuntimeException e) {
+				failure = e;
+			} finally {
+				//off the running games first, so its moves are never counted twice
+				sessions.remove(this);
+				finishedMoves.add(game.movesPlayed());
+				finished.increment();
+			}
+		}
+
+		/**
+		 * End the game early. Safe to call from any thread.
+		 */
+		public void stop() { game.stop(); }
+
+		/**
+		 * Wait for the game to finish.
+		 * @throws InterruptedException
+		 *  Thrown if interrupted while waiting.
+		 */
+		public void join() throws InterruptedException { thread.join(); }
+
+		/**
+		 * @return
+		 *  True once the game has finished and left the host.
+		 */
+		public boolean isDone() { return !thread.isAlive(); }
+
+		/**
+		 * @return
+		 *  The exception that ended the game, null if it ended normally or is still running.
+		 */
+		public RuntimeException failure() { return failure; }
+	}
+}
@@ -0,0 +1,241 @@
+package connect3DGame;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import connect3DAI.Ponderer;
+import connect3DAI.Position;
+import connect3DAI.Search;
+import connect3DCore.Piece;
+import connect3DRender.HeadlessRenderer;
+import connect3DRender.RenderFactory;
+
+/**
+ * Test whole games, played headless from scripted input.
+ * @author Benjamin
+ *
+ */
+class GameTests {
+
+	/**
+	 * The longest a game may take to run, far longer than any of these need.
+	 */
+	private static final Duration LIMIT = Duration.ofSeconds(30);
+
+	/**
+	 * A two player game on a board of four that fills without a line, as (x,z) columns in the order played.
+	 */
+	private static final int[] DRAW = {
+		3,2, 1,3, 2,3, 3,0, 0,0, 1,0, 1,2, 2,2, 3,0, 3,1, 2,1, 3,0, 3,3, 3,3, 0,0, 3,0,
+		1,3, 0,1, 0,0, 3,2, 3,1, 1,3, 3,3, 1,3, 0,3, 1,1, 1,2, 1,2, 1,1, 0,1, 0,1, 2,3,
+		2,1, 2,3, 3,3, 3,1, 3,2, 2,3, 2,0, 0,0, 2,0, 1,2, 3,1, 3,2, 1,1, 0,1, 1,1, 1,0,
+		2,0, 0,3, 1,0, 0,3, 2,2, 2,0, 0,2, 0,2, 1,0, 0,2, 0,3, 0,2, 2,1, 2,2, 2,2, 2,1,
+	};
+
+	/**
+	 * @return
+	 *  A headless renderer for a board of four.
+	 */
+	static HeadlessRenderer headless() {
+		return (HeadlessRenderer)RenderFactory.Renderer("headless", 4);
+	}
+
+	/**
+	 * Queue a sequence of (x,z) columns.
+	 * @param r
+	 *  The renderer to script.
+	 * @param xz
+	 *  Pairs of x,z coordinates.
+	 */
+	static void script(HeadlessRenderer r, int... xz) {
+		for(int i = 0; i < xz.length; i += 2) r.script(xz[i], xz[i+1]);
+	}
+
+	@Test
+	void testScriptedWin() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		script(r, 0,0, 0,1, 1,0, 1,1, 2,0, 2,1, 3,0);
+		assertTimeoutPreemptively(LIMIT, game::run);
+		assertTrue(game.isOver());
+		assertEquals(Piece.RED, game.winner());
+		assertEquals(7, game.movesPlayed());
+		assertFalse(r.isActive());
+		//the last frame shows the winning line
+		for(int x = 0; x < 4; x++) assertEquals(Piece.RED, r.pieceAt(x, 0, 0));
+		assertEquals(Piece.BLUE, r.pieceAt(2, 0, 1));
+	}
+
+	@Test
+	void testScriptedDraw() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		script(r, DRAW);
+		assertTimeoutPreemptively(LIMIT, game::run);
+		assertTrue(game.isOver());
+		assertEquals(Piece.EMPTY, game.winner());
+		assertEquals(64, game.movesPlayed());
+		assertEquals(0, r.scripted());
+	}
+
+	@Test
+	void testMoveIntoFullColumnIsAskedAgain() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		//the fifth piece in column 0,0 can't be played, the same player moves again
+		script(r, 0,0, 0,0, 0,0, 0,0, 0,0, 1,1, 2,2, 1,2, 2,2, 1,3, 2,2, 1,0);
+		assertTimeoutPreemptively(LIMIT, game::run);
+		assertEquals(Piece.RED, game.winner());
+		assertEquals(11, game.movesPlayed());
+		assertEquals(0, r.scripted());
+	}
+
+	@Test
+	void testRetriedMoveDoesNotRestartPondering() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		int[] told = new int[1];
+		Queue<Move> replies = new ArrayDeque<>(List.of(new Move(0, 0), new Move(0, 0), new Move(2, 2), new Move(2, 2), new Move(2, 2)));
+		game.setPlayer(Piece.BLUE, new Player() {
+			@Override
+			public CompletableFuture<Move> requestMove(Position position) {
+				return CompletableFuture.completedFuture(replies.remove());
+			}
+
+			@Override
+			public void humanToMove(Position position) { told[0]++; }
+		});
+		//red's third move is into a full column, and is asked for again.
+		//each of blue's turns takes a tick, which uses up a scripted placement, so those are off the board.
+		script(r, 0,0, -1,-1, 0,0, -1,-1, 0,0, 1,1, -1,-1, 1,2, -1,-1, 1,3, -1,-1, 1,0);
+		assertTimeoutPreemptively(LIMIT, game::run);
+		assertEquals(Piece.RED, game.winner());
+		assertEquals(11, game.movesPlayed());
+		assertEquals(6, told[0]);
+	}
+
+	@Test
+	void testExitEndsGame() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		script(r, 0,0, 1,1);
+		Thread t = new Thread(() -> {
+			while(r.scripted() > 0) Thread.yield();
+			r.exit();
+		});
+		t.start();
+		assertTimeoutPreemptively(LIMIT, game::run);
+		assertTrue(game.isOver());
+		assertEquals(Piece.EMPTY, game.winner());
+		assertTrue(game.movesPlayed() <= 2);
+	}
+
+	@Test
+	void testStopEndsGame() throws InterruptedException {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		Thread t = new Thread(game);
+		t.start();
+		r.place(0, 0);
+		//the game waits for the next move until stopped
+		while(game.movesPlayed() < 1) Thread.sleep(1);
+		assertFalse(game.isOver());
+		game.stop();
+		t.join(LIMIT.toMillis());
+		assertFalse(t.isAlive());
+		assertTrue(game.isOver());
+		assertEquals(1, game.movesPlayed());
+		assertEquals(Piece.EMPTY, game.winner());
+	}
+
+	@Test
+	void testFailedPlayerEndsGame() {
+		HeadlessRenderer r = headless();
+		Game game = new Game(r, List.of(Piece.RED, Piece.BLUE), 4);
+		IllegalStateException broken = new IllegalStateException("broken");
+		game.setPlayer(Piece.BLUE, (position) -> CompletableFuture.failedFuture(broken));
+		script(r, 0,0);
+		//the game ends and the caller hears why
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> assertTimeoutPreemptively(LIMIT, game::run));
+		assertSame(broken, thrown.getCause());
+		assertTrue(game.isOver());
+		assertEquals(1, game.movesPlayed());
+		assertEquals(Piece.EMPTY, game.winner());
+		assertFalse(r.isActive());
+	}
+
+	@Test
+	void testComputerStopsPonderingAndSearching() throws InterruptedException {
+		Ponderer ai = new Ponderer(new Search(), 12);
+		ComputerPlayer computer = new ComputerPlayer(ai);
+		//a deep ponder starts while the human decides, the human replies before it has answered anything
+		Position p = new Position(6, 2);
+		computer.humanToMove(p);
+		Position q = new Position(p);
+		q.play(q.column(3, 3));
+		CompletableFuture<Move> move = computer.requestMove(q);
+		//the reply wasn't answered, so the move is searched, until the game ends
+		while(ai.misses() == 0) Thread.sleep(1);
+		assertTimeoutPreemptively(LIMIT, computer::stop);
+		assertFalse(ai.isPondering());
+		assertEquals(0, ai.hits());
+		assertTrue(move.isDone());
+		Move m = move.join();
+		assertTrue(q.canPlay(q.column(m.x, m.z)));
+	}
+
+	@Test
+	void testHostCountsFinishedGames() throws InterruptedException {
+		GameHost host = new GameHost();
+		List<GameHost.Session> sessions = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			HeadlessRenderer r = headless();
+			script(r, 0,0, 0,1, 1,0, 1,1, 2,0, 2,1, 3,0);
+			sessions.add(host.start(new Game(r, List.of(Piece.RED, Piece.BLUE), 4)));
+		}
+		for(GameHost.Session s : sessions) s.join();
+		for(GameHost.Session s : sessions) {
+			assertTrue(s.isDone());
+			assertNull(s.failure());
+			assertEquals(Piece.RED, s.game.winner());
+		}
+		assertEquals(3, host.gamesStarted());
+		assertEquals(3, host.gamesFinished());
+		assertEquals(0, host.activeGames());
+		assertEquals(21, host.movesPlayed());
+		host.shutdown();
+	}
+
+	@Test
+	void testHostShutdownWaitsForGames() throws InterruptedException {
+		GameHost host = new GameHost();
+		List<GameHost.Session> sessions = new ArrayList<>();
+		//nothing is scripted, so every game waits for a move until stopped
+		for(int i = 0; i < 4; i++) sessions.add(host.start(new Game(headless(), List.of(Piece.RED, Piece.BLUE), 4)));
+		assertTimeoutPreemptively(LIMIT, host::shutdown);
+		for(GameHost.Session s : sessions) {
+			assertTrue(s.isDone());
+			assertTrue(s.game.isOver());
+		}
+		assertEquals(0, host.activeGames());
+		assertEquals(4, host.gamesFinished());
+	}
+
+	@Test
+	void testHostRefusesGamesAfterShutdown() throws InterruptedException {
+		GameHost host = new GameHost();
+		host.shutdown();
+		Game game = new Game(headless(), List.of(Piece.RED, Piece.BLUE), 4);
+		assertThrows(IllegalStateException.class, () -> host.start(game));
+		assertEquals(0, host.gamesStarted());
+		assertEquals(0, host.activeGames());
+	}
+}
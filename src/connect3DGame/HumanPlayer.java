@@ -0,0 +1,45 @@
+package connect3DGame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import connect3DAI.Position;
+
+/**
+ * A person at the renderer. The game passes on their clicks, which complete the outstanding move request.
+ * @author Benjamin
+ *
+ */
+public final class HumanPlayer implements Player {
+
+	/**
+	 * The unanswered move request, null when it isn't this player's turn.
+	 * Clicks can arrive on the renderer's own thread.
+	 */
+	private final AtomicReference<CompletableFuture<Move>> request = new AtomicReference<>();
+
+	@Override
+	public CompletableFuture<Move> requestMove(Position position) {
+		CompletableFuture<Move> move = new CompletableFuture<>();
+		request.set(move);
+		return move;
+	}
+
+	/**
+	 * Answer the outstanding request with a click. Ignored if this player isn't being asked for a move.
+	 * @param x
+	 *  The lateral of the column clicked.
+	 * @param z
+	 *  The depth of the column clicked.
+	 */
+	public void place(int x, int z) {
+		CompletableFuture<Move> move = request.getAndSet(null);
+		if(move != null) move.complete(new Move(x, z));
+	}
+
+	@Override
+	public void stop() {
+		CompletableFuture<Move> move = request.getAndSet(null);
+		if(move != null) move.cancel(false);
+	}
+}
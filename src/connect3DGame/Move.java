@@ -0,0 +1,28 @@
+package connect3DGame;
+
+/**
+ * A move, the column a piece is dropped into.
+ * @author Benjamin
+ *
+ */
+public final class Move {
+
+	/**
+	 * The lateral and depth of the column.
+	 */
+	public final int x, z;
+
+	/**
+	 * @param x
+	 *  The lateral of the column.
+	 * @param z
+	 *  The depth of the column.
+	 */
+	public Move(int x, int z) {
+		this.x = x;
+		this.z = z;
+	}
+
+	@Override
+	public String toString() { return "("+x+", "+z+")"; }
+}
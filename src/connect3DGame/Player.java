@@ -0,0 +1,43 @@
+package connect3DGame;
+
+import java.util.concurrent.CompletableFuture;
+
+import connect3DAI.Position;
+import connect3DAI.SearchStats;
+
+/**
+ * Whoever plays a seat of the game.
+ * Moves are asked for and delivered later, so the simulation thread can keep publishing frames
+ * while a player takes its time, however slow it is.
+ * @author Benjamin
+ *
+ */
+public interface Player {
+
+	/**
+	 * Ask for the player's move. Only called on the simulation thread, never while an earlier request is unfinished.
+	 * @param position
+	 *  The position with this player to move, the player may keep it.
+	 * @return
+	 *  Completed with the move once the player has chosen.
+	 */
+	public CompletableFuture<Move> requestMove(Position position);
+
+	/**
+	 * Told when a human seat is about to move, so a computer can think on their time.
+	 * @param position
+	 *  The position with the human to move, the player may keep it.
+	 */
+	public default void humanToMove(Position position) {}
+
+	/**
+	 * @return
+	 *  What the search for the player's last move did, empty for humans.
+	 */
+	public default SearchStats stats() { return SearchStats.EMPTY; }
+
+	/**
+	 * Stop thinking and release any threads, the game is over.
+	 */
+	public default void stop() {}
+}
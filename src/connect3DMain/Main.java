@@ -1,10 +1,18 @@
 package connect3DMain;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.SwingUtilities;
 
+import connect3DAI.Analysis;
+import connect3DAI.Difficulty;
+import connect3DAI.HintSearch;
+import connect3DAI.MoveHeatmap;
+import connect3DAI.Ponderer;
+import connect3DAI.Search;
 import connect3DCore.Piece;
 import connect3DGame.Game;
 import connect3DRender.RenderFactory;
@@ -17,6 +25,10 @@ import connect3DUtil.ConfigDialog;
  */
 public final class Main {
 	
+	/**
+	 * Seeds the computer's noise, fixed so a level plays the same move in the same position every game.
+	 */
+	private static final long COMPUTER_SEED = 0;
 	/**
 	 * The number of players the game will use.
 	 */
@@ -29,6 +41,22 @@ public final class Main {
 	 * The rendering type that the game will use.
 	 */
 	public String renderType;
+	/**
+	 * Should the computer play the second player.
+	 */
+	public boolean computerOpponent;
+	/**
+	 * Should human players be shown hints.
+	 */
+	public boolean hints;
+	/**
+	 * Should human players be shown the value of every move.
+	 */
+	public boolean heatmap;
+	/**
+	 * How strongly the computer plays.
+	 */
+	public Difficulty computerLevel;
 	/**
 	 * Should the game start.
 	 */
@@ -37,9 +65,18 @@ public final class Main {
 	/**
 	 * Use the connect 3D core lib and render lib to start a game of connect3D.
 	 * Gets player info from a ConfigDialog.
-	 * @param args ignored, currently.
+	 * @param args
+	 *  Empty to play. "analyse" followed by Analysis options analyses a file of positions without opening a window.
+	 * @throws IOException
+	 *  Thrown if the analysis can't read or write its files.
+	 * @throws InterruptedException
+	 *  Thrown if the analysis is interrupted.
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length > 0 && args[0].equals("analyse")) {
+			Analysis.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		
 		Main main = new Main();
 		
@@ -52,7 +89,23 @@ public final class Main {
 			System.exit(0);
 		}
 		if(main.shouldStart) {
-			new Game(RenderFactory.Renderer(main.renderType, main.boardSize), toPieceList(main.numberPlayers), main.boardSize).run();
+			List<Piece> players = toPieceList(main.numberPlayers);
+			Game game = new Game(RenderFactory.Renderer(main.renderType, main.boardSize), players, main.boardSize);
+			if(main.computerOpponent) {
+				try {
+					game.setComputer(players.get(1), new Ponderer(main.computerLevel, COMPUTER_SEED));
+				} catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+			if(main.hints) game.setHints(new HintSearch(new Search()));
+			if(main.heatmap) game.setHeatmap(new MoveHeatmap(Runtime.getRuntime().availableProcessors()));
+			game.run();
+			if(game.winner() == Piece.EMPTY) {
+				System.out.println("No one wins...");
+			} else {
+				System.out.println(game.winner() + " WINS!!!");
+			}
 		} 
 		System.out.println("Goodbye.");
 	}
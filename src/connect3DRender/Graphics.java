@@ -57,6 +57,34 @@ public interface Graphics{
 	 *  the 'size' of the sphere.
 	 */
 	void drawSphereAt(int x, int y, int z, float radius);
+	/**
+	 * Draw a ghost of a sphere at x,y,z, a piece that has not been placed, such as a suggested move.
+	 * Ghosts look different from spheres drawn with the same color.
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @param radius
+	 *  the 'size' of the ghost.
+	 */
+	void drawGhostAt(int x, int y, int z, float radius);
+
+	/**
+	 * Draw a ghost at x,y,z colored by how good it is, such as the value of a move, ignoring the active color.
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @param radius
+	 *  the 'size' of the ghost.
+	 * @param heat
+	 *  Between 0 for the worst, drawn red, and 1 for the best, drawn green.
+	 */
+	void drawHeatAt(int x, int y, int z, float radius, float heat);
 	
 	/**
 	 * Draws a message to the UI
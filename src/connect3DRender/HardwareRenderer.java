@@ -3,12 +3,14 @@ package connect3DRender;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import connect3DCore.Piece;
 import connect3DResources.FileLoader;
@@ -64,10 +66,19 @@ public final class HardwareRenderer implements Renderer {
 	/**
 	 * List of observers interested in receiving updates from this renderer.
 	 */
-	private final List<Observer> observers = new ArrayList<Observer>();
+	private final List<Observer> observers = new CopyOnWriteArrayList<Observer>();
 	
-	private volatile int x = 0,y = 0,z = 0;
-	private volatile String message;
+	/**
+	 * Input from the GLFW callbacks waiting to be delivered to the observers.
+	 */
+	private final UserEventQueue events = new UserEventQueue(UserEventQueue.CAPACITY);
+	
+	/**
+	 * Delivers an event to every observer.
+	 */
+	private final Observer dispatch = (e) -> {
+		for(Observer o : observers) o.update(e);
+	};
 //========================================
 	/**
 	 * The handle of the glfw window.
@@ -139,6 +150,11 @@ public final class HardwareRenderer implements Renderer {
 	 */
 	private final Map<Mesh, Set<Model>> meshModels = new HashMap<>(); 
 	
+	/**
+	 * Piece models that are drawn as wire frames, such as suggested moves.
+	 */
+	private final Set<Model> ghostModels = new HashSet<>();
+	
 	/**
 	 * List of messages to draw during each redraw.
 	 */
@@ -179,11 +195,22 @@ public final class HardwareRenderer implements Renderer {
 	 */
 	private final int boardDimension;
 
+	/**
+	 * The lowest empty cell of each column drawn this redraw, indexed x * boardDimension + z, boardDimension if the
+	 * column is full. The hit boxes are fitted to it. Only used on the GLFW thread.
+	 */
+	private final int[] columnTops;
+
 	/**
 	 * Flag to determine if the AABB should be drawn.
 	 */
 	private boolean debug = true;
 	
+	/**
+	 * Set when the camera, the window or the debug overlay changes, cleared by redraw. Only used on the GLFW thread.
+	 */
+	private boolean dirty = true;
+	
 	/**
 	 * Create a new Hardware renderer to render a board with boardDimension
 	 * @param boardDimension
@@ -191,6 +218,7 @@ public final class HardwareRenderer implements Renderer {
 	 */
 	HardwareRenderer(int boardDimension){ 
 		this.boardDimension = boardDimension;
+		this.columnTops = new int[boardDimension * boardDimension];
 		this.camera = new Camera();
 		float dimension = (float) boardDimension;
 		this.camera.radius = dimension * 2.0f;
@@ -230,7 +258,10 @@ public final class HardwareRenderer implements Renderer {
 	public void setActiveColor(Piece p) { this.activeColor = p; } 
 
 	@Override
-	public void notifyObservers() { this.observers.forEach((o)->{o.update(x, y, z, message);}); }
+	public void notifyObservers() { events.drain(dispatch); }
+
+	@Override
+	public void setInputListener(Runnable listener) { events.listen(listener); }
 
 	@Override
 	public void initialize() throws InitializationException {
@@ -260,6 +291,11 @@ public final class HardwareRenderer implements Renderer {
 		glfwSetFramebufferSizeCallback(a_window, (window, width, height)->{
 			this.WIDTH = width; this.HEIGHT = height;
 			glViewport(0,0,width,height);
+			dirty = true;
+		});
+		
+		glfwSetWindowRefreshCallback(a_window, (window)->{
+			dirty = true; //the window system lost what was on screen
 		});
 		
 		glfwSetKeyCallback(a_window, (window, key, scancode, action, modifiers)->{ 
@@ -360,7 +396,6 @@ public final class HardwareRenderer implements Renderer {
 			throw new InitializationException(e.getMessage());
 		}
 		meshModels.put(pieceMesh, new HashSet<Model>());
-		addObserver(selectManager);
 		this.initialized = true;
 		System.out.println("init HW renderer complete");
 	}
@@ -393,15 +428,33 @@ public final class HardwareRenderer implements Renderer {
 		//System.out.println("events polled");
 		glfwPollEvents(); //this method activates any call back methods we registered in the initialize method...
 	}
+
+	@Override
+	public void awaitEvents(long millis) throws IllegalStateException {
+		glfwWaitEventsTimeout(millis / 1000.0); //runs the callbacks, like glfwPollEvents
+	}
+
+	@Override
+	public void wakeEvents() {
+		if(initialized) glfwPostEmptyEvent();
+	}
+
+	@Override
+	public boolean isDirty() { return dirty; }
+
 	@Override
 	public void redraw() throws IllegalStateException {
+		dirty = false;
 		camera.updatePosition();
 		meshModels.forEach((Mesh m, Set<Model> models)->{
 			models.clear();
 		});
+		ghostModels.clear();
+		Arrays.fill(columnTops, boardDimension);
 		for(Component c : drawables) {
 			c.draw(this); //collect draw requests... this may add models to the models field.
 		}
+		selectManager.update(columnTops); //only what the game has played gets a hit box
 		glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 		
 		paintScene();
@@ -418,7 +471,12 @@ public final class HardwareRenderer implements Renderer {
 
 	@Override
 	public void drawSphereAt(int x, int y, int z, float radius) {
-		if(this.activeColor == Piece.EMPTY) return;
+		if(this.activeColor == Piece.EMPTY) {
+			//empty cells of the board, the lowest in each column is where the next piece there lands
+			int column = x * boardDimension + z;
+			columnTops[column] = Math.min(columnTops[column], y);
+			return;
+		}
 		Model m = new Model(pieceMesh, activeColor.colorVector());
 		//translate the model to be centred for the camera
 		float shift = (float)this.boardDimension * 0.5f;
@@ -429,6 +487,27 @@ public final class HardwareRenderer implements Renderer {
 		meshModels.get(pieceMesh).add(m);
 	} 
 	
+	@Override
+	public void drawGhostAt(int x, int y, int z, float radius) {
+		if(this.activeColor == Piece.EMPTY) return;
+		Model m = new Model(pieceMesh, activeColor.colorVector());
+		float shift = (float)this.boardDimension * 0.5f;
+		shift -= radius * 0.5f;
+		m.updatePosition(x - shift, y, z - shift);
+		m.updateScale(0.5f);
+		ghostModels.add(m);
+	}
+
+	@Override
+	public void drawHeatAt(int x, int y, int z, float radius, float heat) {
+		Model m = new Model(pieceMesh, ColorVector.heat(heat));
+		float shift = (float)this.boardDimension * 0.5f;
+		shift -= radius * 0.5f;
+		m.updatePosition(x - shift, y, z - shift);
+		m.updateScale(0.5f);
+		ghostModels.add(m);
+	}
+	
 	@Override
 	public void drawMessage(String msg) {
 		TextModel m = new TextModel(msg, textTexture, 16, 16);
@@ -490,6 +569,21 @@ public final class HardwareRenderer implements Renderer {
 			mesh.endDraw();
 		});
 		
+		//draw the ghosts as wire frames
+		if(!ghostModels.isEmpty()) {
+			glPolygonMode(GL_FRONT_AND_BACK, GL_LINE);
+			pieceMesh.startDraw();
+			ghostModels.forEach((Model m)->{
+				transformManager.updateWorldAndViewMatrix(m.getPosition(), m.getRotation(), m.getScale());
+				shaderProgram.uploadMat4f("worldAndViewMatrix", transformManager.worldAndViewMatrix);
+				m.ready();
+				shaderProgram.uploadMaterial("material", pieceMesh.getMaterial());
+				pieceMesh.drawSingle();
+			});
+			pieceMesh.endDraw();
+			glPolygonMode(GL_FRONT_AND_BACK, GL_FILL);
+		}
+		
 		shaderProgram.unbind();
 	}
 	
@@ -573,7 +667,10 @@ public final class HardwareRenderer implements Renderer {
 		 */
 		public void keyboard(int key, int action) {
 			if(action == press) {
-				if(key == GLFW_KEY_BACKSPACE) debug = !debug;
+				if(key == GLFW_KEY_BACKSPACE) {
+					debug = !debug;
+					dirty = true;
+				}
 			}
 		}
 
@@ -619,16 +716,10 @@ public final class HardwareRenderer implements Renderer {
 			else {
 				Optional<Point> p = selectManager.selectPlacement(WIDTH, HEIGHT, new Point(xPos, yPos), camera);
 				if(p.isPresent()) {
-					x = (int)p.get().a;
-					y = 0;
-					z = (int)p.get().b;
+					events.offer(UserEvent.Type.HOVER, (int)p.get().a, 0, (int)p.get().b);
 				} else {
-					x = -1;
-					y = -1;
-					z = -1;
+					events.offer(UserEvent.Type.HOVER, -1, -1, -1);
 				}
-				message = "hover";
-				notifyObservers();
 			}
 		}
 
@@ -643,8 +734,10 @@ public final class HardwareRenderer implements Renderer {
 			if(!mouseOverWindow) return;
 			if(yScroll > 0) {
 				camera.radius--;
+				dirty = true;
 			} else if(yScroll < 0) {
 				camera.radius++;
+				dirty = true;
 			}
 		}
 		
@@ -678,10 +771,7 @@ public final class HardwareRenderer implements Renderer {
 				Optional<Point> p = 
 						selectManager.selectPlacement(WIDTH, HEIGHT, new Point(xPos, yPos), camera);
 				if(p.isPresent()) {
-					x = (int)p.get().a;
-					z = (int)p.get().b;
-					message = "place";
-					notifyObservers();
+					events.offer(UserEvent.Type.PLACE, (int)p.get().a, 0, (int)p.get().b);
 				}
 			}
 		}
@@ -699,6 +789,7 @@ public final class HardwareRenderer implements Renderer {
 				float deltaTheta = yPos - lastY;
 				camera.addToPhi(deltaPhi);
 				camera.addToTheta(-deltaTheta);
+				dirty = true;
 				lastX = xPos; lastY = yPos;
 			}
 		}
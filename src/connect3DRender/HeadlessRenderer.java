@@ -0,0 +1,318 @@
+package connect3DRender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import connect3DCore.Piece;
+import connect3DUtil.Coord;
+import connect3DUtil.Signal;
+
+/**
+ * The headless renderer has no window, console or GL. It counts the draw calls and keeps the last frame's pieces
+ * and messages, so a whole game can run at full speed for benchmarks, tests and simulations.
+ * Input is scripted: placements can be queued up front and are fed to the observers one each time they are notified,
+ * or events can be sent as a user would make them.
+ *
+ * The counters and the last frame are written on the thread that redraws, read them there or once the game is over.
+ * @author Benjamin
+ *
+ */
+public final class HeadlessRenderer implements Renderer {
+
+	/**
+	 * The dimension of the board we are drawing.
+	 */
+	private final int dimension;
+
+	/**
+	 * Observers who are interested in user events.
+	 */
+	private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Input waiting to be delivered to the observers.
+	 */
+	private final UserEventQueue events = new UserEventQueue(UserEventQueue.CAPACITY);
+
+	/**
+	 * Delivers an event to every observer.
+	 */
+	private final Observer dispatch = (e) -> {
+		for(Observer o : observers) o.update(e);
+	};
+
+	/**
+	 * Placements waiting to be fed to the observers, one a notification.
+	 */
+	private final Queue<Coord> script = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Run whenever input is sent or scripted, null for nothing.
+	 */
+	private volatile Runnable listener;
+
+	/**
+	 * Components that this renderer is supposed to draw each redraw call.
+	 */
+	private final List<Component> drawables = new ArrayList<>();
+
+	/**
+	 * The piece last drawn at each location in the last frame, indexed (x * dimension + z) * dimension + y.
+	 */
+	private final Piece[] pieces;
+
+	/**
+	 * The messages drawn in the last frame.
+	 */
+	private final List<String> messages = new ArrayList<>();
+
+	/**
+	 * The active color.
+	 */
+	private Piece activePiece = Piece.EMPTY;
+
+	private long frames, spheres, cubes, cylinders, ghosts, heats, messageCount;
+
+	/**
+	 * True between initialize and destroy.
+	 */
+	private volatile boolean active;
+
+	/**
+	 * Raised by wakeEvents to stop awaitEvents parking.
+	 */
+	private final Signal woken = new Signal();
+
+	/**
+	 * Package-private constructor so only the renderer factory can generate them.
+	 * @param dimension
+	 *  The dimension of the board that this renderer will be drawing.
+	 */
+	HeadlessRenderer(int dimension) {
+		this.dimension = dimension;
+		this.pieces = new Piece[dimension * dimension * dimension];
+		Arrays.fill(pieces, Piece.EMPTY);
+	}
+
+	/**
+	 * Queue a placement. Scripted placements are fed to the observers one each time they are notified,
+	 * so a game gets one a tick. Safe to call from any thread.
+	 * @param x
+	 *  The lateral of the column.
+	 * @param z
+	 *  The depth of the column.
+	 */
+	public void script(int x, int z) {
+		script.add(new Coord(x, 0, z, -1));
+		Runnable l = listener;
+		if(l != null) l.run();
+		wakeEvents();
+	}
+
+	/**
+	 * @return
+	 *  The number of scripted placements not fed to the observers yet.
+	 */
+	public int scripted() { return script.size(); }
+
+	/**
+	 * Send a placement as if the user clicked a column. Safe to call from any thread.
+	 * @param x
+	 *  The lateral of the column.
+	 * @param z
+	 *  The depth of the column.
+	 * @return
+	 *  False if the event queue was full and it was dropped.
+	 */
+	public boolean place(int x, int z) { return events.offer(UserEvent.Type.PLACE, x, 0, z); }
+
+	/**
+	 * Send a hover as if the user moved the mouse over a column. Safe to call from any thread.
+	 * @param x
+	 *  The lateral of the column, -1 for off the board.
+	 * @param z
+	 *  The depth of the column, -1 for off the board.
+	 * @return
+	 *  False if the event queue was full and it was dropped.
+	 */
+	public boolean hover(int x, int z) { return events.offer(UserEvent.Type.HOVER, x, 0, z); }
+
+	/**
+	 * Send an exit as if the user asked to quit. Safe to call from any thread.
+	 * @return
+	 *  False if the event queue was full and it was dropped.
+	 */
+	public boolean exit() { return events.offer(UserEvent.Type.EXIT, -1, -1, -1); }
+
+	/**
+	 * Stop drawing, as if the window was closed. Safe to call from any thread.
+	 */
+	public void close() {
+		active = false;
+		wakeEvents();
+	}
+
+	@Override
+	public void drawCylinderAt(int x, int y, int z, float radius, float height) { cylinders++; }
+
+	@Override
+	public void drawCubeAt(int x, int y, int z, float width, float height) { cubes++; }
+
+	@Override
+	public void drawSphereAt(int x, int y, int z, float radius) {
+		spheres++;
+		if(x >= 0 && x < dimension && y >= 0 && y < dimension && z >= 0 && z < dimension) {
+			pieces[(x * dimension + z) * dimension + y] = activePiece;
+		}
+	}
+
+	@Override
+	public void drawGhostAt(int x, int y, int z, float radius) { ghosts++; }
+
+	@Override
+	public void drawHeatAt(int x, int y, int z, float radius, float heat) { heats++; }
+
+	@Override
+	public void drawMessage(String msg) {
+		if(msg == null) throw new IllegalArgumentException();
+		messageCount++;
+		messages.add(msg);
+	}
+
+	@Override
+	public void setActiveColor(Piece p) {
+		if(p == null) throw new IllegalArgumentException();
+		this.activePiece = p;
+	}
+
+	@Override
+	public void addObserver(Observer o) {
+		if(o == null) throw new IllegalArgumentException("Observer cannot be null!");
+		this.observers.add(o);
+	}
+
+	@Override
+	public void removeObserver(Observer o) { this.observers.remove(o); }
+
+	@Override
+	public void notifyObservers() {
+		//events already sent are delivered before the scripted one.
+		Coord next = script.poll();
+		if(next != null) events.offer(UserEvent.Type.PLACE, (int)next.x, 0, (int)next.z);
+		events.drain(dispatch);
+	}
+
+	@Override
+	public void setInputListener(Runnable listener) {
+		this.listener = listener;
+		events.listen(listener);
+	}
+
+	@Override
+	public void initialize() throws InitializationException { this.active = true; }
+
+	@Override
+	public void destroy() { close(); }
+
+	@Override
+	public boolean isActive() { return active; }
+
+	@Override
+	public void pollEvents() throws IllegalStateException {}
+
+	@Override
+	public void awaitEvents(long millis) throws IllegalStateException {
+		woken.await(millis);
+	}
+
+	@Override
+	public void wakeEvents() { woken.raise(); }
+
+	@Override
+	public void redraw() throws IllegalStateException {
+		frames++;
+		messages.clear();
+		Arrays.fill(pieces, Piece.EMPTY);
+		for(Component c : drawables) {
+			c.draw(this);
+		}
+	}
+
+	@Override
+	public void addComponent(Component c) { this.drawables.add(c); }
+
+	@Override
+	public boolean removeComponent(Component c) { return this.drawables.remove(c); }
+
+	/**
+	 * @return
+	 *  The number of redraws.
+	 */
+	public long frames() { return frames; }
+
+	/**
+	 * @return
+	 *  The number of spheres drawn, over every frame.
+	 */
+	public long spheres() { return spheres; }
+
+	/**
+	 * @return
+	 *  The number of cubes drawn, over every frame.
+	 */
+	public long cubes() { return cubes; }
+
+	/**
+	 * @return
+	 *  The number of cylinders drawn, over every frame.
+	 */
+	public long cylinders() { return cylinders; }
+
+	/**
+	 * @return
+	 *  The number of ghosts drawn, over every frame.
+	 */
+	public long ghosts() { return ghosts; }
+
+	/**
+	 * @return
+	 *  The number of heat ghosts drawn, over every frame.
+	 */
+	public long heats() { return heats; }
+
+	/**
+	 * @return
+	 *  The number of messages drawn, over every frame.
+	 */
+	public long messageCount() { return messageCount; }
+
+	/**
+	 * @return
+	 *  The messages drawn in the last frame.
+	 */
+	public List<String> messages() { return Collections.unmodifiableList(messages); }
+
+	/**
+	 * @param x
+	 *  lateral
+	 * @param y
+	 *  height
+	 * @param z
+	 *  depth
+	 * @return
+	 *  The color of the sphere last drawn there in the last frame, EMPTY if there was none.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the location is off the board.
+	 */
+	public Piece pieceAt(int x, int y, int z) throws IllegalArgumentException {
+		if(x < 0 || x >= dimension || y < 0 || y >= dimension || z < 0 || z >= dimension) {
+			throw new IllegalArgumentException("Location off the board: "+x+", "+y+", "+z);
+		}
+		return pieces[(x * dimension + z) * dimension + y];
+	}
+}
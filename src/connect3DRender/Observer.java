@@ -9,14 +9,8 @@ package connect3DRender;
 public interface Observer {
 
 	/**
-	 * @param x
-	 *  lateral location of the event
-	 * @param y
-	 *  height of the event
-	 * @param z
-	 *  the depth of the event
-	 * @param type
-	 *  the type of the event
+	 * @param event
+	 *  What the user did. It is reused once this returns, so copy out anything to keep.
 	 */
-	void update(int x, int y, int z, String type);
+	void update(UserEvent event);
 }
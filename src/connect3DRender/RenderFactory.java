@@ -24,6 +24,7 @@ public final class RenderFactory {
 		if(type.toLowerCase().equals("text")) return new TextRenderer(boardDimension);
 		if(type.toLowerCase().equals("software")) return new SwingRenderer(boardDimension);
 		if(type.toLowerCase().equals("hardware")) return new HardwareRenderer(boardDimension);
+		if(type.toLowerCase().equals("headless")) return new HeadlessRenderer(boardDimension);
 		throw new IllegalArgumentException("Unknown renderer type! ->"+type);
 	}
 }
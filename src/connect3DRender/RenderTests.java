@@ -0,0 +1,139 @@
+package connect3DRender;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the queue user events reach the game through.
+ * @author Benjamin
+ *
+ */
+class RenderTests {
+
+	/**
+	 * The longest a concurrent test may take, far longer than it needs.
+	 */
+	private static final Duration LIMIT = Duration.ofSeconds(30);
+
+	/**
+	 * Drain a queue.
+	 * @param q
+	 *  The queue.
+	 * @return
+	 *  The events delivered, as text since events are reused.
+	 */
+	static List<String> drain(UserEventQueue q) {
+		List<String> out = new ArrayList<>();
+		q.drain((e) -> out.add(e.toString()));
+		return out;
+	}
+
+	/**
+	 * @param type
+	 *  The kind of event.
+	 * @param x
+	 *  lateral location of the event
+	 * @return
+	 *  The text of an event at x,0,0.
+	 */
+	static String event(UserEvent.Type type, int x) {
+		return type+" ("+x+", 0, 0)";
+	}
+
+	@Test
+	void testEachWriterStaysInOrder() {
+		final int writers = 4, each = 20_000;
+		UserEventQueue q = new UserEventQueue(64);
+		List<Thread> threads = new ArrayList<>();
+		for(int w = 0; w < writers; w++) {
+			final int id = w;
+			Thread t = new Thread(() -> {
+				//retry while the ring is full, the reader is catching up
+				for(int i = 0; i < each; i++) while(!q.offer(UserEvent.Type.PLACE, id, i, 0)) Thread.yield();
+			});
+			threads.add(t);
+		}
+		int[] next = new int[writers];
+		assertTimeoutPreemptively(LIMIT, () -> {
+			for(Thread t : threads) t.start();
+			int total = 0;
+			while(total < writers * each) {
+				int[] count = {0};
+				q.drain((e) -> {
+					assertEquals(UserEvent.Type.PLACE, e.type());
+					//every writer's events arrive in the order it wrote them, none lost or repeated
+					assertEquals(next[e.x()], e.y());
+					next[e.x()]++;
+					count[0]++;
+				});
+				total += count[0];
+				if(count[0] == 0) Thread.yield();
+			}
+			for(Thread t : threads) t.join();
+		});
+		for(int w = 0; w < writers; w++) assertEquals(each, next[w]);
+		assertTrue(drain(q).isEmpty());
+	}
+
+	@Test
+	void testFullQueueDropsNewEvents() {
+		//the capacity is rounded up to four
+		UserEventQueue q = new UserEventQueue(3);
+		for(int i = 0; i < 4; i++) assertTrue(q.offer(UserEvent.Type.PLACE, i, 0, 0));
+		assertFalse(q.offer(UserEvent.Type.PLACE, 4, 0, 0));
+		assertFalse(q.offer(UserEvent.Type.EXIT, 5, 0, 0));
+		//the queued events are kept, the rejected ones are gone
+		assertEquals(List.of(event(UserEvent.Type.PLACE, 0), event(UserEvent.Type.PLACE, 1),
+				event(UserEvent.Type.PLACE, 2), event(UserEvent.Type.PLACE, 3)), drain(q));
+		//draining makes room again
+		assertTrue(q.offer(UserEvent.Type.EXIT, 6, 0, 0));
+		assertEquals(List.of(event(UserEvent.Type.EXIT, 6)), drain(q));
+	}
+
+	@Test
+	void testHoversCoalesce() {
+		UserEventQueue q = new UserEventQueue(16);
+		q.offer(UserEvent.Type.HOVER, 1, 0, 0);
+		q.offer(UserEvent.Type.HOVER, 2, 0, 0);
+		q.offer(UserEvent.Type.HOVER, 3, 0, 0);
+		q.offer(UserEvent.Type.PLACE, 4, 0, 0);
+		q.offer(UserEvent.Type.PLACE, 5, 0, 0);
+		q.offer(UserEvent.Type.HOVER, 6, 0, 0);
+		q.offer(UserEvent.Type.EXIT, 7, 0, 0);
+		q.offer(UserEvent.Type.HOVER, 8, 0, 0);
+		q.offer(UserEvent.Type.HOVER, 9, 0, 0);
+		//a run of hovers is its newest, placements and exits are all delivered in order
+		assertEquals(List.of(
+				event(UserEvent.Type.HOVER, 3),
+				event(UserEvent.Type.PLACE, 4),
+				event(UserEvent.Type.PLACE, 5),
+				event(UserEvent.Type.HOVER, 6),
+				event(UserEvent.Type.EXIT, 7),
+				event(UserEvent.Type.HOVER, 9)), drain(q));
+		assertTrue(drain(q).isEmpty());
+	}
+
+	@Test
+	void testQueueWrapsAround() {
+		UserEventQueue q = new UserEventQueue(8);
+		int x = 0;
+		//fifty laps of five events each go far past the eight slots, and start the laps at every slot
+		for(int lap = 0; lap < 50; lap++) {
+			List<String> expected = new ArrayList<>();
+			for(int i = 0; i < 5; i++, x++) {
+				assertTrue(q.offer(UserEvent.Type.PLACE, x, 0, 0));
+				expected.add(event(UserEvent.Type.PLACE, x));
+			}
+			assertEquals(expected, drain(q));
+		}
+		//a full ring after wrapping still holds exactly its capacity
+		for(int i = 0; i < 8; i++) assertTrue(q.offer(UserEvent.Type.PLACE, i, 0, 0));
+		assertFalse(q.offer(UserEvent.Type.PLACE, 8, 0, 0));
+		assertEquals(8, drain(q).size());
+	}
+}
@@ -29,10 +29,47 @@ public interface Renderer extends Graphics, Subject {
 	 *  Thrown if renderer is not initialized. 
 	 */
 	public void pollEvents() throws IllegalStateException;
+
+	/**
+	 * @return
+	 *  True if pollEvents waits for the user to do something, so it should only be called when the user is expected to.
+	 */
+	public default boolean pollBlocks() { return false; }
+
+	/**
+	 * Park the calling thread until there may be something new to draw: user input, a call to wakeEvents,
+	 * or the time running out. Then handle any input as pollEvents does.
+	 * The default can't be woken, so it only sleeps for up to a frame before polling.
+	 * @param millis
+	 *  The longest to wait.
+	 * @throws IllegalStateException
+	 *  Thrown if renderer is not initialized.
+	 */
+	public default void awaitEvents(long millis) throws IllegalStateException {
+		try {
+			Thread.sleep(Math.min(millis, 16));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pollEvents();
+	}
+
+	/**
+	 * Wake the thread parked in awaitEvents, or stop the next call from parking. Safe to call from any thread.
+	 */
+	public default void wakeEvents() {}
+
+	/**
+	 * @return
+	 *  True if the renderer's own view, such as the camera or the window, has changed since the last redraw,
+	 *  so it needs redrawing even though the scene hasn't changed.
+	 */
+	public default boolean isDirty() { return false; }
 	
 	/**
 	 * Redraw all the components that have been registered to this renderer.
 	 * The specifics of how the redrawing is performed is left to the implementation.
+	 * Callers only need to redraw when the scene or the renderer is dirty, an unchanged frame is kept on screen.
 	 * @throws IllegalStateException
 	 *  Thrown if the renderer has not been initialized.
 	 */
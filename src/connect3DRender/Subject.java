@@ -2,6 +2,8 @@ package connect3DRender;
 
 /**
  * Use the observer pattern to allow the Renderer to notify interested parties of user events.
+ * User events are queued as they happen, on whatever thread the renderer takes input on, and delivered
+ * when the observers are notified, so observers only ever hear of them on the notifying thread.
  * @author Benjamin
  *
  */
@@ -20,8 +22,16 @@ public interface Subject {
 	 */
 	public void removeObserver(Observer o);
 	/**
-	 * Notify the the registered observers of a user event.
+	 * Notify the the registered observers of the user events queued since the last call.
+	 * Must only be called by one thread, once per tick is enough. A run of hover events is delivered as the last one.
 	 */
 	public void notifyObservers();
+	/**
+	 * Have something run whenever a user event is queued, so the thread that notifies the observers can wait
+	 * for input instead of polling for it. It runs on the thread that queued the event, so it must be quick.
+	 * @param listener
+	 *  Run for each event queued, or null for nothing.
+	 */
+	public void setInputListener(Runnable listener);
 	
 }
@@ -12,8 +12,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
+import org.joml.Vector3f;
+
 import connect3DCore.Piece;
+import connect3DUtil.ColorVector;
+import connect3DUtil.Signal;
 import connect3DUtil.MathUtil.Coord3D;
 import static connect3DUtil.MathUtil.*;
 
@@ -38,7 +44,19 @@ public final class SwingRenderer implements Renderer {
 	/**
 	 * Store list of objects that are interested in receiving updates from the renderer.
 	 */
-	private final List<Observer> observers = new ArrayList<>(1);
+	private final List<Observer> observers = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Mouse input from the EDT waiting to be delivered to the observers.
+	 */
+	private final UserEventQueue events = new UserEventQueue(UserEventQueue.CAPACITY);
+	
+	/**
+	 * Delivers an event to every observer.
+	 */
+	private final Observer dispatch = (e) -> {
+		for(Observer o : observers) o.update(e);
+	};
 	
 	/**
 	 * List of components this renderer will attempt to draw.
@@ -48,7 +66,7 @@ public final class SwingRenderer implements Renderer {
 	/**
 	 * Root GUI element.
 	 */
-	private JFrame window;
+	private volatile JFrame window;
 	
 	/**
 	 * The width of the window in pixels.
@@ -59,14 +77,22 @@ public final class SwingRenderer implements Renderer {
 	 */
 	private static final int HEIGHT = 720;
 	
-	//message passing variables. These variables are passed to observers on notifyObservers()
-	private volatile int x,y,z;
-	private volatile String message;
-	
 	/**
 	 * Store of draw requests made by components registered to this renderer.
 	 */
 	private volatile List<Draw> drawRequests = new ArrayList<Draw>();
+	/**
+	 * True while a redraw is waiting to run on the EDT.
+	 */
+	private final AtomicBoolean redrawQueued = new AtomicBoolean();
+	/**
+	 * Set on the EDT when the camera moves, cleared by redraw.
+	 */
+	private volatile boolean dirty = true;
+	/**
+	 * Raised by wakeEvents to stop awaitEvents parking.
+	 */
+	private final Signal woken = new Signal();
 
 	/**
 	 * A matrix that converts from world space coordinates to normalized device coordinates.
@@ -148,6 +174,46 @@ public final class SwingRenderer implements Renderer {
 		});
 	}
 
+	@Override
+	public void drawGhostAt(int x, int y, int z, float radius) {
+		if(this.color == Piece.EMPTY) return;
+		drawRequests.add(new Draw(new Coord3D(x,y,z), color, true) {
+			@Override
+			void draw(Graphics g) {
+				//an outline only, so it can't be mistaken for a placed piece.
+				Coord3D screen = toScreenSpace(getProjected(), WIDTH, HEIGHT);
+				int a = (int)screen.x;
+				int b = HEIGHT - (int)screen.y;
+				int size = (int) (4000.0 * (1.0 - getProjected().z));
+				Color old = g.getColor();
+				g.setColor(this.color.color());
+				g.drawOval(a,b,size,size);
+				g.drawOval(a+1,b+1,size-2,size-2);
+				g.setColor(old);
+			}
+		});
+	}
+
+	@Override
+	public void drawHeatAt(int x, int y, int z, float radius, float heat) {
+		Vector3f v = ColorVector.heat(heat);
+		Color shade = new Color(v.x, v.y, v.z);
+		drawRequests.add(new Draw(new Coord3D(x,y,z), null, true) {
+			@Override
+			void draw(Graphics g) {
+				Coord3D screen = toScreenSpace(getProjected(), WIDTH, HEIGHT);
+				int a = (int)screen.x;
+				int b = HEIGHT - (int)screen.y;
+				int size = (int) (4000.0 * (1.0 - getProjected().z));
+				Color old = g.getColor();
+				g.setColor(shade);
+				g.drawOval(a,b,size,size);
+				g.drawOval(a+1,b+1,size-2,size-2);
+				g.setColor(old);
+			}
+		});
+	}
+
 	@Override
 	public void drawMessage(String msg) {
 		assert msg != null;
@@ -167,12 +233,10 @@ public final class SwingRenderer implements Renderer {
 	public void removeObserver(Observer o) { observers.remove(o); }
 
 	@Override
-	public void notifyObservers() {
-		assert message != null;
-		for(Observer o : observers) {
-			o.update(x,y,z,message);
-		}
-	}
+	public void notifyObservers() { events.drain(dispatch); }
+
+	@Override
+	public void setInputListener(Runnable listener) { events.listen(listener); }
 
 	@Override
 	public void initialize() throws InitializationException {
@@ -225,42 +289,63 @@ public final class SwingRenderer implements Renderer {
 	@Override
 	public void pollEvents() throws IllegalStateException {}
 
+	@Override
+	public void awaitEvents(long millis) throws IllegalStateException {
+		//input arrives on the EDT, so there is nothing to poll, only the wake up to wait for.
+		woken.await(millis);
+	}
+
+	@Override
+	public void wakeEvents() { woken.raise(); }
+
+	@Override
+	public boolean isDirty() { return dirty; }
+
+	/**
+	 * The camera moved, so the scene needs redrawing. Called on the EDT.
+	 */
+	private void viewChanged() {
+		dirty = true;
+		wakeEvents();
+	}
+
 	@Override
 	public void redraw() throws IllegalStateException {
-		try {
-			SwingUtilities.invokeAndWait(() -> {
-				/*//physics based scene rotation
-				double timeSince = (double)(System.currentTimeMillis() - elapsed)/1000.0;
-				elapsed = System.currentTimeMillis();
-				pitch += v_pitch * timeSince;
-				v_pitch += a_pitch * timeSince;
-				a_pitch = -(0.5 * v_pitch);
-				
-				yaw += v_yaw * timeSince;
-				v_yaw += a_yaw * timeSince;
-				a_yaw = -(0.5 * v_yaw);
-				
-				if(v_pitch > -0.01 && v_pitch < 0.01) v_pitch = 0.0;
-				if(v_yaw > -0.01 && v_yaw < 0.01) v_yaw = 0.0;
-				*/
-				if(pitch > pitch_max) pitch = pitch_max;
-				if(pitch < -pitch_max) pitch = -pitch_max;
-				
-				this.projection = createProjectionM(0.1, 50.0, fov, (double) HEIGHT / (double) WIDTH);
-				
-				this.rotateH = makeRotationMatrixY(yaw);
-				this.rotateV = makeRotationMatrixX(pitch);
-				this.drawRequests.clear();
-				for(Component c : drawables) {
-					c.draw(this); //collect draw requests from the scene
-				}
-				Collections.sort(this.drawRequests);
-				window.repaint(); //window itself will traverse the list and draw the objects
+		dirty = false;
+		//the EDT draws at its own pace, a redraw asked for while one is still queued is dropped.
+		if(!redrawQueued.compareAndSet(false, true)) return;
+		SwingUtilities.invokeLater(() -> {
+			redrawQueued.set(false);
+			if(window == null) return; //destroyed while queued
+			/*//physics based scene rotation
+			double timeSince = (double)(System.currentTimeMillis() - elapsed)/1000.0;
+			elapsed = System.currentTimeMillis();
+			pitch += v_pitch * timeSince;
+			v_pitch += a_pitch * timeSince;
+			a_pitch = -(0.5 * v_pitch);
+			
+			yaw += v_yaw * timeSince;
+			v_yaw += a_yaw * timeSince;
+			a_yaw = -(0.5 * v_yaw);
+			
+			if(v_pitch > -0.01 && v_pitch < 0.01) v_pitch = 0.0;
+			if(v_yaw > -0.01 && v_yaw < 0.01) v_yaw = 0.0;
+			*/
+			if(pitch > pitch_max) pitch = pitch_max;
+			if(pitch < -pitch_max) pitch = -pitch_max;
+			
+			this.projection = createProjectionM(0.1, 50.0, fov, (double) HEIGHT / (double) WIDTH);
+			
+			this.rotateH = makeRotationMatrixY(yaw);
+			this.rotateV = makeRotationMatrixX(pitch);
+			this.drawRequests.clear();
+			for(Component c : drawables) {
+				c.draw(this); //collect draw requests from the scene
 			}
-			);
-		} catch (InvocationTargetException | InterruptedException b) {
-			throw new RuntimeException(b);
+			Collections.sort(this.drawRequests);
+			window.repaint(); //window itself will traverse the list and draw the objects
 		}
+		);
 	}
 
 	@Override
@@ -336,10 +421,7 @@ public final class SwingRenderer implements Renderer {
 					@Override
 					public void mouseClicked(MouseEvent e) {
 						if(e.getButton() == MouseEvent.BUTTON1) {
-							SwingRenderer.this.x = toBoardSpaceX(e.getX()) - 1;
-							SwingRenderer.this.z = toBoardSpaceY(e.getY()) - 1;
-							SwingRenderer.this.message = "place";
-							SwingRenderer.this.notifyObservers();
+							events.offer(UserEvent.Type.PLACE, toBoardSpaceX(e.getX()) - 1, -1, toBoardSpaceY(e.getY()) - 1);
 						}
 					}
 					@Override
@@ -366,6 +448,7 @@ public final class SwingRenderer implements Renderer {
 //						SwingRenderer.this.v_pitch = sensitvity * (double)(lastY - e.getY()); //physics based adjustment	
 						lastX = e.getX();
 						lastY = e.getY();
+						viewChanged();
 					}
 
 					@Override
@@ -376,11 +459,7 @@ public final class SwingRenderer implements Renderer {
 						if(x != cursorX || y != cursorY) {
 							cursorX = x; cursorY = y;
 							//System.out.println("MouseMoved->"+x+" "+y);
-							SwingRenderer.this.x = x - 1;
-							SwingRenderer.this.z = y - 1;
-							SwingRenderer.this.y = -1;
-							SwingRenderer.this.message = "hover";
-							SwingRenderer.this.notifyObservers();
+							events.offer(UserEvent.Type.HOVER, x - 1, -1, y - 1);
 						}
 					}
 				}
@@ -390,6 +469,7 @@ public final class SwingRenderer implements Renderer {
 				if(e.getWheelRotation() < 0) --fov;
 				if(fov > 90) fov = 90;
 				if(fov < 10) fov = 10;
+				viewChanged();
 				//System.out.println("fov:"+fov);
 			});
 			//if(e.getWheelRotation > 0) then user scrolled down
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -44,7 +45,19 @@ public final class TextRenderer implements Renderer {
 	/**
 	 * Observers who are interested in user events.
 	 */
-	private final List<Observer> observers = new ArrayList<>(1);
+	private final List<Observer> observers = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * User input waiting to be delivered to the observers.
+	 */
+	private final UserEventQueue events = new UserEventQueue(UserEventQueue.CAPACITY);
+	
+	/**
+	 * Delivers an event to every observer.
+	 */
+	private final Observer dispatch = (e) -> {
+		for(Observer o : observers) o.update(e);
+	};
 	
 	/**
 	 * Components that this renderer is supposed to draw each redraw call.
@@ -82,10 +95,6 @@ public final class TextRenderer implements Renderer {
 		collect(Collectors.toList())
 	);
 	
-	//not happy with this system at the moment.
-	//Could be replaced with a proper message passing system between the renderer and observers.
-	private int x,y,z;
-	private String inputType;
 	/**
 	 * Matches valid row column inputs
 	 */
@@ -118,6 +127,16 @@ public final class TextRenderer implements Renderer {
 	 */
 	private final int dimension;
 	
+	/**
+	 * The messages drawn during the current redraw, null outside of one.
+	 */
+	private StringBuilder messages;
+	
+	/**
+	 * What the last redraw printed, an unchanged frame isn't printed again.
+	 */
+	private String printed = "";
+	
 	/**
 	 * Package-private constructor so only the renderer factory can generate them.
 	 * @param dimension
@@ -138,6 +157,14 @@ public final class TextRenderer implements Renderer {
 	@Override
 	public void drawCubeAt(int x, int y, int z, float width, float height) {}
 
+	//Ghost drawing not implemented for the text renderer, it would hide the piece letters.
+	@Override
+	public void drawGhostAt(int x, int y, int z, float radius) {}
+
+	//Heat ghosts are not drawn either, for the same reason.
+	@Override
+	public void drawHeatAt(int x, int y, int z, float radius, float heat) {}
+
 	@Override
 	public void drawSphereAt(int x, int y, int z, float radius) {
 		//Currently ignoring radius. It's just a unit sphere.
@@ -147,7 +174,8 @@ public final class TextRenderer implements Renderer {
 	@Override
 	public void drawMessage(String msg) {
 		if(msg == null) throw new IllegalArgumentException();
-		System.out.println(msg); //text based message drawing...
+		if(messages != null) messages.append(msg).append('\n'); //printed with the board
+		else System.out.println(msg); //text based message drawing...
 	}
 
 	@Override
@@ -166,20 +194,15 @@ public final class TextRenderer implements Renderer {
 	public void removeObserver(Observer o) { this.observers.remove(o); }
 
 	@Override
-	public void notifyObservers() {
-		for(Observer o : observers) {
-			o.update(x, y, z, inputType);
-		}
-	}
+	public void notifyObservers() { events.drain(dispatch); }
+
+	@Override
+	public void setInputListener(Runnable listener) { events.listen(listener); }
 
 	@Override
 	public void initialize() throws InitializationException { 
 		this.initialized = true;
 		this.activePiece = Piece.EMPTY;
-		this.x = -1; //put some default values into the user input fields
-		this.y = -1;
-		this.z = -1;
-		this.inputType = "";
 		in = new Scanner(System.in);
 	}
 	
@@ -194,6 +217,9 @@ public final class TextRenderer implements Renderer {
 	@Override
 	public boolean isActive() { return true; }
 
+	@Override
+	public boolean pollBlocks() { return true; }
+
 	@Override
 	public void pollEvents() throws IllegalStateException {
 		if(!initialized) throw new IllegalStateException("Renderer not initialized");
@@ -203,13 +229,10 @@ public final class TextRenderer implements Renderer {
 			//Handle the user input
 			if (inputPattern.matcher(userTyped).find()) {
 				//Try to parse two numbers
-				if(handlePlacement(userTyped)) {
-					notifyObservers(); //notify if successfully parsed input into numbers.
-				}
+				handlePlacement(userTyped);
 			} else if (exitPattern.matcher(userTyped).find()) {
 				//Notify if the user typed exit.
-				this.inputType = "EXIT";
-				notifyObservers();
+				events.offer(UserEvent.Type.EXIT, -1, -1, -1);
 			} else {
 				//Update the face if the user typed one.
 				if (faces.contains(userTyped.toLowerCase())) {
@@ -231,31 +254,32 @@ public final class TextRenderer implements Renderer {
 	 */
 	private boolean handlePlacement(String next) {
 		//extract the two numbers from the string
-		//put them into the x,y fields
 		String[] numbs = next.split(" ");
 		assert numbs.length == 2;
+		int x, z;
 		try {
-			this.x = Integer.parseInt(numbs[0]);
-			this.z = Integer.parseInt(numbs[1]);
+			x = Integer.parseInt(numbs[0]);
+			z = Integer.parseInt(numbs[1]);
 		} catch (NumberFormatException e) {
 			return false;
 		}
-		//update the message type field
-		this.inputType = "PLACE";
+		//queue the placement for the observers
+		events.offer(UserEvent.Type.PLACE, x, -1, z);
 		return true;
 	}
 
 	@Override
 	public void redraw() throws IllegalStateException {
-		//separate this draw from the last draw.
-		System.out.println();
 		//staged drawing.
 		this.drawRequests.clear();
 		this.drawTable.clear();
+		this.messages = new StringBuilder();
 		//collect draw requests from components.
 		for(Component c : drawables) {
 			c.draw(this);
 		}
+		StringBuilder output = messages;
+		this.messages = null;
 		//process the draw requests.
 		for(Draw w : drawRequests) {
 			addToDrawTable(w);
@@ -266,7 +290,6 @@ public final class TextRenderer implements Renderer {
 		Collections.reverse(sortedReqs);
 		if(sortedReqs.isEmpty()) return; 
 		//generate the output from the processed requests.
-		StringBuilder output = new StringBuilder();
 		this.a = 0;
 		this.b = sortedReqs.get(0).toRenderSpace().b;
 		for(Draw d : sortedReqs) {
@@ -283,7 +306,12 @@ public final class TextRenderer implements Renderer {
 			a++;
 		}
 		
-		System.out.println(output.toString());
+		String frame = output.toString();
+		if(frame.equals(printed)) return; //nothing changed that text can show
+		printed = frame;
+		//separate this draw from the last draw.
+		System.out.println();
+		System.out.println(frame);
 	}
 	
 	/**
@@ -0,0 +1,82 @@
+package connect3DRender;
+
+/**
+ * Something the user did, reported by a renderer to its observers.
+ * Events are preallocated slots of a queue and reused, so an observer must copy out what it needs
+ * before returning from update.
+ * @author Benjamin
+ *
+ */
+public final class UserEvent {
+
+	/**
+	 * The kinds of user event.
+	 */
+	public enum Type {
+		/**
+		 * The mouse moved over a column, or off the board when the location is -1.
+		 */
+		HOVER,
+		/**
+		 * The user chose a column to place a piece in.
+		 */
+		PLACE,
+		/**
+		 * The user asked to quit.
+		 */
+		EXIT
+	}
+
+	private Type type = Type.HOVER;
+	private int x, y, z;
+
+	/**
+	 * Only queues create events.
+	 */
+	UserEvent() {}
+
+	/**
+	 * Fill the event.
+	 * @param type
+	 *  The kind of event.
+	 * @param x
+	 *  lateral location of the event
+	 * @param y
+	 *  height of the event
+	 * @param z
+	 *  the depth of the event
+	 */
+	void set(Type type, int x, int y, int z) {
+		this.type = type;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/**
+	 * @return
+	 *  The kind of event.
+	 */
+	public Type type() { return type; }
+
+	/**
+	 * @return
+	 *  lateral location of the event
+	 */
+	public int x() { return x; }
+
+	/**
+	 * @return
+	 *  height of the event
+	 */
+	public int y() { return y; }
+
+	/**
+	 * @return
+	 *  the depth of the event
+	 */
+	public int z() { return z; }
+
+	@Override
+	public String toString() { return type+" ("+x+", "+y+", "+z+")"; }
+}
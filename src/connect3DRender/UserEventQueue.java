@@ -0,0 +1,135 @@
+package connect3DRender;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue of user events, written by any number of input threads and drained by one thread.
+ * The events are preallocated in a ring and reused, so queueing an event allocates nothing.
+ * Each slot has a sequence number: a writer claims the slot at the tail by advancing the tail, fills it and then
+ * publishes it by bumping its sequence, and the reader takes slots in order once they are published and
+ * hands them back a lap later.
+ *
+ * Draining delivers a run of hovers as the last of them, as only where the mouse ended up matters.
+ * @author Benjamin
+ *
+ */
+final class UserEventQueue {
+
+	/**
+	 * The capacity renderers use, far more events than a person makes in a tick.
+	 */
+	static final int CAPACITY = 256;
+
+	/**
+	 * The events, reused every lap of the ring.
+	 */
+	private final UserEvent[] events;
+	/**
+	 * The sequence of each slot: its position when it is free to write, one past it once it is published.
+	 */
+	private final AtomicLongArray sequences;
+	/**
+	 * Masks a position to its slot.
+	 */
+	private final int mask;
+	/**
+	 * The position of the next slot to write.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	/**
+	 * The position of the next slot to read, only used by the reader.
+	 */
+	private long head;
+	/**
+	 * Holds the latest hover while a run of them is drained, only used by the reader.
+	 */
+	private final UserEvent hover = new UserEvent();
+	/**
+	 * Run after each event is queued, null for nothing.
+	 */
+	private volatile Runnable listener;
+
+	/**
+	 * Create a queue.
+	 * @param capacity
+	 *  The most events it holds, rounded up to a power of two.
+	 * @throws IllegalArgumentException
+	 *  Thrown if the capacity is not positive or too big for a ring.
+	 */
+	UserEventQueue(int capacity) throws IllegalArgumentException {
+		if(capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be between 1 and 2^30: "+capacity);
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) size <<= 1;
+		this.events = new UserEvent[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for(int i = 0; i < size; i++) {
+			events[i] = new UserEvent();
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Queue an event. Safe to call from any thread.
+	 * @param type
+	 *  The kind of event.
+	 * @param x
+	 *  lateral location of the event
+	 * @param y
+	 *  height of the event
+	 * @param z
+	 *  the depth of the event
+	 * @return
+	 *  False if the queue was full and the event dropped, when no one is draining it.
+	 */
+	boolean offer(UserEvent.Type type, int x, int y, int z) {
+		long position;
+		while(true) {
+			position = tail.get();
+			long gap = sequences.get((int)position & mask) - position;
+			if(gap < 0) return false; //the slot from the last lap hasn't been read
+			if(gap == 0 && tail.compareAndSet(position, position + 1)) break;
+			//otherwise another writer took the slot first
+		}
+		int slot = (int)position & mask;
+		events[slot].set(type, x, y, z);
+		sequences.set(slot, position + 1);
+		Runnable l = listener;
+		if(l != null) l.run();
+		return true;
+	}
+
+	/**
+	 * @param listener
+	 *  Run on the writer's thread after each event is queued, or null for nothing.
+	 */
+	void listen(Runnable listener) { this.listener = listener; }
+
+	/**
+	 * Deliver every published event in order, coalescing runs of hovers. Only called by the reading thread.
+	 * @param observer
+	 *  Receives each event, which is only valid during the call.
+	 */
+	void drain(Observer observer) {
+		boolean hovered = false;
+		while(true) {
+			int slot = (int)head & mask;
+			if(sequences.get(slot) != head + 1) break; //not published yet
+			UserEvent e = events[slot];
+			boolean isHover = e.type() == UserEvent.Type.HOVER;
+			if(isHover) {
+				hover.set(e.type(), e.x(), e.y(), e.z());
+				hovered = true;
+			}
+			if(!isHover && hovered) {
+				observer.update(hover);
+				hovered = false;
+			}
+			if(!isHover) observer.update(e);
+			sequences.set(slot, head + events.length);
+			head++;
+		}
+		if(hovered) observer.update(hover);
+	}
+}
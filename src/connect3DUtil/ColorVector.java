@@ -52,5 +52,17 @@ public final class ColorVector {
 	 * No color.
 	 */
 	public static final Vector3f NO_COLOR = null;
+
+	/**
+	 * Grade a value from red through yellow to green.
+	 * @param heat
+	 *  Between 0, red, and 1, green. Values outside are clamped.
+	 * @return
+	 *  A new color vector.
+	 */
+	public static Vector3f heat(float heat) {
+		float h = Math.max(0.0f, Math.min(1.0f, heat));
+		return new Vector3f(Math.min(1.0f, 2.0f * (1.0f - h)), Math.min(1.0f, 2.0f * h), 0.0f);
+	}
 	
 }
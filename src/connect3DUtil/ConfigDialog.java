@@ -8,11 +8,12 @@ import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JTextArea;
 
+import connect3DAI.Difficulty;
 import connect3DMain.Main;
 
 /**
  * A configuration dialog to collect information from the player before the game begins.
- * Collects a player count and the desired rendering type.
+ * Collects a player count, the desired rendering type, whether and how strongly the computer plays the second player, and whether to show hints.
  * Writes player input information into the main object.
  * If the user closes the modal dialog, the Main object's 'shouldStart' field will be set to false.
  * @author Benjamin
@@ -58,6 +59,26 @@ public final class ConfigDialog extends JDialog {
 		});
 	}};
 	
+	/**
+	 * A combo box that allows the player to play against the computer, at a difficulty level.
+	 */
+	private JComboBox<String> opponent = new JComboBox<>(new String[] {"human","beginner","easy","medium","hard","expert"}) {{
+		addItemListener(e->{
+			main.computerOpponent = !"human".equals(e.getItem());
+			if(main.computerOpponent) main.computerLevel = Difficulty.of((String)e.getItem());
+		});
+	}};
+	
+	/**
+	 * A combo box that allows the player to turn move hints, or the heatmap of every move's value, on.
+	 */
+	private JComboBox<String> hints = new JComboBox<>(new String[] {"off","on","heatmap"}) {{
+		addItemListener(e->{
+			main.hints = "on".equals(e.getItem());
+			main.heatmap = "heatmap".equals(e.getItem());
+		});
+	}};
+	
 	/**
 	 * Create a new modal dialog that blocks the event queue until the user clicks start or exits.
 	 * @param main
@@ -70,6 +91,10 @@ public final class ConfigDialog extends JDialog {
 		this.main.numberPlayers = playerCount.getItemAt(0);
 		this.main.renderType = renderType.getItemAt(0);
 		this.main.boardSize = boardSize.getItemAt(0);
+		this.main.computerOpponent = false;
+		this.main.computerLevel = Difficulty.MEDIUM;
+		this.main.hints = false;
+		this.main.heatmap = false;
 		this.main.shouldStart = false;
 		this.setModal(true);
 		init();
@@ -83,15 +108,19 @@ public final class ConfigDialog extends JDialog {
 		this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 		this.setSize(WIDTH,HEIGHT);
 		this.setPreferredSize(new Dimension(WIDTH,HEIGHT));
-		this.setLayout(new GridLayout(0,3));
+		this.setLayout(new GridLayout(0,5));
 		this.setTitle("Connect3D: Configure Game Settings.");
 		this.setResizable(false);
 		getContentPane().add(new JTextArea("Number of players:") {{setEditable(false);}});
 		getContentPane().add(new JTextArea("Rendering type:") {{setEditable(false);}});
 		getContentPane().add(new JTextArea("Board dimension:") {{setEditable(false);}});
+		getContentPane().add(new JTextArea("Second player:") {{setEditable(false);}});
+		getContentPane().add(new JTextArea("Hints:") {{setEditable(false);}});
 		getContentPane().add(playerCount);
 		getContentPane().add(renderType);
 		getContentPane().add(boardSize);
+		getContentPane().add(opponent);
+		getContentPane().add(hints);
 		getContentPane().add(new StartButton());
 		this.pack();
 		this.validate();
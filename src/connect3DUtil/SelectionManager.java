@@ -1,6 +1,7 @@
 package connect3DUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -14,14 +15,12 @@ import org.joml.Vector3f;
 import org.joml.Vector3i;
 import org.joml.Vector4f;
 
-import connect3DRender.Observer;
-
 /**
  * Selection manager handles the conversion of mouse clicks to (x,z) column placement in the model.
  * @author Benjamin
  *
  */
-public class SelectionManager implements Observer{
+public class SelectionManager {
 	
 	/**
 	 * The n*n*n dimension of the board.
@@ -49,6 +48,11 @@ public class SelectionManager implements Observer{
 	 */
 	private final Map<Pointi, BoundingBox> baseBoxes;
 	
+	/**
+	 * The height the next piece dropped in each column lands at, as the hit boxes were last built for.
+	 */
+	private final int[] tops;
+	
 	/**
 	 * The minimum corner of the AABB currently being tested for intersection.
 	 */
@@ -109,6 +113,7 @@ public class SelectionManager implements Observer{
 		this.boundingBoxMesh = boundingBoxMesh;
 		this.hitboxes = new ArrayList<>(capacity);
 		this.baseBoxes = new HashMap<>();
+		this.tops = new int[dimension * dimension];
 		this.dimension = dimension;
 		this.transforms = transforms;
 		this.points = new Vector2f();
@@ -127,14 +132,31 @@ public class SelectionManager implements Observer{
 	 *  The model shift amount, if any. 
 	 */
 	private void init(float shift) {
-		int y = 0;
+		build(shift);
+	}
+
+	/**
+	 * Rebuild the hitboxes and base boxes from the tops, a stack of boxes in each column from the bottom up to and
+	 * including the cell the next piece dropped there lands in.
+	 * @param shift
+	 *  The model shift amount, if any.
+	 */
+	private void build(float shift) {
+		hitboxes.clear();
+		baseBoxes.clear();
 		for(int x = 0; x < dimension; x++) {
 			for(int z = 0; z < dimension; z++) {
-				BoundingBox box = new BoundingBox(boundingBoxMesh, new Vector3i(x,y,z));
-				hitboxes.add(box);
-				baseBoxes.put(new Pointi(x,z), box);
-				box.updatePosition(x-shift, y, z-shift);
-				box.updateScale(0.5f);
+				BoundingBox below = null;
+				int top = Math.min(tops[x * dimension + z], dimension - 1);
+				for(int y = 0; y <= top; y++) {
+					BoundingBox box = new BoundingBox(boundingBoxMesh, new Vector3i(x,y,z));
+					box.updatePosition(x-shift, y, z-shift);
+					box.updateScale(0.5f);
+					hitboxes.add(box);
+					if(below == null) baseBoxes.put(new Pointi(x,z), box);
+					else below.setAbove(box);
+					below = box;
+				}
 			}
 		}
 	}
@@ -192,35 +214,6 @@ public class SelectionManager implements Observer{
 		}
 	}
 	
-	/**
-	 * Add a new Bounding box to test against.
-	 * @param b
-	 *  The new bounding box.
-	 */
-	private void add(BoundingBox b) {
-		baseBoxes.get(new Pointi(b.gameCoords.x, b.gameCoords.z)).setAbove(b);
-		hitboxes.add(b);
-		
-	}
-	
-	/**
-	 * Add a new Bounding box to the data structured.
-	 * @param x
-	 *  The lateral.
-	 * @param z
-	 *  The depth.
-	 * @param shift
-	 *  The offset (if any) that should be applied to the model. 
-	 */
-	private void placed(int x, int z, float shift) {
-		int y = (baseBoxes.get(new Pointi(x,z)).getTop().gameCoords.y)+1;
-		if(y >= dimension) return;
-		BoundingBox adding = new BoundingBox(boundingBoxMesh, new Vector3i(x,y,z));
-		adding.updatePosition(x-shift, y, z-shift);
-		adding.updateScale(0.5f);
-		add(adding);
-	}
-	
 	/**
 	 * Get the list of bounding boxes
 	 * @return
@@ -237,15 +230,16 @@ public class SelectionManager implements Observer{
 		this.boundingBoxMesh.delete();
 	}
 
-	@Override
-	public void update(int x, int y, int z, String type) {
-		switch(type.toLowerCase()) {
-		case "place":
-			placed(x,z,1.5f);
-			break;
-		default:
-			break;
-		}
+	/**
+	 * Fit the hit boxes to the board, rebuilding them only if it changed since the last call.
+	 * Hit boxes are only taken from the board as drawn, so a click that was not played never adds one.
+	 * @param tops
+	 *  The height the next piece dropped in each column lands at, indexed x * dimension + z, dimension if it is full.
+	 */
+	public void update(int[] tops) {
+		if(Arrays.equals(this.tops, tops)) return;
+		System.arraycopy(tops, 0, this.tops, 0, this.tops.length);
+		build(1.5f);
 	}
 
 }
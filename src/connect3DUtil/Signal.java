@@ -0,0 +1,59 @@
+package connect3DUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wakes a waiting thread. A raise is remembered until a wait takes it, so one raised before the wait isn't lost,
+ * and many raises before a wait wake it once.
+ * It is built on a lock rather than a monitor, so a virtual thread waiting on it doesn't hold on to its carrier.
+ * @author Benjamin
+ *
+ */
+public final class Signal {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition raised = lock.newCondition();
+	/**
+	 * True if raised and not yet taken, guarded by the lock.
+	 */
+	private boolean up;
+
+	/**
+	 * Wake the waiting thread, or the next one to wait. Safe to call from any thread.
+	 */
+	public void raise() {
+		lock.lock();
+		try {
+			up = true;
+			raised.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait to be raised, and take the raise.
+	 * If the thread is interrupted it stops waiting, with its interrupt status still set.
+	 * @param millis
+	 *  The longest to wait.
+	 * @return
+	 *  True if raised, false if the time ran out or the thread was interrupted.
+	 */
+	public boolean await(long millis) {
+		lock.lock();
+		try {
+			long left = TimeUnit.MILLISECONDS.toNanos(millis);
+			while(!up && left > 0) left = raised.awaitNanos(left);
+			boolean was = up;
+			up = false;
+			return was;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
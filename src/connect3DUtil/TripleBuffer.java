@@ -0,0 +1,81 @@
+package connect3DUtil;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands states from one writing thread to one reading thread without locks, waiting or copying.
+ * There are three buffers: the writer fills the back one, the reader reads the front one, and the middle one holds
+ * the newest state the reader hasn't taken yet. Publishing swaps the back with the middle and taking swaps the middle
+ * with the front, each in a single atomic step, so neither thread ever waits for the other and the reader always
+ * gets the newest whole state, skipping any it was too slow to see.
+ *
+ * A published state must not be changed by the writer, and the front state is only valid until the reader takes again.
+ * @author Benjamin
+ *
+ * @param <T>
+ *  The type of state.
+ */
+public final class TripleBuffer<T> {
+
+	/**
+	 * Set in middle when it holds a state the reader hasn't taken.
+	 */
+	private static final int FRESH = 4;
+	/**
+	 * Masks the buffer index out of middle.
+	 */
+	private static final int INDEX = 3;
+
+	/**
+	 * The three buffers.
+	 */
+	private final Object[] buffers = new Object[3];
+	/**
+	 * The index of the middle buffer, with FRESH set if it is newer than the front.
+	 */
+	private final AtomicInteger middle = new AtomicInteger(2);
+	/**
+	 * The index of the buffer being filled, only used by the writer.
+	 */
+	private int back = 0;
+	/**
+	 * The index of the buffer being read, only used by the reader.
+	 */
+	private int front = 1;
+
+	/**
+	 * Create a triple buffer.
+	 * @param factory
+	 *  Creates each buffer. The reader sees a new buffer until the first state is published.
+	 */
+	public TripleBuffer(Supplier<T> factory) {
+		for(int i = 0; i < buffers.length; i++) buffers[i] = factory.get();
+	}
+
+	/**
+	 * Writer only.
+	 * @return
+	 *  The buffer to fill with the next state. It holds an old state, so every part of it should be written.
+	 */
+	@SuppressWarnings("unchecked")
+	public T back() { return (T)buffers[back]; }
+
+	/**
+	 * Writer only. Hand the back buffer to the reader, and get a new back buffer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Reader only. Take the newest published state, the previous one taken is given back to the writer.
+	 * @return
+	 *  The newest state, the same as last time if nothing has been published since.
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		if((middle.get() & FRESH) != 0) front = middle.getAndSet(front) & INDEX;
+		return (T)buffers[front];
+	}
+}
@@ -0,0 +1,83 @@
+package connect3DUtil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the handoff of states from a writer thread to a reader thread.
+ * @author Benjamin
+ *
+ */
+class TripleBufferTests {
+
+	/**
+	 * The longest the concurrent test may take, far longer than it needs.
+	 */
+	private static final Duration LIMIT = Duration.ofSeconds(30);
+
+	/**
+	 * Fill a state with one number, -1 marks it as being filled.
+	 * @param state
+	 *  The state.
+	 * @param n
+	 *  The number.
+	 */
+	static void fill(long[] state, long n) {
+		Arrays.fill(state, -1);
+		for(int i = 0; i < state.length; i++) state[i] = n;
+	}
+
+	@Test
+	void testReaderGetsNewestState() {
+		TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+		assertEquals(0, buffer.acquire()[0]);
+		for(long n = 1; n <= 3; n++) {
+			fill(buffer.back(), n);
+			buffer.publish();
+		}
+		//the reader skips the states it was too slow for
+		long[] front = buffer.acquire();
+		assertEquals(3, front[0]);
+		//nothing new, the same state again
+		assertSame(front, buffer.acquire());
+		//the writer never fills the state being read
+		for(long n = 4; n <= 6; n++) {
+			assertNotSame(front, buffer.back());
+			fill(buffer.back(), n);
+			buffer.publish();
+		}
+		assertEquals(3, front[0]);
+		assertEquals(6, buffer.acquire()[0]);
+	}
+
+	@Test
+	void testReaderNeverSeesPartialState() {
+		final long states = 200_000;
+		TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[64]);
+		Thread writer = new Thread(() -> {
+			for(long n = 1; n <= states; n++) {
+				fill(buffer.back(), n);
+				buffer.publish();
+			}
+		});
+		assertTimeoutPreemptively(LIMIT, () -> {
+			writer.start();
+			long last = 0;
+			while(last < states) {
+				long[] state = buffer.acquire();
+				long n = state[0];
+				//a whole state, and never older than the last one read
+				for(long v : state) assertEquals(n, v);
+				assertTrue(n >= last);
+				last = n;
+			}
+			writer.join();
+		});
+		//once the writer is done the newest state is the last one published
+		assertEquals(states, buffer.acquire()[0]);
+	}
+}